@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.benchmarks;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tennaito.rsql.misc.ArgumentParser;
+import com.github.tennaito.rsql.misc.DefaultArgumentParser;
+
+/**
+ * Conversion of arguments by the DefaultArgumentParser, one argument at a
+ * time and as the list of a 1000 values IN comparison.
+ *
+ * @author AntonioRabelo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArgumentConversionBenchmark {
+
+    private static final Map<String, Object[]> SAMPLES = new HashMap<>();
+
+    static {
+        SAMPLES.put("String", new Object[]{String.class, "Testing Course"});
+        SAMPLES.put("Integer", new Object[]{Integer.class, "123456"});
+        SAMPLES.put("Long", new Object[]{Long.class, "123456789123"});
+        SAMPLES.put("Double", new Object[]{Double.class, "1235.2232"});
+        SAMPLES.put("BigDecimal", new Object[]{BigDecimal.class, "1235.2232"});
+        SAMPLES.put("Boolean", new Object[]{Boolean.class, "true"});
+        SAMPLES.put("Enum", new Object[]{TimeUnit.class, "SECONDS"});
+        SAMPLES.put("Date", new Object[]{Date.class, "2011-08-26T14:15:30"});
+        SAMPLES.put("LocalDate", new Object[]{LocalDate.class, "2011-08-26"});
+        SAMPLES.put("LocalDateTime", new Object[]{LocalDateTime.class, "2011-08-26T14:15:30"});
+        SAMPLES.put("Instant", new Object[]{Instant.class, "2011-08-26T14:15:30Z"});
+        SAMPLES.put("OffsetDateTime", new Object[]{OffsetDateTime.class, "2011-08-26T14:15:30+02:00"});
+        SAMPLES.put("UUID", new Object[]{UUID.class, "3f2504e0-4f89-11d3-9a0c-0305e82c3301"});
+    }
+
+    @Param({"String", "Integer", "Long", "Double", "BigDecimal", "Boolean", "Enum",
+        "Date", "LocalDate", "LocalDateTime", "Instant", "OffsetDateTime", "UUID"})
+    public String type;
+
+    private final ArgumentParser parser = new DefaultArgumentParser();
+
+    private Class<?> javaType;
+
+    private String argument;
+
+    private List<String> arguments;
+
+    @Setup
+    public void setUp() {
+        Object[] sample = SAMPLES.get(type);
+        javaType = (Class<?>) sample[0];
+        argument = (String) sample[1];
+        arguments = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            arguments.add(argument);
+        }
+    }
+
+    @Benchmark
+    public Object single() {
+        return parser.parse(argument, javaType);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<?> list() {
+        return parser.parse(arguments, javaType);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.benchmarks;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import com.github.tennaito.rsql.jpa.entity.Building;
+import com.github.tennaito.rsql.jpa.entity.Course;
+import com.github.tennaito.rsql.jpa.entity.Department;
+import com.github.tennaito.rsql.jpa.entity.Person;
+import com.github.tennaito.rsql.jpa.entity.Room;
+import com.github.tennaito.rsql.jpa.entity.Title;
+
+/**
+ * In-memory HSQLDB databases of the test persistence units, seeded once per
+ * JVM with {@link #COURSES} courses, each with its own department, head,
+ * homeroom and building.
+ *
+ * @author AntonioRabelo
+ */
+final class BenchmarkDatabase {
+
+    static final String ECLIPSELINK = "eclipselink";
+    static final String HIBERNATE = "hibernate";
+
+    static final int COURSES = 100;
+
+    /**
+     * Selectors from Course going through 1 to 5 entities.
+     */
+    static final String[] SELECTORS = {
+        "code",
+        "department.code",
+        "department.head.surname",
+        "department.head.homeroom.name",
+        "department.head.homeroom.building.name"
+    };
+
+    /**
+     * RSQL queries on Course by name: a single comparison, a conjunction
+     * over several types and joins, and a wide filter of 20 comparisons.
+     */
+    static final Map<String, String> QUERIES = new HashMap<>();
+
+    static {
+        QUERIES.put("simple", "code==D-1");
+        QUERIES.put("conjunction", "department.head.surname=='Surname 1*';credits=ge=1;active==false;id=in=(1,2,3,4)");
+        StringBuilder wide = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            if (i > 0) {
+                wide.append(';');
+            }
+            wide.append(SELECTORS[i % SELECTORS.length]).append("!='none ").append(i).append('\'');
+        }
+        QUERIES.put("wide", wide.toString());
+    }
+
+    private static final Map<String, EntityManagerFactory> FACTORIES = new HashMap<>();
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * @param provider {@link #ECLIPSELINK} or {@link #HIBERNATE}
+     * @return the factory of the seeded persistence unit of the provider.
+     */
+    static synchronized EntityManagerFactory factory(String provider) {
+        EntityManagerFactory factory = FACTORIES.get(provider);
+        if (factory == null) {
+            Map<String, String> properties = new HashMap<>();
+            String unit;
+            if (ECLIPSELINK.equals(provider)) {
+                unit = "persistenceUnit-eclipse";
+                properties.put("eclipselink.logging.level", "WARNING");
+                properties.put("eclipselink.logging.level.sql", "WARNING");
+                // EclipseLink 2.7 cannot read JDK 9+ class files while processing metadata and reports it for every JDK type
+                properties.put("eclipselink.logging.level.metadata", "OFF");
+            } else if (HIBERNATE.equals(provider)) {
+                unit = "persistenceUnit-hibernate";
+                properties.put("hibernate.show_sql", "false");
+                properties.put("hibernate.format_sql", "false");
+            } else {
+                throw new IllegalArgumentException("Unknown provider: " + provider);
+            }
+            factory = Persistence.createEntityManagerFactory(unit, properties);
+            seed(factory);
+            FACTORIES.put(provider, factory);
+        }
+        return factory;
+    }
+
+    private static void seed(EntityManagerFactory factory) {
+        EntityManager entityManager = factory.createEntityManager();
+        entityManager.getTransaction().begin();
+
+        Title title = new Title();
+        title.setId(1L);
+        title.setName("Phd");
+        entityManager.persist(title);
+
+        for (long i = 1; i <= COURSES; i++) {
+            Building building = new Building();
+            building.setId(i);
+            building.setName("Building " + i);
+            entityManager.persist(building);
+
+            Room room = new Room();
+            room.setId(i);
+            room.setName("Room " + i);
+            room.setBuilding(building);
+            entityManager.persist(room);
+
+            Person head = new Person();
+            head.setId(i);
+            head.setName("Head");
+            head.setSurname("Surname " + i);
+            head.setHomeroom(room);
+            head.setTitles(new HashSet<>());
+            head.getTitles().add(title);
+            entityManager.persist(head);
+
+            Department department = new Department();
+            department.setId(i);
+            department.setName("Department " + i);
+            department.setCode("D-" + i);
+            department.setHead(head);
+            entityManager.persist(department);
+
+            Course course = new Course();
+            course.setId(i);
+            course.setCode("D-" + i);
+            course.setName("Course " + i);
+            course.setActive(i % 2 == 0);
+            course.setCredits((int) (i % 10));
+            course.setDepartment(department);
+            entityManager.persist(course);
+        }
+
+        entityManager.getTransaction().commit();
+        entityManager.close();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaQuery;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tennaito.rsql.jpa.JpaCachingQueryVisitor;
+import com.github.tennaito.rsql.jpa.JpaCriteriaCountQueryVisitor;
+import com.github.tennaito.rsql.jpa.JpaCriteriaQueryVisitor;
+import com.github.tennaito.rsql.jpa.entity.Course;
+
+import cz.jirutka.rsql.parser.RSQLParser;
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * Compilation of parsed nodes into criteria queries by the visitors, and
+ * into typed queries with and without the plan cache.
+ *
+ * @author AntonioRabelo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompileBenchmark {
+
+    @Param({BenchmarkDatabase.HIBERNATE, BenchmarkDatabase.ECLIPSELINK})
+    public String provider;
+
+    @Param({"simple", "conjunction", "wide"})
+    public String query;
+
+    private EntityManager entityManager;
+
+    private Node node;
+
+    private JpaCachingQueryVisitor<Course> cachingVisitor;
+
+    @Setup
+    public void setUp() {
+        entityManager = BenchmarkDatabase.factory(provider).createEntityManager();
+        node = new RSQLParser().parse(BenchmarkDatabase.QUERIES.get(query));
+        cachingVisitor = new JpaCachingQueryVisitor<>(Course.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManager.close();
+    }
+
+    @Benchmark
+    public CriteriaQuery<Course> criteriaQuery() {
+        return node.accept(new JpaCriteriaQueryVisitor<>(Course.class), entityManager);
+    }
+
+    @Benchmark
+    public CriteriaQuery<Long> countQuery() {
+        return node.accept(new JpaCriteriaCountQueryVisitor<>(Course.class), entityManager);
+    }
+
+    @Benchmark
+    public TypedQuery<Course> typedQuery() {
+        return entityManager.createQuery(node.accept(new JpaCriteriaQueryVisitor<>(Course.class), entityManager));
+    }
+
+    @Benchmark
+    public TypedQuery<Course> cachedTypedQuery() {
+        return node.accept(cachingVisitor, entityManager);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tennaito.rsql.jpa.JpaCachingQueryVisitor;
+import com.github.tennaito.rsql.jpa.JpaCriteriaQueryVisitor;
+import com.github.tennaito.rsql.jpa.entity.Course;
+
+import cz.jirutka.rsql.parser.RSQLParser;
+
+/**
+ * Whole path of a request: parsing, compilation and execution against the
+ * seeded HSQLDB database, with and without the plan cache.
+ *
+ * @author AntonioRabelo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param({BenchmarkDatabase.HIBERNATE, BenchmarkDatabase.ECLIPSELINK})
+    public String provider;
+
+    @Param({"simple", "conjunction", "wide"})
+    public String query;
+
+    private final RSQLParser parser = new RSQLParser();
+
+    private EntityManager entityManager;
+
+    private JpaCachingQueryVisitor<Course> cachingVisitor;
+
+    private String rsql;
+
+    @Setup
+    public void setUp() {
+        entityManager = BenchmarkDatabase.factory(provider).createEntityManager();
+        cachingVisitor = new JpaCachingQueryVisitor<>(Course.class);
+        rsql = BenchmarkDatabase.QUERIES.get(query);
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManager.close();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Course> execute() {
+        entityManager.clear();
+        JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<>(Course.class);
+        return entityManager.createQuery(parser.parse(rsql).accept(visitor, entityManager)).getResultList();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Course> executeCached() {
+        entityManager.clear();
+        return parser.parse(rsql).accept(cachingVisitor, entityManager).getResultList();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.benchmarks;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import com.github.tennaito.rsql.misc.ArgumentFormatException;
+
+/**
+ * Date parsing of DefaultArgumentParser up to version 2.0.4, kept as the
+ * baseline of {@link DateArgumentBenchmark}.
+ *
+ * @author AntonioRabelo
+ */
+final class LegacyDateParser {
+
+    private static final String DATE_PATTERN = "yyyy-MM-dd"; //ISO 8601
+    private static final String DATE_TIME_PATTERN = "yyyy-MM-dd'T'HH:mm:ss"; //ISO 8601
+
+    private LegacyDateParser() {
+    }
+
+    static Date parseDate(String argument) {
+        try {
+            return new SimpleDateFormat(DATE_TIME_PATTERN).parse(argument);
+        } catch (ParseException ex) {
+            // Not a date time format, lets try with date format.
+        }
+        try {
+            return new SimpleDateFormat(DATE_PATTERN).parse(argument);
+        } catch (ParseException ex1) {
+            throw new ArgumentFormatException(argument, Date.class);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.builder.SimpleBuilderTools;
+import com.github.tennaito.rsql.jpa.PredicateBuilder;
+import com.github.tennaito.rsql.jpa.entity.Course;
+
+/**
+ * Resolution of selectors going through 1 to 5 entities from Course, each
+ * hop being a join. The root benchmark is the cost of the criteria query and
+ * root every resolution starts from.
+ *
+ * @author AntonioRabelo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectorResolutionBenchmark {
+
+    @Param({BenchmarkDatabase.HIBERNATE, BenchmarkDatabase.ECLIPSELINK})
+    public String provider;
+
+    @Param({"1", "2", "3", "4", "5"})
+    public int depth;
+
+    private EntityManager entityManager;
+
+    private final BuilderTools tools = new SimpleBuilderTools();
+
+    private String selector;
+
+    @Setup
+    public void setUp() {
+        entityManager = BenchmarkDatabase.factory(provider).createEntityManager();
+        selector = BenchmarkDatabase.SELECTORS[depth - 1];
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManager.close();
+    }
+
+    @Benchmark
+    public Root<Course> root() {
+        return entityManager.getCriteriaBuilder().createQuery(Course.class).from(Course.class);
+    }
+
+    @Benchmark
+    public Path<?> resolve() {
+        Root<Course> root = entityManager.getCriteriaBuilder().createQuery(Course.class).from(Course.class);
+        return new PredicateBuilder().findPropertyPath(selector, root, entityManager, tools);
+    }
+}
@@ -23,9 +23,18 @@
  */
 package com.github.tennaito.rsql.builder;
 
+import com.github.tennaito.rsql.jpa.CountStrategy;
+import com.github.tennaito.rsql.jpa.InListStrategy;
+import com.github.tennaito.rsql.jpa.OperatorRegistry;
+import com.github.tennaito.rsql.jpa.PluralPathStrategy;
 import com.github.tennaito.rsql.jpa.PredicateBuilderStrategy;
+import com.github.tennaito.rsql.jpa.QueryBudget;
+import com.github.tennaito.rsql.metrics.QueryListener;
 import com.github.tennaito.rsql.misc.ArgumentParser;
 import com.github.tennaito.rsql.misc.Mapper;
+import com.github.tennaito.rsql.misc.ParameterBindingPolicy;
+import com.github.tennaito.rsql.misc.StringMatchingPolicy;
+import com.github.tennaito.rsql.misc.TemporalGranularityPolicy;
 
 /**
  * Facade Interface for miscelaneous utilities for operation definition.
@@ -33,6 +42,15 @@ import com.github.tennaito.rsql.misc.Mapper;
  * PropertyMapper for translation of properties aliases.
  * ArgumentParser for casting specific types.
  * PredicateBuilder for RSQL AST new nodes.
+ * ParameterBindingPolicy for arguments kept as literals when binding parameters.
+ * QueryListener for the instrumentation of the predicate creation.
+ * PluralPathStrategy for the compilation of selectors through collections.
+ * CountStrategy for the selection of count queries.
+ * StringMatchingPolicy for the comparisons of String properties.
+ * QueryBudget for the admission of expensive queries.
+ * InListStrategy for the compilation of long argument lists.
+ * TemporalGranularityPolicy for the range comparisons of date and time properties.
+ * OperatorRegistry for the handlers of new comparison operators.
  *
  * @author AntonioRabelo
  * @since 2015-02-03
@@ -80,4 +98,103 @@ public interface BuilderTools {
 	 * @param predicateStrategy PredicateBuilderStrategy
 	 */
 	void setPredicateBuilder(PredicateBuilderStrategy predicateStrategy);
+
+	/**
+	 * Get a policy for the arguments inlined when binding parameters.
+	 * <p>
+	 * The default implementation returns {@link ParameterBindingPolicy#INLINE_ENUMS_AND_BOOLEANS}.
+	 *
+	 * @return ParameterBindingPolicy
+	 */
+	default ParameterBindingPolicy getParameterBindingPolicy() {
+		return ParameterBindingPolicy.INLINE_ENUMS_AND_BOOLEANS;
+	}
+
+	/**
+	 * Get the listener of the phases of predicate creation.
+	 * <p>
+	 * The default implementation returns {@link QueryListener#NONE}.
+	 *
+	 * @return QueryListener
+	 */
+	default QueryListener getQueryListener() {
+		return QueryListener.NONE;
+	}
+
+	/**
+	 * Get the strategy for selectors going through collections.
+	 * <p>
+	 * The default implementation returns {@link PluralPathStrategy#JOIN}.
+	 *
+	 * @return PluralPathStrategy
+	 */
+	default PluralPathStrategy getPluralPathStrategy() {
+		return PluralPathStrategy.JOIN;
+	}
+
+	/**
+	 * Get the strategy of count queries.
+	 * <p>
+	 * The default implementation returns {@link CountStrategy#AUTO}.
+	 *
+	 * @return CountStrategy
+	 */
+	default CountStrategy getCountStrategy() {
+		return CountStrategy.AUTO;
+	}
+
+	/**
+	 * Get a policy for the matching of String properties.
+	 * <p>
+	 * The default implementation returns {@link StringMatchingPolicy#CASE_INSENSITIVE}.
+	 *
+	 * @return StringMatchingPolicy
+	 */
+	default StringMatchingPolicy getStringMatchingPolicy() {
+		return StringMatchingPolicy.CASE_INSENSITIVE;
+	}
+
+	/**
+	 * Get the budget the queries must fit in.
+	 * <p>
+	 * The default implementation returns <tt>null</tt>.
+	 *
+	 * @return QueryBudget, <tt>null</tt> if the queries are not limited.
+	 */
+	default QueryBudget getQueryBudget() {
+		return null;
+	}
+
+	/**
+	 * Get a strategy for the arguments of in and out comparisons.
+	 * <p>
+	 * The default implementation returns {@link InListStrategy#SINGLE_IN}.
+	 *
+	 * @return InListStrategy
+	 */
+	default InListStrategy getInListStrategy() {
+		return InListStrategy.SINGLE_IN;
+	}
+
+	/**
+	 * Get a policy for the range comparisons of date and time properties.
+	 * <p>
+	 * The default implementation returns {@link TemporalGranularityPolicy#EXACT}.
+	 *
+	 * @return TemporalGranularityPolicy
+	 */
+	default TemporalGranularityPolicy getTemporalGranularityPolicy() {
+		return TemporalGranularityPolicy.EXACT;
+	}
+
+	/**
+	 * Get the handlers of the comparison operators beyond the default ones.
+	 * <p>
+	 * The default implementation returns {@link OperatorRegistry#EMPTY}.
+	 *
+	 * @return OperatorRegistry
+	 */
+	default OperatorRegistry getOperatorRegistry() {
+		return OperatorRegistry.EMPTY;
+	}
 }
@@ -0,0 +1,195 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.builder;
+
+import com.github.tennaito.rsql.jpa.CountStrategy;
+import com.github.tennaito.rsql.jpa.InListStrategy;
+import com.github.tennaito.rsql.jpa.OperatorRegistry;
+import com.github.tennaito.rsql.jpa.PluralPathStrategy;
+import com.github.tennaito.rsql.jpa.PredicateBuilderStrategy;
+import com.github.tennaito.rsql.jpa.QueryBudget;
+import com.github.tennaito.rsql.metrics.QueryListener;
+import com.github.tennaito.rsql.misc.ArgumentParser;
+import com.github.tennaito.rsql.misc.Mapper;
+import com.github.tennaito.rsql.misc.ParameterBindingPolicy;
+import com.github.tennaito.rsql.misc.SimpleMapper;
+import com.github.tennaito.rsql.misc.SimpleParameterBindingPolicy;
+import com.github.tennaito.rsql.misc.SimpleStringMatchingPolicy;
+import com.github.tennaito.rsql.misc.StringMatchingPolicy;
+import com.github.tennaito.rsql.misc.TemporalGranularityPolicy;
+
+/**
+ * Frozen Builder Tools
+ *
+ * An immutable snapshot of other builder tools, safe to share between
+ * threads. The tools are read once when freezing, and every setter throws
+ * an {@link UnsupportedOperationException}.
+ * <p>
+ * The tools the library knows to be mutable are copied when freezing: the
+ * operator registry into a read-only one, the {@link SimpleMapper},
+ * {@link SimpleParameterBindingPolicy} and {@link SimpleStringMatchingPolicy}
+ * into read-only snapshots, the {@link InListStrategy} into a read-only
+ * one, and the {@link QueryBudget} into a copy that must not be changed. The
+ * other tools, the argument parser, the predicate builder, the query
+ * listener and the implementations of the policies or mapper other than the
+ * simple ones, are shared as given and must be thread safe.
+ *
+ * @author AntonioRabelo
+ */
+public final class FrozenBuilderTools implements BuilderTools {
+
+	private final Mapper mapper;
+	private final ArgumentParser argumentParser;
+	private final PredicateBuilderStrategy delegate;
+	private final ParameterBindingPolicy parameterBindingPolicy;
+	private final QueryListener queryListener;
+	private final PluralPathStrategy pluralPathStrategy;
+	private final CountStrategy countStrategy;
+	private final StringMatchingPolicy stringMatchingPolicy;
+	private final QueryBudget queryBudget;
+	private final InListStrategy inListStrategy;
+	private final TemporalGranularityPolicy temporalGranularityPolicy;
+	private final OperatorRegistry operatorRegistry;
+
+	private FrozenBuilderTools(BuilderTools tools) {
+		this.mapper = freeze(tools.getPropertiesMapper());
+		this.argumentParser = tools.getArgumentParser();
+		this.delegate = tools.getPredicateBuilder();
+		this.parameterBindingPolicy = freeze(tools.getParameterBindingPolicy());
+		this.queryListener = tools.getQueryListener();
+		this.pluralPathStrategy = tools.getPluralPathStrategy();
+		this.countStrategy = tools.getCountStrategy();
+		this.stringMatchingPolicy = freeze(tools.getStringMatchingPolicy());
+		QueryBudget budget = tools.getQueryBudget();
+		this.queryBudget = (budget == null) ? null : new QueryBudget(budget);
+		this.inListStrategy = tools.getInListStrategy().readOnlyCopy();
+		this.temporalGranularityPolicy = tools.getTemporalGranularityPolicy();
+		// read-only, so that registering handlers later does not race with the compilation
+		this.operatorRegistry = tools.getOperatorRegistry().readOnlyCopy();
+	}
+
+	/*
+	 * The snapshots of the simple tools are only exposed through their
+	 * interface, so that they cannot be changed. Subclasses may override the
+	 * lookups and are shared as given.
+	 */
+
+	private static Mapper freeze(Mapper mapper) {
+		if (mapper != null && mapper.getClass() == SimpleMapper.class) {
+			return new SimpleMapper((SimpleMapper) mapper)::translate;
+		}
+		return mapper;
+	}
+
+	private static ParameterBindingPolicy freeze(ParameterBindingPolicy policy) {
+		if (policy != null && policy.getClass() == SimpleParameterBindingPolicy.class) {
+			return new SimpleParameterBindingPolicy((SimpleParameterBindingPolicy) policy)::isInlined;
+		}
+		return policy;
+	}
+
+	private static StringMatchingPolicy freeze(StringMatchingPolicy policy) {
+		if (policy != null && policy.getClass() == SimpleStringMatchingPolicy.class) {
+			return new SimpleStringMatchingPolicy((SimpleStringMatchingPolicy) policy)::getMatching;
+		}
+		return policy;
+	}
+
+	/**
+	 * Freeze builder tools.
+	 *
+	 * @param tools BuilderTools to take the tools from.
+	 * @return      the frozen tools, <tt>tools</tt> itself if already frozen.
+	 */
+	public static FrozenBuilderTools freeze(BuilderTools tools) {
+		if (tools instanceof FrozenBuilderTools) {
+			return (FrozenBuilderTools) tools;
+		}
+		return new FrozenBuilderTools(tools);
+	}
+
+	public Mapper getPropertiesMapper() {
+		return this.mapper;
+	}
+
+	public void setPropertiesMapper(Mapper mapper) {
+		throw frozen();
+	}
+
+	public ArgumentParser getArgumentParser() {
+		return this.argumentParser;
+	}
+
+	public void setArgumentParser(ArgumentParser argumentParser) {
+		throw frozen();
+	}
+
+	public PredicateBuilderStrategy getPredicateBuilder() {
+		return this.delegate;
+	}
+
+	public void setPredicateBuilder(PredicateBuilderStrategy predicateStrategy) {
+		throw frozen();
+	}
+
+	public ParameterBindingPolicy getParameterBindingPolicy() {
+		return this.parameterBindingPolicy;
+	}
+
+	public QueryListener getQueryListener() {
+		return this.queryListener;
+	}
+
+	public PluralPathStrategy getPluralPathStrategy() {
+		return this.pluralPathStrategy;
+	}
+
+	public CountStrategy getCountStrategy() {
+		return this.countStrategy;
+	}
+
+	public StringMatchingPolicy getStringMatchingPolicy() {
+		return this.stringMatchingPolicy;
+	}
+
+	public QueryBudget getQueryBudget() {
+		return this.queryBudget;
+	}
+
+	public InListStrategy getInListStrategy() {
+		return this.inListStrategy;
+	}
+
+	public TemporalGranularityPolicy getTemporalGranularityPolicy() {
+		return this.temporalGranularityPolicy;
+	}
+
+	public OperatorRegistry getOperatorRegistry() {
+		return this.operatorRegistry;
+	}
+
+	private static UnsupportedOperationException frozen() {
+		return new UnsupportedOperationException("Builder tools are frozen.");
+	}
+}
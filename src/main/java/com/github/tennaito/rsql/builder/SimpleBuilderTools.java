@@ -23,11 +23,22 @@
  */
 package com.github.tennaito.rsql.builder;
 
+import com.github.tennaito.rsql.jpa.CountStrategy;
+import com.github.tennaito.rsql.jpa.InListStrategy;
+import com.github.tennaito.rsql.jpa.OperatorRegistry;
+import com.github.tennaito.rsql.jpa.PluralPathStrategy;
 import com.github.tennaito.rsql.jpa.PredicateBuilderStrategy;
+import com.github.tennaito.rsql.jpa.QueryBudget;
+import com.github.tennaito.rsql.metrics.QueryListener;
 import com.github.tennaito.rsql.misc.ArgumentParser;
 import com.github.tennaito.rsql.misc.DefaultArgumentParser;
 import com.github.tennaito.rsql.misc.Mapper;
+import com.github.tennaito.rsql.misc.ParameterBindingPolicy;
 import com.github.tennaito.rsql.misc.SimpleMapper;
+import com.github.tennaito.rsql.misc.SimpleParameterBindingPolicy;
+import com.github.tennaito.rsql.misc.SimpleStringMatchingPolicy;
+import com.github.tennaito.rsql.misc.StringMatchingPolicy;
+import com.github.tennaito.rsql.misc.TemporalGranularityPolicy;
 
 /**
  * Simple Builder Tools
@@ -42,6 +53,19 @@ public class SimpleBuilderTools implements BuilderTools {
 	private Mapper mapper;
 	private ArgumentParser argumentParser;
 	private PredicateBuilderStrategy delegate;
+	private ParameterBindingPolicy parameterBindingPolicy;
+	private QueryListener queryListener;
+	private PluralPathStrategy pluralPathStrategy;
+	private CountStrategy countStrategy;
+	private StringMatchingPolicy stringMatchingPolicy;
+
+	private QueryBudget queryBudget;
+
+	private InListStrategy inListStrategy;
+
+	private TemporalGranularityPolicy temporalGranularityPolicy;
+
+	private OperatorRegistry operatorRegistry;
 
 
 	/* (non-Javadoc)
@@ -91,4 +115,172 @@ public class SimpleBuilderTools implements BuilderTools {
 	public PredicateBuilderStrategy getPredicateBuilder() {
 		return this.delegate;
 	}
+
+	/**
+	 * Set a specific ParameterBindingPolicy.
+	 *
+	 * @param parameterBindingPolicy ParameterBindingPolicy
+	 */
+	public void setParameterBindingPolicy(ParameterBindingPolicy parameterBindingPolicy) {
+		this.parameterBindingPolicy = parameterBindingPolicy;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getParameterBindingPolicy()
+	 */
+	public ParameterBindingPolicy getParameterBindingPolicy() {
+		if (this.parameterBindingPolicy == null) {
+			this.parameterBindingPolicy = new SimpleParameterBindingPolicy();
+		}
+		return this.parameterBindingPolicy;
+	}
+
+	/**
+	 * Set a specific QueryListener.
+	 *
+	 * @param queryListener QueryListener
+	 */
+	public void setQueryListener(QueryListener queryListener) {
+		this.queryListener = queryListener;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getQueryListener()
+	 */
+	public QueryListener getQueryListener() {
+		if (this.queryListener == null) {
+			this.queryListener = QueryListener.NONE;
+		}
+		return this.queryListener;
+	}
+
+	/**
+	 * Set a specific PluralPathStrategy.
+	 *
+	 * @param pluralPathStrategy PluralPathStrategy
+	 */
+	public void setPluralPathStrategy(PluralPathStrategy pluralPathStrategy) {
+		this.pluralPathStrategy = pluralPathStrategy;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getPluralPathStrategy()
+	 */
+	public PluralPathStrategy getPluralPathStrategy() {
+		if (this.pluralPathStrategy == null) {
+			this.pluralPathStrategy = PluralPathStrategy.JOIN;
+		}
+		return this.pluralPathStrategy;
+	}
+
+	/**
+	 * Set a specific CountStrategy.
+	 *
+	 * @param countStrategy CountStrategy
+	 */
+	public void setCountStrategy(CountStrategy countStrategy) {
+		this.countStrategy = countStrategy;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getCountStrategy()
+	 */
+	public CountStrategy getCountStrategy() {
+		if (this.countStrategy == null) {
+			this.countStrategy = CountStrategy.AUTO;
+		}
+		return this.countStrategy;
+	}
+
+	/**
+	 * Set a specific StringMatchingPolicy.
+	 *
+	 * @param stringMatchingPolicy StringMatchingPolicy
+	 */
+	public void setStringMatchingPolicy(StringMatchingPolicy stringMatchingPolicy) {
+		this.stringMatchingPolicy = stringMatchingPolicy;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getStringMatchingPolicy()
+	 */
+	public StringMatchingPolicy getStringMatchingPolicy() {
+		if (this.stringMatchingPolicy == null) {
+			this.stringMatchingPolicy = new SimpleStringMatchingPolicy();
+		}
+		return this.stringMatchingPolicy;
+	}
+
+	/**
+	 * Set a specific QueryBudget.
+	 *
+	 * @param queryBudget QueryBudget, <tt>null</tt> to not limit the queries.
+	 */
+	public void setQueryBudget(QueryBudget queryBudget) {
+		this.queryBudget = queryBudget;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getQueryBudget()
+	 */
+	public QueryBudget getQueryBudget() {
+		return this.queryBudget;
+	}
+
+	/**
+	 * Set a specific InListStrategy.
+	 *
+	 * @param inListStrategy InListStrategy
+	 */
+	public void setInListStrategy(InListStrategy inListStrategy) {
+		this.inListStrategy = inListStrategy;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getInListStrategy()
+	 */
+	public InListStrategy getInListStrategy() {
+		if (this.inListStrategy == null) {
+			this.inListStrategy = new InListStrategy();
+		}
+		return this.inListStrategy;
+	}
+
+	/**
+	 * Set a specific TemporalGranularityPolicy.
+	 *
+	 * @param temporalGranularityPolicy TemporalGranularityPolicy
+	 */
+	public void setTemporalGranularityPolicy(TemporalGranularityPolicy temporalGranularityPolicy) {
+		this.temporalGranularityPolicy = temporalGranularityPolicy;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getTemporalGranularityPolicy()
+	 */
+	public TemporalGranularityPolicy getTemporalGranularityPolicy() {
+		if (this.temporalGranularityPolicy == null) {
+			this.temporalGranularityPolicy = TemporalGranularityPolicy.EXACT;
+		}
+		return this.temporalGranularityPolicy;
+	}
+
+	/**
+	 * Set a specific OperatorRegistry.
+	 *
+	 * @param operatorRegistry OperatorRegistry
+	 */
+	public void setOperatorRegistry(OperatorRegistry operatorRegistry) {
+		this.operatorRegistry = operatorRegistry;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getOperatorRegistry()
+	 */
+	public OperatorRegistry getOperatorRegistry() {
+		if (this.operatorRegistry == null) {
+			this.operatorRegistry = new OperatorRegistry();
+		}
+		return this.operatorRegistry;
+	}
 }
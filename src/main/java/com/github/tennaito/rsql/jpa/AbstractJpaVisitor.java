@@ -44,7 +44,7 @@ public abstract class AbstractJpaVisitor<T, E> implements RSQLVisitor<T, EntityM
 
 	protected final Class<E> entityClass;
 
-	protected BuilderTools builderTools;
+	protected volatile BuilderTools builderTools;
 
 	public AbstractJpaVisitor(Class<E> entityClass) {
 		this.entityClass = entityClass;
@@ -71,10 +71,17 @@ public abstract class AbstractJpaVisitor<T, E> implements RSQLVisitor<T, EntityM
 	 * @return BuilderTools.
 	 */
 	public BuilderTools getBuilderTools() {
-		if (this.builderTools == null) {
-			this.builderTools = new SimpleBuilderTools();
+		BuilderTools tools = this.builderTools;
+		if (tools == null) {
+			synchronized (this) {
+				tools = this.builderTools;
+				if (tools == null) {
+					tools = new SimpleBuilderTools();
+					this.builderTools = tools;
+				}
+			}
 		}
-		return this.builderTools;
+		return tools;
 	}
 
 	/**
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.criteria.CommonAbstractCriteria;
+import javax.persistence.criteria.Join;
+
+import com.github.tennaito.rsql.misc.ParameterBindingPolicy;
+
+/**
+ * CompilationContext
+ *
+ * State of the compilation of one node into a query: the joins created from
+ * its root and the side table of parameters. It lives as long as the query
+ * being built and is never shared between threads.
+ *
+ * @author AntonioRabelo
+ */
+final class CompilationContext {
+
+	/**
+	 * Joins already created, by translated property path.
+	 */
+	final Map<String, Join<?, ?>> joins = new HashMap<>();
+
+	/**
+	 * Side table receiving the arguments when they are bound as parameters,
+	 * <tt>null</tt> to render them as literals.
+	 */
+	QueryParameters parameters;
+
+	/**
+	 * Policy for the arguments kept as literals while binding parameters,
+	 * <tt>null</tt> to use the one of the builder tools.
+	 */
+	ParameterBindingPolicy bindingPolicy;
+
+	/**
+	 * Query whose whole where clause the predicates make, so that the joins
+	 * every match requires can be INNER joins and subqueries can be created;
+	 * <tt>null</tt> when the predicates may be combined with other ones.
+	 */
+	CommonAbstractCriteria query;
+
+	/**
+	 * Paths of the joins required by the node being built, see {@link JoinAnalysis};
+	 * <tt>null</tt> when no node is being analyzed.
+	 */
+	Set<String> requiredJoins;
+
+	/**
+	 * Strategy for the comparisons on collections, <tt>null</tt> to use the
+	 * one of the builder tools.
+	 */
+	PluralPathStrategy pluralPathStrategy;
+
+	/**
+	 * Cost of the node being built within the {@link QueryBudget} of the
+	 * builder tools, <tt>null</tt> when no node is being checked.
+	 */
+	QueryCost cost;
+
+	/**
+	 * Placeholders of the query being prepared, by name; <tt>null</tt> when
+	 * the arguments are values.
+	 */
+	Map<String, PreparedQuery.Placeholder> placeholders;
+
+	CompilationContext() {
+	}
+
+	CompilationContext(QueryParameters parameters, ParameterBindingPolicy bindingPolicy) {
+		this.parameters = parameters;
+		this.bindingPolicy = bindingPolicy;
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Expansion
+ *
+ * Associations loaded along with the entities, like the
+ * <tt>expand=department,teachers</tt> parameter of a request, instead of
+ * one select per association per entity once they are used. Each selector is
+ * resolved like the selectors of the comparisons, through the
+ * {@link com.github.tennaito.rsql.misc.Mapper}, and must go through
+ * associations only, like <tt>department.head</tt>.
+ * <p>
+ * The to-one associations before the first collection of a path are fetch
+ * joined by the query of the entities, sharing the joins of the filter.
+ * Collections would multiply the rows of that query and break its
+ * pagination, so they are loaded afterwards for all the entities by
+ * {@link JpaQueryCompiler#expand(List, Expansion, javax.persistence.EntityManager)}.
+ *
+ * @author AntonioRabelo
+ */
+public final class Expansion {
+
+	/**
+	 * No association expanded.
+	 */
+	public static final Expansion NONE = new Expansion(Collections.<String>emptyList());
+
+	private final List<String> selectors;
+
+	private Expansion(List<String> selectors) {
+		Set<String> distinct = new LinkedHashSet<>();
+		for (String selector : selectors) {
+			if (selector == null || selector.isEmpty()) {
+				throw new IllegalArgumentException("Invalid expansion: " + selectors);
+			}
+			distinct.add(selector);
+		}
+		this.selectors = Collections.unmodifiableList(new ArrayList<>(distinct));
+	}
+
+	/**
+	 * @param selectors  Dotted selectors of associations.
+	 * @return           the expansion of the associations.
+	 */
+	public static Expansion of(String... selectors) {
+		return new Expansion(Arrays.asList(selectors));
+	}
+
+	/**
+	 * Parse a comma separated list of associations.
+	 *
+	 * @param associations  Associations, like <tt>department,department.head.titles</tt>;
+	 *                      <tt>null</tt> or blank for none.
+	 * @return              the expansion of the associations.
+	 * @throws IllegalArgumentException if an association is empty.
+	 */
+	public static Expansion parse(String associations) {
+		if (associations == null || associations.trim().isEmpty()) {
+			return NONE;
+		}
+		List<String> selectors = new ArrayList<>();
+		for (String association : associations.split(",", -1)) {
+			selectors.add(association.trim());
+		}
+		return new Expansion(selectors);
+	}
+
+	/**
+	 * @return the selectors, in order.
+	 */
+	public List<String> getSelectors() {
+		return selectors;
+	}
+
+	/**
+	 * @return <tt>true</tt> if no association is expanded.
+	 */
+	public boolean isEmpty() {
+		return selectors.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return String.join(",", selectors);
+	}
+}
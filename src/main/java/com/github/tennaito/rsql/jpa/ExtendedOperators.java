@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.List;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+
+import com.github.tennaito.rsql.misc.StringMatching;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.ComparisonOperator;
+
+/**
+ * ExtendedOperators
+ *
+ * Comparison operators commonly added to the RSQL ones, with their handlers:
+ * <ul>
+ * <li><tt>=between=(a,b)</tt> matches the values from <tt>a</tt> to <tt>b</tt>, both included;</li>
+ * <li><tt>=isnull=true</tt> matches the <tt>null</tt> values, <tt>=isnull=false</tt> the other ones;</li>
+ * <li><tt>=like=</tt> matches a String against a case sensitive pattern, <tt>*</tt> and <tt>_</tt> being wildcards;</li>
+ * <li><tt>=ilike=</tt> does the same case insensitively.</li>
+ * </ul>
+ *
+ * @author AntonioRabelo
+ */
+public final class ExtendedOperators {
+
+	public static final ComparisonOperator BETWEEN = new ComparisonOperator("=between=", true);
+	public static final ComparisonOperator IS_NULL = new ComparisonOperator("=isnull=");
+	public static final ComparisonOperator LIKE = new ComparisonOperator("=like=");
+	public static final ComparisonOperator ILIKE = new ComparisonOperator("=ilike=");
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static final OperatorHandler BETWEEN_HANDLER = (path, comparison, builder, tools) -> {
+		List<?> arguments = tools.getArgumentParser().parse(comparison.getArguments(), path.getJavaType());
+		if (arguments.size() != 2 || !(arguments.get(0) instanceof Comparable) || !(arguments.get(1) instanceof Comparable)) {
+			throw new IllegalArgumentException("Operator " + BETWEEN + " takes two comparable arguments: " + comparison);
+		}
+		return builder.between((Expression<Comparable>) path, (Comparable) arguments.get(0), (Comparable) arguments.get(1));
+	};
+
+	public static final OperatorHandler IS_NULL_HANDLER = (path, comparison, builder, tools) -> {
+		String argument = comparison.getArguments().get(0);
+		if (!"true".equalsIgnoreCase(argument) && !"false".equalsIgnoreCase(argument)) {
+			throw new IllegalArgumentException("Operator " + IS_NULL + " takes true or false: " + comparison);
+		}
+		return Boolean.parseBoolean(argument) ? builder.isNull(path) : builder.isNotNull(path);
+	};
+
+	public static final OperatorHandler LIKE_HANDLER = (path, comparison, builder, tools) ->
+			builder.like(stringPath(path, comparison), StringMatching.WILDCARD.toPattern(comparison.getArguments().get(0)));
+
+	public static final OperatorHandler ILIKE_HANDLER = (path, comparison, builder, tools) ->
+			builder.like(builder.lower(stringPath(path, comparison)), StringMatching.CASE_INSENSITIVE.toPattern(comparison.getArguments().get(0)));
+
+	private ExtendedOperators() {
+	}
+
+	/**
+	 * Register all the extended operators.
+	 *
+	 * @param registry Registry of the builder tools.
+	 * @return         the same registry.
+	 */
+	public static OperatorRegistry registerAll(OperatorRegistry registry) {
+		return registry.register(BETWEEN, BETWEEN_HANDLER)
+				.register(IS_NULL, IS_NULL_HANDLER)
+				.register(LIKE, LIKE_HANDLER)
+				.register(ILIKE, ILIKE_HANDLER);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Expression<String> stringPath(Path<?> path, ComparisonNode comparison) {
+		if (path.getJavaType() != String.class) {
+			throw new IllegalArgumentException("Operator " + comparison.getOperator() + " only applies to String properties: " + comparison);
+		}
+		return (Expression<String>) path;
+	}
+}
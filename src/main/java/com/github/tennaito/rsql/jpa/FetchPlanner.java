@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Fetch;
+import javax.persistence.criteria.FetchParent;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Metamodel;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+
+/**
+ * FetchPlanner
+ *
+ * Plans the loading of the associations of an {@link Expansion}: fetch joins
+ * in the query of the entities for the to-one associations, and a query per
+ * path through a collection, loading it for all the entities at once.
+ *
+ * @author AntonioRabelo
+ */
+final class FetchPlanner {
+
+	private FetchPlanner() {
+	}
+
+	/**
+	 * Fetch join the to-one associations leading each path, before the
+	 * predicates are built, registering the fetches as the joins of their
+	 * paths so that the predicates reuse them. The paths among the required
+	 * joins of the context are fetched with inner joins, the others with
+	 * left joins.
+	 *
+	 * @param expansion      Associations to expand.
+	 * @param root           Root of the query of the entities.
+	 * @param context        State of the query being built.
+	 * @param entityManager  JPA EntityManager.
+	 * @param misc           Facade with all necessary tools for predicate creation.
+	 * @throws IllegalArgumentException if a selector does not resolve to associations.
+	 */
+	static void fetchToOne(Expansion expansion, From<?, ?> root, CompilationContext context, EntityManager entityManager, BuilderTools misc) {
+		Map<String, Fetch<?, ?>> fetches = new HashMap<>();
+		for (String selector : expansion.getSelectors()) {
+			FetchParent<?, ?> parent = root;
+			for (SelectorIndex.Step step : resolve(selector, root.getJavaType(), entityManager, misc).steps) {
+				if (step.plural) {
+					break;
+				}
+				Fetch<?, ?> fetch = fetches.get(step.path);
+				if (fetch == null) {
+					JoinType type = (context.requiredJoins != null && context.requiredJoins.contains(step.path)) ? JoinType.INNER : JoinType.LEFT;
+					fetch = parent.fetch(step.attribute, type);
+					fetches.put(step.path, fetch);
+					if (fetch instanceof Join) {
+						// the providers implement their fetches as joins
+						context.joins.put(step.path, (Join<?, ?>) fetch);
+					}
+				}
+				parent = fetch;
+			}
+		}
+	}
+
+	/**
+	 * Load the paths through a collection for all the given entities, with a
+	 * query per path fetch joining it for their identifiers. The identifiers
+	 * are bound by chunks of the chunk size of the {@link InListStrategy},
+	 * one execution of the query per chunk. The entities must be managed by
+	 * the entity manager.
+	 *
+	 * @param entities       Entities, managed by the entity manager.
+	 * @param expansion      Associations to expand.
+	 * @param entityClass    Class of the entities.
+	 * @param entityManager  JPA EntityManager.
+	 * @param misc           Facade with all necessary tools for predicate creation.
+	 * @throws IllegalArgumentException if a selector does not resolve to associations.
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	static <T> void loadToMany(List<T> entities, Expansion expansion, Class<T> entityClass, EntityManager entityManager, BuilderTools misc) {
+		List<SelectorIndex.Resolution> paths = new ArrayList<>();
+		for (String selector : expansion.getSelectors()) {
+			SelectorIndex.Resolution resolution = resolve(selector, entityClass, entityManager, misc);
+			for (SelectorIndex.Step step : resolution.steps) {
+				if (step.plural) {
+					paths.add(resolution);
+					break;
+				}
+			}
+		}
+		if (paths.isEmpty() || entities.isEmpty()) {
+			return;
+		}
+
+		PersistenceUnitUtil util = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+		List<Object> identifiers = new ArrayList<>(entities.size());
+		for (T entity : entities) {
+			identifiers.add(util.getIdentifier(entity));
+		}
+		String identifier = Keyset.identifier(entityManager.getMetamodel().entity(entityClass)).getName();
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		int chunkSize = misc.getInListStrategy().getChunkSize();
+		for (SelectorIndex.Resolution path : paths) {
+			CriteriaQuery<T> criteria = builder.createQuery(entityClass);
+			Root<T> root = criteria.from(entityClass);
+			FetchParent<?, ?> parent = root;
+			for (SelectorIndex.Step step : path.steps) {
+				parent = parent.fetch(step.attribute, JoinType.LEFT);
+			}
+			ParameterExpression<List> parameter = builder.parameter(List.class);
+			criteria.select(root).where(root.get(identifier).in((Expression) parameter));
+			for (int start = 0; start < identifiers.size(); start += chunkSize) {
+				List<Object> chunk = identifiers.subList(start, QueryParameters.chunkEnd(identifiers.size(), start, chunkSize));
+				// the fetched collections are set on the managed entities
+				entityManager.createQuery(criteria).setParameter(parameter, chunk).getResultList();
+			}
+		}
+	}
+
+	private static SelectorIndex.Resolution resolve(String selector, Class<?> entityClass, EntityManager entityManager, BuilderTools misc) {
+		Metamodel metaModel = entityManager.getMetamodel();
+		SelectorIndex.Resolution resolution = SelectorIndex.of(metaModel.managedType(entityClass))
+				.resolve(selector, misc.getPropertiesMapper(), metaModel);
+		if (resolution == null) {
+			throw new IllegalArgumentException("Unknown property: " + selector + " from entity " + entityClass.getName());
+		}
+		for (SelectorIndex.Step step : resolution.steps) {
+			if (!step.join) {
+				throw new IllegalArgumentException("Cannot expand a property that is not an association: " + selector);
+			}
+		}
+		return resolution;
+	}
+}
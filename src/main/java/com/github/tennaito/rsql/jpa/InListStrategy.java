@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+/**
+ * InListStrategy
+ *
+ * How the arguments of <tt>=in=</tt> and <tt>=out=</tt> comparisons are
+ * compiled. By default a list is a single <tt>IN</tt> with one literal or
+ * parameter per argument, so every list length makes another SQL string and
+ * long lists may exceed the limits of the database, like the 1000 elements
+ * of an Oracle <tt>IN</tt>.
+ * <ul>
+ * <li>Chunking splits the lists longer than the chunk size into ORed
+ * <tt>IN</tt>s of at most that size.</li>
+ * <li>Padding, when the arguments are bound as parameters, repeats the last
+ * argument up to the next power of two, or the next multiple of the chunk
+ * size above it, so that lists of close lengths make the same SQL string.</li>
+ * <li>Lists of at least the collection threshold, when the arguments are
+ * bound as parameters, are bound as collection-valued parameters that the
+ * persistence provider expands while executing, one per chunk, so that the
+ * criteria query only depends on the number of chunks. The provider may
+ * expand a collection into one SQL parameter per element, so the chunk size
+ * still bounds the length of each <tt>IN</tt>.</li>
+ * </ul>
+ * Lists holding a <tt>null</tt> argument are neither padded nor bound as
+ * collections. The collection placeholders of a {@link PreparedQuery} are
+ * bound whole, their length being unknown when preparing.
+ *
+ * @author AntonioRabelo
+ */
+public class InListStrategy {
+
+	/**
+	 * Read-only strategy compiling every list into a single <tt>IN</tt>.
+	 */
+	public static final InListStrategy SINGLE_IN = new InListStrategy().readOnlyCopy();
+
+	private int chunkSize = Integer.MAX_VALUE;
+	private boolean padding;
+	private int collectionThreshold = Integer.MAX_VALUE;
+
+	private final boolean readOnly;
+
+	/**
+	 * Construct a strategy compiling every list into a single <tt>IN</tt>.
+	 */
+	public InListStrategy() {
+		this.readOnly = false;
+	}
+
+	/**
+	 * Construct a copy of another strategy.
+	 *
+	 * @param strategy Strategy to copy.
+	 */
+	public InListStrategy(InListStrategy strategy) {
+		this(strategy, false);
+	}
+
+	private InListStrategy(InListStrategy strategy, boolean readOnly) {
+		this.chunkSize = strategy.chunkSize;
+		this.padding = strategy.padding;
+		this.collectionThreshold = strategy.collectionThreshold;
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Copy this strategy into a strategy that cannot be changed.
+	 *
+	 * @return a read-only copy, whose setters throw an {@link UnsupportedOperationException}.
+	 */
+	public InListStrategy readOnlyCopy() {
+		return new InListStrategy(this, true);
+	}
+
+	/**
+	 * @return the maximum number of arguments of an <tt>IN</tt>.
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		checkWritable();
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @return <tt>true</tt> if lists of parameters are padded.
+	 */
+	public boolean isPadding() {
+		return padding;
+	}
+
+	public void setPadding(boolean padding) {
+		checkWritable();
+		this.padding = padding;
+	}
+
+	/**
+	 * @return the length from which lists are bound as one collection parameter.
+	 */
+	public int getCollectionThreshold() {
+		return collectionThreshold;
+	}
+
+	public void setCollectionThreshold(int collectionThreshold) {
+		checkWritable();
+		if (collectionThreshold < 1) {
+			throw new IllegalArgumentException("Collection threshold must be positive: " + collectionThreshold);
+		}
+		this.collectionThreshold = collectionThreshold;
+	}
+
+	private void checkWritable() {
+		if (readOnly) {
+			throw new UnsupportedOperationException("In-list strategy is read-only.");
+		}
+	}
+
+	/**
+	 * Verify if a list of parameters is bound as one collection parameter.
+	 *
+	 * @param size Number of arguments.
+	 * @return     <tt>true</tt> if the list is bound as a collection.
+	 */
+	public boolean isCollection(int size) {
+		return size >= collectionThreshold;
+	}
+
+	/**
+	 * Get the number of <tt>IN</tt>s a list of arguments is split into.
+	 *
+	 * @param size Number of arguments.
+	 * @return     the number of chunks, 1 for an empty list.
+	 */
+	public int chunkCount(int size) {
+		return size <= chunkSize ? 1 : (int) (((long) size + chunkSize - 1) / chunkSize);
+	}
+
+	/**
+	 * Get the number of parameters of a list of arguments.
+	 *
+	 * @param size Number of arguments.
+	 * @return     the padded size, <tt>size</tt> itself when not padding.
+	 */
+	public int paddedSize(int size) {
+		if (!padding || size <= 1) {
+			return size;
+		}
+		if (size > chunkSize) {
+			return (int) Math.min(Integer.MAX_VALUE, ((long) size + chunkSize - 1) / chunkSize * chunkSize);
+		}
+		int padded = Integer.highestOneBit(size - 1) << 1;
+		return (padded <= 0) ? size : Math.min(padded, chunkSize);
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.Metamodel;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.parser.ast.ComparisonOperatorProxy;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.LogicalOperator;
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * JoinAnalysis
+ *
+ * Null-rejection analysis of a RSQL AST, finding the joins without which no
+ * entity can match it. A comparison rejects nulls when it cannot hold for a
+ * null property, which is the case of every built in operator except
+ * <tt>==null</tt>; such a comparison requires all the joins leading to its
+ * property. A conjunction requires the joins of any of its children, and a
+ * disjunction only those required by all of its children.
+ * <p>
+ * When the node is the whole where clause of a query, the required joins
+ * can be INNER joins without changing its results.
+ *
+ * @author AntonioRabelo
+ */
+final class JoinAnalysis {
+
+	private JoinAnalysis() {
+	}
+
+	/**
+	 * Find the joins required by a node.
+	 *
+	 * @param node     RSQL AST node.
+	 * @param rootType Java type of the root the joins start from.
+	 * @param manager  JPA EntityManager.
+	 * @param misc     Facade with the mapper and argument parser.
+	 * @return         the translated paths of the required joins, as keys of the created joins.
+	 */
+	static Set<String> requiredJoins(Node node, Class<?> rootType, EntityManager manager, BuilderTools misc) {
+		Metamodel metamodel = manager.getMetamodel();
+		return requiredJoins(node, SelectorIndex.of(metamodel.managedType(rootType)), metamodel, misc);
+	}
+
+	private static Set<String> requiredJoins(Node node, SelectorIndex index, Metamodel metamodel, BuilderTools misc) {
+		if (node instanceof LogicalNode) {
+			LogicalNode logical = (LogicalNode) node;
+			boolean conjunction = logical.getOperator() == LogicalOperator.AND;
+			Set<String> required = null;
+			for (Node child : logical.getChildren()) {
+				Set<String> joins = requiredJoins(child, index, metamodel, misc);
+				if (required == null) {
+					required = new HashSet<>(joins);
+				} else if (conjunction) {
+					required.addAll(joins);
+				} else {
+					required.retainAll(joins);
+				}
+			}
+			return required == null ? Collections.<String>emptySet() : required;
+		}
+		if (node instanceof ComparisonNode) {
+			return requiredJoins((ComparisonNode) node, index, metamodel, misc);
+		}
+		return Collections.emptySet();
+	}
+
+	private static Set<String> requiredJoins(ComparisonNode comparison, SelectorIndex index, Metamodel metamodel, BuilderTools misc) {
+		ComparisonOperatorProxy operator = ComparisonOperatorProxy.asEnum(comparison.getOperator());
+		if (operator == null) {
+			// nothing is known about the predicates of other operators
+			return Collections.emptySet();
+		}
+		SelectorIndex.Resolution resolution = index.resolve(comparison.getSelector(), misc.getPropertiesMapper(), metamodel);
+		if (resolution == null) {
+			return Collections.emptySet();
+		}
+		if (operator == ComparisonOperatorProxy.EQUAL && isNull(comparison.getArguments().get(0), resolution.javaType, misc)) {
+			return Collections.emptySet();
+		}
+		Set<String> joins = new HashSet<>();
+		for (SelectorIndex.Step step : resolution.steps) {
+			if (step.join) {
+				joins.add(step.path);
+			}
+		}
+		return joins;
+	}
+
+	/**
+	 * Verify if an argument is parsed as <tt>null</tt>, in which case the
+	 * equality is an "is null" constraint. Arguments that fail to parse are
+	 * taken as null, the error is reported when the predicate is built.
+	 * Placeholders of a {@link PreparedQuery} are not null, since it rejects
+	 * null values when they are bound.
+	 */
+	private static boolean isNull(String argument, Class<?> type, BuilderTools misc) {
+		if (PreparedQuery.isPlaceholder(argument)) {
+			return false;
+		}
+		try {
+			return misc.getArgumentParser().parse(argument, type) == null;
+		} catch (RuntimeException e) {
+			return true;
+		}
+	}
+}
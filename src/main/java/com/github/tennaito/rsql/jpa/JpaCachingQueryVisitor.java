@@ -0,0 +1,199 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
+
+import com.github.tennaito.rsql.misc.BoundedCache;
+import com.github.tennaito.rsql.misc.ParameterBindingPolicy;
+
+import cz.jirutka.rsql.parser.ast.AndNode;
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.Node;
+import cz.jirutka.rsql.parser.ast.OrNode;
+import cz.jirutka.rsql.parser.ast.RSQLVisitor;
+
+/**
+ * JpaCachingQueryVisitor
+ *
+ * Visitor class for typed query creation from RSQL AST Nodes, backed by a
+ * bounded cache of query plans keyed by the shape of the node.
+ * <p>
+ * The first node of a shape is compiled with every argument bound as a
+ * parameter; later nodes with the same shape, differing only by their
+ * argument values, reuse that criteria query and only bind the new values.
+ * Nodes with operators that are not built in are compiled on every visit.
+ * The {@link ParameterBindingPolicy} is not applied: a plan can only be reused
+ * when all of its arguments are parameters.
+ * <p>
+ * With a {@link QueryBudget}, the cost of every node is estimated from its
+ * own arguments before a plan is reused.
+ * <p>
+ * Plans depend on the builder tools, so the tools must be configured before
+ * the first visit, or the plans cleared afterwards.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Entity type
+ */
+public class JpaCachingQueryVisitor<T> extends AbstractJpaVisitor<TypedQuery<T>, T> implements RSQLVisitor<TypedQuery<T>, EntityManager> {
+
+	private static final Logger LOG = Logger.getLogger(JpaCachingQueryVisitor.class.getName());
+
+	/**
+	 * Default maximum number of cached plans.
+	 */
+	public static final int DEFAULT_MAXIMUM_PLANS = 256;
+
+	private final BoundedCache<PlanKey, QueryPlan<T>> plans;
+
+	public JpaCachingQueryVisitor(Class<T> entityClass) {
+		this(entityClass, DEFAULT_MAXIMUM_PLANS);
+	}
+
+	/**
+	 * Construct a visitor caching at most <tt>maximumPlans</tt> query plans.
+	 *
+	 * @param entityClass  target entity
+	 * @param maximumPlans maximum number of cached plans
+	 */
+	public JpaCachingQueryVisitor(Class<T> entityClass, int maximumPlans) {
+		super(entityClass);
+		this.plans = new BoundedCache<>(maximumPlans);
+	}
+
+	/* (non-Javadoc)
+	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.AndNode, java.lang.Object)
+	 */
+	public TypedQuery<T> visit(AndNode node, EntityManager entityManager) {
+		return createQuery(node, entityManager);
+	}
+
+	/* (non-Javadoc)
+	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.OrNode, java.lang.Object)
+	 */
+	public TypedQuery<T> visit(OrNode node, EntityManager entityManager) {
+		return createQuery(node, entityManager);
+	}
+
+	/* (non-Javadoc)
+	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.ComparisonNode, java.lang.Object)
+	 */
+	public TypedQuery<T> visit(ComparisonNode node, EntityManager entityManager) {
+		return createQuery(node, entityManager);
+	}
+
+	/**
+	 * @return the number of cached query plans.
+	 */
+	public int getPlanCount() {
+		return plans.size();
+	}
+
+	/**
+	 * Discard all cached query plans.
+	 */
+	public void clearPlans() {
+		plans.clear();
+	}
+
+	private TypedQuery<T> createQuery(Node node, EntityManager entityManager) {
+		String shape = QueryShape.of(node, getBuilderTools().getInListStrategy());
+		if (shape == null) {
+			LOG.log(Level.FINE, "Node {0} cannot be cached, compiling it.", node);
+			return entityManager.createQuery(compile(node, entityManager, null));
+		}
+
+		PlanKey key = new PlanKey(entityManager.getEntityManagerFactory(), shape);
+		QueryPlan<T> plan = plans.get(key);
+		if (plan != null && !admits(node, entityManager)) {
+			// the arguments break the budget the plan was admitted for, compiling rejects or degrades the node.
+			return entityManager.createQuery(compile(node, entityManager, null));
+		}
+		if (plan != null) {
+			TypedQuery<T> query = plan.createQuery(node, entityManager, getBuilderTools().getArgumentParser(), getBuilderTools().getQueryListener());
+			if (query != null) {
+				return query;
+			}
+			// an argument did not fit the plan, fall back to a one-off compilation.
+			return entityManager.createQuery(compile(node, entityManager, null));
+		}
+
+		QueryParameters parameters = new QueryParameters();
+		CriteriaQuery<T> criteria = compile(node, entityManager, parameters);
+		plans.putIfAbsent(key, new QueryPlan<>(criteria, node, parameters));
+		return parameters.apply(entityManager.createQuery(criteria));
+	}
+
+	/**
+	 * Check the arguments of a node against the budget of the builder tools:
+	 * a plan is shared by lists of different sizes and patterns with or
+	 * without leading wildcards, so its admission does not hold for every node.
+	 */
+	private boolean admits(Node node, EntityManager entityManager) {
+		QueryBudget budget = getBuilderTools().getQueryBudget();
+		return budget == null || budget.violations(QueryCost.estimate(node, entityClass, entityManager, getBuilderTools())).isEmpty();
+	}
+
+	private CriteriaQuery<T> compile(Node node, EntityManager entityManager, QueryParameters parameters) {
+		CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
+		From root = criteria.from(entityClass);
+		PredicateBuilder predicateBuilder = new PredicateBuilder().bindParameters(parameters, parameters == null ? null : ParameterBindingPolicy.BIND_ALL).whereClauseOf(criteria);
+		return criteria.where(predicateBuilder.createPredicate(node, root, entityClass, entityManager, getBuilderTools()));
+	}
+
+	/**
+	 * Cache key: the shape of a node for a persistence unit.
+	 */
+	private static final class PlanKey {
+
+		private final Object factory;
+		private final String shape;
+
+		private PlanKey(Object factory, String shape) {
+			this.factory = factory;
+			this.shape = shape;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PlanKey)) {
+				return false;
+			}
+			PlanKey other = (PlanKey) obj;
+			return factory == other.factory && shape.equals(other.shape);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(factory) + shape.hashCode();
+		}
+	}
+}
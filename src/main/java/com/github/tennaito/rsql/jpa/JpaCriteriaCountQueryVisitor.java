@@ -23,9 +23,6 @@
  */
 package com.github.tennaito.rsql.jpa;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
 import javax.persistence.EntityManager;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
@@ -33,6 +30,7 @@ import javax.persistence.criteria.Root;
 
 import cz.jirutka.rsql.parser.ast.AndNode;
 import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.Node;
 import cz.jirutka.rsql.parser.ast.OrNode;
 import cz.jirutka.rsql.parser.ast.RSQLVisitor;
 
@@ -47,8 +45,6 @@ import cz.jirutka.rsql.parser.ast.RSQLVisitor;
  */
 public class JpaCriteriaCountQueryVisitor<T> extends AbstractJpaVisitor<CriteriaQuery<Long>, T>  implements RSQLVisitor<CriteriaQuery<Long>, EntityManager> {
 
-    private static final Logger LOG = Logger.getLogger(JpaCriteriaCountQueryVisitor.class.getName());
-
     private final JpaPredicateVisitor<T> predicateVisitor;
 
     private Root<T> root;
@@ -68,47 +64,54 @@ public class JpaCriteriaCountQueryVisitor<T> extends AbstractJpaVisitor<Criteria
         return this.predicateVisitor;
     }
 
+    /**
+     * Define the side table receiving the arguments as parameters, to be set
+     * on the typed query with {@link QueryParameters#apply(javax.persistence.TypedQuery)}.
+     *
+     * @param parameters Side table of parameters, <tt>null</tt> for literals.
+     * @return Fluent interface.
+     */
+    public JpaCriteriaCountQueryVisitor<T> defineParameters(QueryParameters parameters) {
+        this.predicateVisitor.defineParameters(parameters);
+        return this;
+    }
+
     /* (non-Javadoc)
      * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.AndNode, java.lang.Object)
      */
     public CriteriaQuery<Long> visit(AndNode node, EntityManager entityManager) {
-        LOG.log(Level.INFO, "Creating CriteriaQuery for AndNode: {0}", node);
-
-        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
-        root = cq.from(entityClass);
-        cq.select(cb.countDistinct(root));
-        cq.where(this.getPredicateVisitor().defineRoot(root).visit(node, entityManager));
-
-        return cq;
+        return createCountQuery(node, entityManager);
     }
 
     /* (non-Javadoc)
      * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.OrNode, java.lang.Object)
      */
     public CriteriaQuery<Long> visit(OrNode node, EntityManager entityManager) {
-        LOG.log(Level.INFO, "Creating CriteriaQuery for OrNode: {0}", node);
-
-        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
-        root = cq.from(entityClass);
-        cq.select(cb.countDistinct(root));
-        root = cq.from(entityClass);
-        cq.where(this.getPredicateVisitor().defineRoot(root).visit(node, entityManager));
-        return cq;
+        return createCountQuery(node, entityManager);
     }
 
     /* (non-Javadoc)
      * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.ComparisonNode, java.lang.Object)
      */
     public CriteriaQuery<Long> visit(ComparisonNode node, EntityManager entityManager) {
-        LOG.log(Level.INFO, "Creating CriteriaQuery for ComparisonNode: {0}", node);
+        return createCountQuery(node, entityManager);
+    }
 
+    /**
+     * Create the count query, selecting the count of the distinct entities
+     * only when the {@link CountStrategy} requires it or a collection was joined.
+     */
+    private CriteriaQuery<Long> createCountQuery(Node node, EntityManager entityManager) {
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         CriteriaQuery<Long> cq = cb.createQuery(Long.class);
         root = cq.from(entityClass);
-        cq.select(cb.countDistinct(root));
-        cq.where(this.getPredicateVisitor().defineRoot(root).visit(node, entityManager));
+        CountStrategy strategy = getBuilderTools().getCountStrategy();
+        JpaPredicateVisitor<T> visitor = this.getPredicateVisitor().defineQueryRoot(cq, root);
+        PredicateBuilder predicateBuilder = visitor.getPredicateBuilder();
+        predicateBuilder.pluralPathStrategy(strategy == CountStrategy.EXISTS ? PluralPathStrategy.EXISTS : null);
+        cq.where(node.accept(visitor, entityManager));
+        boolean distinct = strategy == CountStrategy.DISTINCT || predicateBuilder.hasPluralJoins();
+        cq.select(distinct ? cb.countDistinct(root) : cb.count(root));
         return cq;
     }
 
@@ -23,8 +23,8 @@
  */
 package com.github.tennaito.rsql.jpa;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Collections;
+import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.criteria.CriteriaQuery;
@@ -39,6 +39,13 @@ import cz.jirutka.rsql.parser.ast.RSQLVisitor;
  * JpaCriteriaQueryVisitor
  *
  * Visitor class for Criteria Query creation from RSQL AST Nodes.
+ * <p>
+ * A sort defined on the visitor is compiled in the same pass as the node,
+ * ordering by the joins the node created:
+ * <pre>
+ * JpaCriteriaQueryVisitor&lt;Course&gt; visitor = new JpaCriteriaQueryVisitor&lt;Course&gt;(Course.class).defineSort(SortKey.parse("department.name,-startDate"));
+ * CriteriaQuery&lt;Course&gt; query = new RSQLParser().parse("department.code==MI-MDW").accept(visitor, manager);
+ * </pre>
  *
  * @author AntonioRabelo
  *
@@ -46,9 +53,9 @@ import cz.jirutka.rsql.parser.ast.RSQLVisitor;
  */
 public class JpaCriteriaQueryVisitor<T> extends AbstractJpaVisitor<CriteriaQuery<T>, T>  implements RSQLVisitor<CriteriaQuery<T>, EntityManager> {
 
-	private static final Logger LOG = Logger.getLogger(JpaCriteriaQueryVisitor.class.getName());
-
 	private final JpaPredicateVisitor<T> predicateVisitor;
+
+	private List<SortKey> sort = Collections.emptyList();
 	
 	/**
 	 * Construtor with template varargs for entityClass discovery.
@@ -70,33 +77,60 @@ public class JpaCriteriaQueryVisitor<T> extends AbstractJpaVisitor<CriteriaQuery
 		return this.predicateVisitor;
 	}
 
+	/**
+	 * Define the side table receiving the arguments as parameters, to be set
+	 * on the typed query with {@link QueryParameters#apply(javax.persistence.TypedQuery)}.
+	 *
+	 * @param parameters Side table of parameters, <tt>null</tt> for literals.
+	 * @return Fluent interface.
+	 */
+	public JpaCriteriaQueryVisitor<T> defineParameters(QueryParameters parameters) {
+		this.predicateVisitor.defineParameters(parameters);
+		return this;
+	}
+
+	/**
+	 * Define the sort of the queries created from now on.
+	 *
+	 * @param sort Sort keys, in order, see {@link SortKey#parse(String)}; <tt>null</tt> or empty for no order.
+	 * @return Fluent interface.
+	 */
+	public JpaCriteriaQueryVisitor<T> defineSort(List<SortKey> sort) {
+		this.sort = sort == null ? Collections.<SortKey>emptyList() : sort;
+		return this;
+	}
+
 	/* (non-Javadoc)
 	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.AndNode, java.lang.Object)
 	 */
 	public CriteriaQuery<T> visit(AndNode node, EntityManager entityManager) {
-		LOG.log(Level.INFO, "Creating CriteriaQuery for AndNode: {0}", node);
 		CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
     	From root = criteria.from(entityClass);
-		return criteria.where(this.getPredicateVisitor().defineRoot(root).visit(node, entityManager));
+		return order(criteria.where(this.getPredicateVisitor().defineQueryRoot(criteria, root).visit(node, entityManager)), entityManager);
 	}
 
 	/* (non-Javadoc)
 	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.OrNode, java.lang.Object)
 	 */
 	public CriteriaQuery<T> visit(OrNode node, EntityManager entityManager) {
-		LOG.log(Level.INFO, "Creating CriteriaQuery for OrNode: {0}", node);
 		CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
     	From root = criteria.from(entityClass);
-		return criteria.where(this.getPredicateVisitor().defineRoot(root).visit(node, entityManager));
+		return order(criteria.where(this.getPredicateVisitor().defineQueryRoot(criteria, root).visit(node, entityManager)), entityManager);
 	}
 
 	/* (non-Javadoc)
 	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.ComparisonNode, java.lang.Object)
 	 */
 	public CriteriaQuery<T> visit(ComparisonNode node, EntityManager entityManager) {
-		LOG.log(Level.INFO, "Creating CriteriaQuery for ComparisonNode: {0}", node);
     	CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
     	From root = criteria.from(entityClass);
-    	return criteria.where(this.getPredicateVisitor().defineRoot(root).visit(node, entityManager));
+    	return order(criteria.where(this.getPredicateVisitor().defineQueryRoot(criteria, root).visit(node, entityManager)), entityManager);
+	}
+
+	private CriteriaQuery<T> order(CriteriaQuery<T> criteria, EntityManager entityManager) {
+		if (sort.isEmpty()) {
+			return criteria;
+		}
+		return criteria.orderBy(this.predicateVisitor.createOrders(sort, entityManager));
 	}
 }
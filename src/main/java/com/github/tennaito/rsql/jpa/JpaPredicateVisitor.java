@@ -28,12 +28,14 @@ import cz.jirutka.rsql.parser.ast.ComparisonNode;
 import cz.jirutka.rsql.parser.ast.OrNode;
 import cz.jirutka.rsql.parser.ast.RSQLVisitor;
 
+import java.util.List;
+
 import javax.persistence.EntityManager;
+import javax.persistence.criteria.CommonAbstractCriteria;
 import javax.persistence.criteria.From;
+import javax.persistence.criteria.Order;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * JpaPredicateVisitor
@@ -46,11 +48,6 @@ import java.util.logging.Logger;
  */
 public class JpaPredicateVisitor<T> extends AbstractJpaVisitor<Predicate, T>  implements RSQLVisitor<Predicate, EntityManager> {
 
-	/**
-	 * Logger.
-	 */
-	private static final Logger LOG = Logger.getLogger(JpaPredicateVisitor.class.getName());
-
 	/**
 	 * Root.
 	 */
@@ -68,12 +65,44 @@ public class JpaPredicateVisitor<T> extends AbstractJpaVisitor<Predicate, T>  im
 	}
 
 	/**
-	 * Define the From node.
+	 * Define the From node. Joins created from a previous root are not reused.
 	 * @param root From node that expressions path depends on.
 	 * @return Fluent interface.
 	 */
 	public JpaPredicateVisitor<T> defineRoot(From root) {
+		return defineRoot(null, root);
+	}
+
+	/**
+	 * Define the From node of a query whose whole where clause is the visited
+	 * node, allowing INNER joins where every match requires them and subqueries.
+	 * @param query Query the From node belongs to.
+	 * @param root From node that expressions path depends on.
+	 * @return Fluent interface.
+	 */
+	JpaPredicateVisitor<T> defineQueryRoot(CommonAbstractCriteria query, From root) {
+		return defineRoot(query, root);
+	}
+
+	private JpaPredicateVisitor<T> defineRoot(CommonAbstractCriteria query, From root) {
+		if (this.root != root) {
+			this.predicateBuilder.clearJoins();
+		}
 		this.root = root;
+		this.predicateBuilder.whereClauseOf(query);
+		return this;
+	}
+
+	/**
+	 * Define the side table receiving the arguments as parameters, instead of
+	 * rendering them as literals. Arguments inlined by the
+	 * {@link com.github.tennaito.rsql.misc.ParameterBindingPolicy} stay literals.
+	 *
+	 * @param parameters Side table of parameters, <tt>null</tt> for literals.
+	 * @return Fluent interface.
+	 */
+	public JpaPredicateVisitor<T> defineParameters(QueryParameters parameters) {
+		this.predicateBuilder.bindParameters(parameters, null);
 		return this;
 	}
 
@@ -81,7 +110,6 @@ public class JpaPredicateVisitor<T> extends AbstractJpaVisitor<Predicate, T>  im
 	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.AndNode, java.lang.Object)
 	 */
 	public Predicate visit(AndNode node, EntityManager entityManager) {
-		LOG.log(Level.INFO, "Creating Predicate for AndNode: {0}", node);
 		return predicateBuilder.createPredicate(node, root, entityClass, entityManager, getBuilderTools());
 	}
 
@@ -89,7 +117,6 @@ public class JpaPredicateVisitor<T> extends AbstractJpaVisitor<Predicate, T>  im
 	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.OrNode, java.lang.Object)
 	 */
 	public Predicate visit(OrNode node, EntityManager entityManager) {
-		LOG.log(Level.INFO, "Creating Predicate for OrNode: {0}", node);
 		return predicateBuilder.createPredicate(node, root, entityClass, entityManager, getBuilderTools());
 	}
 
@@ -97,7 +124,6 @@ public class JpaPredicateVisitor<T> extends AbstractJpaVisitor<Predicate, T>  im
 	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.ComparisonNode, java.lang.Object)
 	 */
 	public Predicate visit(ComparisonNode node, EntityManager entityManager) {
-		LOG.log(Level.INFO, "Creating Predicate for ComparisonNode: {0}", node);
     	return predicateBuilder.createPredicate(node, root, entityClass, entityManager, getBuilderTools());
 	}
 
@@ -105,8 +131,20 @@ public class JpaPredicateVisitor<T> extends AbstractJpaVisitor<Predicate, T>  im
 		return predicateBuilder.findPropertyPath(path, root, entityManager, getBuilderTools());
 	}
 
+	/**
+	 * Create the orders of sort keys from the defined root, reusing the joins
+	 * of the visited nodes.
+	 *
+	 * @param sort Sort keys, in order, see {@link SortKey#parse(String)}.
+	 * @param entityManager JPA EntityManager.
+	 * @return the orders of the keys.
+	 */
+	public List<Order> createOrders(List<SortKey> sort, EntityManager entityManager) {
+		return predicateBuilder.createOrders(sort, root, entityManager, getBuilderTools());
+	}
+
     /**
-     * Used for testing
+     * Used for testing and by the count visitor
      */
 	PredicateBuilder getPredicateBuilder() {
         return predicateBuilder;
@@ -0,0 +1,472 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.builder.FrozenBuilderTools;
+import com.github.tennaito.rsql.builder.SimpleBuilderTools;
+
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * JpaQueryCompiler
+ *
+ * Immutable compiler of RSQL AST Nodes into predicates and queries on an
+ * entity. Unlike the visitors, it keeps no state between compilations: the
+ * joins and parameters of a query live in a context created for each call,
+ * and the builder tools are frozen at construction. A single instance can be
+ * built at startup and shared by all threads:
+ * <pre>
+ * static final JpaQueryCompiler&lt;Course&gt; COURSES = new JpaQueryCompiler&lt;Course&gt;(Course.class, tools);
+ *
+ * List&lt;Course&gt; courses = COURSES.createQuery(new RSQLParser().parse("id==1"), manager).getResultList();
+ * </pre>
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Entity type
+ */
+public final class JpaQueryCompiler<T> {
+
+	private final Class<T> entityClass;
+
+	private final BuilderTools builderTools;
+
+	/**
+	 * Construct a compiler with the default builder tools.
+	 *
+	 * @param entityClass target entity
+	 */
+	public JpaQueryCompiler(Class<T> entityClass) {
+		this(entityClass, new SimpleBuilderTools());
+	}
+
+	/**
+	 * Construct a compiler with a frozen copy of the builder tools: replacing
+	 * the tools of <tt>tools</tt>, registering operators or changing the
+	 * simple mapper and policies, the budget or the in-list strategy
+	 * afterwards does not affect the compiler. The other tools are shared,
+	 * see {@link FrozenBuilderTools}.
+	 *
+	 * @param entityClass target entity
+	 * @param tools       builder tools to freeze
+	 */
+	public JpaQueryCompiler(Class<T> entityClass, BuilderTools tools) {
+		if (entityClass == null) {
+			throw new IllegalArgumentException("Entity class was undefined.");
+		}
+		this.entityClass = entityClass;
+		this.builderTools = FrozenBuilderTools.freeze(tools);
+	}
+
+	/**
+	 * @return the target entity.
+	 */
+	public Class<T> getEntityClass() {
+		return entityClass;
+	}
+
+	/**
+	 * @return the frozen builder tools.
+	 */
+	public BuilderTools getBuilderTools() {
+		return builderTools;
+	}
+
+	/**
+	 * Create a predicate from a node, rendering the arguments as literals.
+	 *
+	 * @param node          RSQL AST node.
+	 * @param root          From that predicate expression paths depends on.
+	 * @param entityManager JPA EntityManager.
+	 * @return              Predicate a predicate representation of the Node.
+	 */
+	public Predicate createPredicate(Node node, From root, EntityManager entityManager) {
+		return createPredicate(node, root, entityManager, null);
+	}
+
+	/**
+	 * Create a predicate from a node.
+	 *
+	 * @param node          RSQL AST node.
+	 * @param root          From that predicate expression paths depends on.
+	 * @param entityManager JPA EntityManager.
+	 * @param parameters    Side table receiving the arguments as parameters, <tt>null</tt> for literals.
+	 * @return              Predicate a predicate representation of the Node.
+	 */
+	public Predicate createPredicate(Node node, From root, EntityManager entityManager, QueryParameters parameters) {
+		PredicateBuilder predicateBuilder = new PredicateBuilder(new CompilationContext(parameters, null));
+		return predicateBuilder.createPredicate(node, root, entityClass, entityManager, builderTools);
+	}
+
+	/**
+	 * Create a criteria query from a node, rendering the arguments as literals.
+	 *
+	 * @param node          RSQL AST node.
+	 * @param entityManager JPA EntityManager.
+	 * @return              the criteria query selecting the matching entities.
+	 */
+	public CriteriaQuery<T> createCriteriaQuery(Node node, EntityManager entityManager) {
+		return createCriteriaQuery(node, entityManager, null);
+	}
+
+	/**
+	 * Create a criteria query from a node.
+	 *
+	 * @param node          RSQL AST node.
+	 * @param entityManager JPA EntityManager.
+	 * @param parameters    Side table receiving the arguments as parameters, <tt>null</tt> for literals.
+	 * @return              the criteria query selecting the matching entities.
+	 */
+	public CriteriaQuery<T> createCriteriaQuery(Node node, EntityManager entityManager, QueryParameters parameters) {
+		return createCriteriaQuery(node, Collections.<SortKey>emptyList(), entityManager, parameters);
+	}
+
+	/**
+	 * Create a sorted criteria query from a node. The sort is compiled in the
+	 * same pass as the node and orders by the joins the node created.
+	 *
+	 * @param node          RSQL AST node.
+	 * @param sort          Sort keys, in order, see {@link SortKey#parse(String)}.
+	 * @param entityManager JPA EntityManager.
+	 * @param parameters    Side table receiving the arguments as parameters, <tt>null</tt> for literals.
+	 * @return              the criteria query selecting the matching entities in order.
+	 * @throws IllegalArgumentException if a selector does not resolve, or a sort key is not sortable.
+	 */
+	public CriteriaQuery<T> createCriteriaQuery(Node node, List<SortKey> sort, EntityManager entityManager, QueryParameters parameters) {
+		return createCriteriaQuery(node, sort, Expansion.NONE, entityManager, parameters);
+	}
+
+	/**
+	 * Create a sorted criteria query from a node, fetch joining the to-one
+	 * associations of an expansion. The node reuses those fetch joins instead
+	 * of joining the same paths again. The collections of the expansion are
+	 * not fetched, so that the query can be paginated: load them with
+	 * {@link #expand(List, Expansion, EntityManager)} once the entities are read.
+	 *
+	 * @param node          RSQL AST node, <tt>null</tt> to select every entity.
+	 * @param sort          Sort keys, in order, see {@link SortKey#parse(String)}.
+	 * @param expansion     Associations to load along with the entities.
+	 * @param entityManager JPA EntityManager.
+	 * @param parameters    Side table receiving the arguments as parameters, <tt>null</tt> for literals.
+	 * @return              the criteria query selecting the matching entities in order.
+	 * @throws IllegalArgumentException if a selector does not resolve, a sort key is not sortable, or an expanded path is not made of associations.
+	 */
+	public CriteriaQuery<T> createCriteriaQuery(Node node, List<SortKey> sort, Expansion expansion, EntityManager entityManager, QueryParameters parameters) {
+		CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
+		From root = criteria.from(entityClass);
+		CompilationContext context = new CompilationContext(parameters, null);
+		// the fetch joins take the join types the node requires, the predicates reuse the analysis
+		context.requiredJoins = JoinAnalysis.requiredJoins(node, entityClass, entityManager, builderTools);
+		FetchPlanner.fetchToOne(expansion, root, context, entityManager, builderTools);
+		PredicateBuilder predicateBuilder = new PredicateBuilder(context).whereClauseOf(criteria);
+		if (node != null) {
+			criteria.where(predicateBuilder.createPredicate(node, root, entityClass, entityManager, builderTools));
+		}
+		if (!sort.isEmpty()) {
+			criteria.orderBy(predicateBuilder.createOrders(sort, root, entityManager, builderTools));
+		}
+		return criteria;
+	}
+
+	/**
+	 * Create a count query from a node, rendering the arguments as literals.
+	 *
+	 * @param node          RSQL AST node.
+	 * @param entityManager JPA EntityManager.
+	 * @return              the criteria query counting the matching entities.
+	 */
+	public CriteriaQuery<Long> createCountQuery(Node node, EntityManager entityManager) {
+		return createCountQuery(node, entityManager, null);
+	}
+
+	/**
+	 * Create a count query from a node, counting as the {@link CountStrategy}
+	 * of the builder tools tells.
+	 *
+	 * @param node          RSQL AST node.
+	 * @param entityManager JPA EntityManager.
+	 * @param parameters    Side table receiving the arguments as parameters, <tt>null</tt> for literals.
+	 * @return              the criteria query counting the matching entities.
+	 */
+	public CriteriaQuery<Long> createCountQuery(Node node, EntityManager entityManager, QueryParameters parameters) {
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Long> criteria = builder.createQuery(Long.class);
+		Root<T> root = criteria.from(entityClass);
+		CountStrategy strategy = builderTools.getCountStrategy();
+		PredicateBuilder predicateBuilder = new PredicateBuilder(new CompilationContext(parameters, null)).whereClauseOf(criteria)
+				.pluralPathStrategy(strategy == CountStrategy.EXISTS ? PluralPathStrategy.EXISTS : null);
+		criteria.where(predicateBuilder.createPredicate(node, root, entityClass, entityManager, builderTools));
+		boolean distinct = strategy == CountStrategy.DISTINCT || predicateBuilder.hasPluralJoins();
+		return criteria.select(distinct ? builder.countDistinct(root) : builder.count(root));
+	}
+
+	/**
+	 * Prepare a query from a node whose arguments may be placeholders, to be
+	 * bound to values on each execution. The other arguments are rendered as
+	 * literals.
+	 *
+	 * @param node          RSQL AST node, like <tt>department.id==$department;code=in=$codes</tt>.
+	 * @param entityManager JPA EntityManager.
+	 * @return              the prepared query.
+	 * @throws IllegalArgumentException if a selector does not resolve, or a placeholder is misplaced.
+	 */
+	public PreparedQuery<T> prepare(Node node, EntityManager entityManager) {
+		CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
+		From root = criteria.from(entityClass);
+		CompilationContext context = new CompilationContext();
+		context.placeholders = new LinkedHashMap<>();
+		PredicateBuilder predicateBuilder = new PredicateBuilder(context).whereClauseOf(criteria);
+		criteria.where(predicateBuilder.createPredicate(node, root, entityClass, entityManager, builderTools));
+		return new PreparedQuery<>(criteria, context.placeholders);
+	}
+
+	/**
+	 * Create a tuple query selecting only the given fields of the entities
+	 * matching a node, with the arguments bound as parameters except the ones
+	 * inlined by the {@link com.github.tennaito.rsql.misc.ParameterBindingPolicy}.
+	 * The fields are resolved from the same root as the node and reuse its
+	 * joins; its comparisons on collections are compiled as
+	 * {@link PluralPathStrategy#EXISTS} subqueries, so that there is a tuple
+	 * per entity. Each element of a tuple is aliased by its selector:
+	 * <pre>
+	 * for (Tuple row : COURSES.createTupleQuery(node, Projection.parse("id,name,department.name"), sort, manager).getResultList()) {
+	 *     String department = row.get("department.name", String.class);
+	 * }
+	 * </pre>
+	 *
+	 * @param node          RSQL AST node, <tt>null</tt> to select all the entities.
+	 * @param projection    Fields to select.
+	 * @param sort          Sort keys, in order, see {@link SortKey#parse(String)}.
+	 * @param entityManager JPA EntityManager.
+	 * @return              the typed query with every parameter set.
+	 * @throws IllegalArgumentException if a selector does not resolve, a field is an association, or a field or sort key is a collection.
+	 */
+	public TypedQuery<Tuple> createTupleQuery(Node node, Projection projection, List<SortKey> sort, EntityManager entityManager) {
+		CriteriaQuery<Tuple> criteria = entityManager.getCriteriaBuilder().createTupleQuery();
+		QueryParameters parameters = new QueryParameters();
+		List<Selection<?>> selections = createSelections(criteria, node, projection, sort, entityManager, parameters);
+		for (int i = 0; i < selections.size(); i++) {
+			selections.get(i).alias(projection.getSelectors().get(i));
+		}
+		criteria.multiselect(selections);
+		return parameters.apply(entityManager.createQuery(criteria));
+	}
+
+	/**
+	 * Create a query passing the given fields of the entities matching a node
+	 * to a constructor of the result class, in order, like
+	 * {@link #createTupleQuery(Node, Projection, List, EntityManager)} does.
+	 *
+	 * @param node          RSQL AST node, <tt>null</tt> to select all the entities.
+	 * @param projection    Fields to select.
+	 * @param resultClass   Class with a public constructor taking the fields, in order.
+	 * @param sort          Sort keys, in order, see {@link SortKey#parse(String)}.
+	 * @param entityManager JPA EntityManager.
+	 * @return              the typed query with every parameter set.
+	 * @throws IllegalArgumentException if a selector does not resolve, a field is an association, or a field or sort key is a collection.
+	 */
+	public <R> TypedQuery<R> createProjectionQuery(Node node, Projection projection, Class<R> resultClass, List<SortKey> sort, EntityManager entityManager) {
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<R> criteria = builder.createQuery(resultClass);
+		QueryParameters parameters = new QueryParameters();
+		List<Selection<?>> selections = createSelections(criteria, node, projection, sort, entityManager, parameters);
+		criteria.select(builder.construct(resultClass, selections.toArray(new Selection<?>[0])));
+		return parameters.apply(entityManager.createQuery(criteria));
+	}
+
+	private List<Selection<?>> createSelections(CriteriaQuery<?> criteria, Node node, Projection projection, List<SortKey> sort,
+			EntityManager entityManager, QueryParameters parameters) {
+		Root<T> root = criteria.from(entityClass);
+		PredicateBuilder predicateBuilder = new PredicateBuilder(new CompilationContext(parameters, null)).whereClauseOf(criteria)
+				.pluralPathStrategy(PluralPathStrategy.EXISTS);
+		if (node != null) {
+			criteria.where(predicateBuilder.createPredicate(node, root, entityClass, entityManager, builderTools));
+		}
+		List<Selection<?>> selections = new ArrayList<>(projection.getSelectors().size());
+		for (String selector : projection.getSelectors()) {
+			selections.add(predicateBuilder.findSelectionPath(selector, root, entityManager, builderTools));
+		}
+		if (!sort.isEmpty()) {
+			criteria.orderBy(predicateBuilder.createOrders(sort, root, entityManager, builderTools));
+		}
+		return selections;
+	}
+
+	/**
+	 * Fetch a page of the entities matching a node, in the order of the sort
+	 * keys, after the row a continuation token was issued for. The keys are
+	 * compared with the values of that row instead of skipping an offset, so
+	 * that a deep page costs as much as the first one when an index covers
+	 * the keys:
+	 * <pre>
+	 * KeysetPage&lt;Course&gt; page = COURSES.fetchPage(node, Arrays.asList(SortKey.asc("department.name"), SortKey.desc("startDate")), null, 20, manager);
+	 * KeysetPage&lt;Course&gt; next = COURSES.fetchPage(node, sort, page.getContinuation(), 20, manager);
+	 * </pre>
+	 * The identifier of the entity is appended to the keys as a tiebreaker.
+	 * The keys must reach comparable, non null properties through to-one
+	 * associations; their joins are shared with the node, whose comparisons
+	 * on collections are compiled as {@link PluralPathStrategy#EXISTS}
+	 * subqueries so that no entity is repeated.
+	 *
+	 * @param node          RSQL AST node, <tt>null</tt> to page through all the entities.
+	 * @param sort          Sort keys, in order.
+	 * @param continuation  Token of the previous page, <tt>null</tt> for the first page.
+	 * @param pageSize      Maximum number of entities of the page.
+	 * @param entityManager JPA EntityManager.
+	 * @return              the page and the token of the next one.
+	 * @throws IllegalArgumentException if a sort key is not sortable, or the token was not issued for this sort.
+	 */
+	public KeysetPage<T> fetchPage(Node node, List<SortKey> sort, String continuation, int pageSize, EntityManager entityManager) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+		}
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+		Root<T> root = criteria.from(entityClass);
+		QueryParameters parameters = new QueryParameters();
+		PredicateBuilder predicateBuilder = new PredicateBuilder(new CompilationContext(parameters, null)).whereClauseOf(criteria)
+				.pluralPathStrategy(PluralPathStrategy.EXISTS);
+		List<Predicate> predicates = new ArrayList<>(2);
+		if (node != null) {
+			predicates.add(predicateBuilder.createPredicate(node, root, entityClass, entityManager, builderTools));
+		}
+		Keyset keyset = new Keyset(sort, root, predicateBuilder, entityManager, builderTools);
+		if (continuation != null) {
+			List<Object> values = keyset.decode(continuation, builderTools.getArgumentParser());
+			predicates.add(keyset.createSeekPredicate(values, builder, parameters));
+		}
+
+		List<Selection<?>> selections = new ArrayList<>();
+		selections.add(root);
+		selections.addAll(keyset.getPaths());
+		criteria.multiselect(selections).where(predicates.toArray(new Predicate[0])).orderBy(keyset.createOrders(builder));
+		List<Tuple> rows = parameters.apply(entityManager.createQuery(criteria)).setMaxResults(pageSize + 1).getResultList();
+
+		List<T> items = new ArrayList<>(Math.min(rows.size(), pageSize));
+		for (int i = 0; i < rows.size() && i < pageSize; i++) {
+			items.add(rows.get(i).get(0, entityClass));
+		}
+		String next = rows.size() > pageSize ? keyset.encode(rows.get(pageSize - 1), 1) : null;
+		return new KeysetPage<>(items, next);
+	}
+
+	/**
+	 * Create a typed query from a node, with the arguments bound as parameters
+	 * except the ones inlined by the
+	 * {@link com.github.tennaito.rsql.misc.ParameterBindingPolicy}.
+	 *
+	 * @param node          RSQL AST node.
+	 * @param entityManager JPA EntityManager.
+	 * @return              the typed query with every parameter set.
+	 */
+	public TypedQuery<T> createQuery(Node node, EntityManager entityManager) {
+		return createQuery(node, Collections.<SortKey>emptyList(), entityManager);
+	}
+
+	/**
+	 * Create a sorted typed query from a node, with the arguments bound as
+	 * parameters except the ones inlined by the
+	 * {@link com.github.tennaito.rsql.misc.ParameterBindingPolicy}.
+	 *
+	 * @param node          RSQL AST node.
+	 * @param sort          Sort keys, in order, see {@link SortKey#parse(String)}.
+	 * @param entityManager JPA EntityManager.
+	 * @return              the typed query with every parameter set.
+	 */
+	public TypedQuery<T> createQuery(Node node, List<SortKey> sort, EntityManager entityManager) {
+		return createQuery(node, sort, Expansion.NONE, entityManager);
+	}
+
+	/**
+	 * Create a sorted typed query from a node, fetch joining the to-one
+	 * associations of an expansion, with the arguments bound as parameters
+	 * except the ones inlined by the
+	 * {@link com.github.tennaito.rsql.misc.ParameterBindingPolicy}:
+	 * <pre>
+	 * Expansion expansion = Expansion.parse("department,department.head.titles");
+	 * List&lt;Course&gt; courses = COURSES.createQuery(node, sort, expansion, manager).setMaxResults(20).getResultList();
+	 * COURSES.expand(courses, expansion, manager);
+	 * </pre>
+	 *
+	 * @param node          RSQL AST node.
+	 * @param sort          Sort keys, in order, see {@link SortKey#parse(String)}.
+	 * @param expansion     Associations to load along with the entities.
+	 * @param entityManager JPA EntityManager.
+	 * @return              the typed query with every parameter set.
+	 */
+	public TypedQuery<T> createQuery(Node node, List<SortKey> sort, Expansion expansion, EntityManager entityManager) {
+		QueryParameters parameters = new QueryParameters();
+		return parameters.apply(entityManager.createQuery(createCriteriaQuery(node, sort, expansion, entityManager, parameters)));
+	}
+
+	/**
+	 * Read the sorted entities matching a node once it is rewritten by the
+	 * {@link NodeOptimizer}: an unsatisfiable filter reads no entity without
+	 * running a query, and a tautology is dropped, reading every entity.
+	 *
+	 * @param node          RSQL AST node.
+	 * @param sort          Sort keys, in order, see {@link SortKey#parse(String)}.
+	 * @param entityManager JPA EntityManager.
+	 * @return              the matching entities in order.
+	 */
+	public List<T> getOptimizedResultList(Node node, List<SortKey> sort, EntityManager entityManager) {
+		OptimizedNode optimized = NodeOptimizer.optimize(node, entityClass, entityManager, builderTools);
+		if (optimized.isUnsatisfiable()) {
+			return new ArrayList<>();
+		}
+		return createQuery(optimized.getNode(), sort, entityManager).getResultList();
+	}
+
+	/**
+	 * Load the collections of an expansion for entities read by a query, with
+	 * a query per expanded path through a collection rather than a select per
+	 * entity. The entities must be managed by the entity manager.
+	 *
+	 * @param entities      Entities read by the entity manager.
+	 * @param expansion     Associations to load along with the entities.
+	 * @param entityManager JPA EntityManager.
+	 * @return              the same entities.
+	 * @throws IllegalArgumentException if an expanded path is not made of associations.
+	 */
+	public List<T> expand(List<T> entities, Expansion expansion, EntityManager entityManager) {
+		FetchPlanner.loadToMany(entities, expansion, entityClass, entityManager, builderTools);
+		return entities;
+	}
+}
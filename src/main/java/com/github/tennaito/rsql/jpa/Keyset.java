@@ -0,0 +1,243 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.misc.ArgumentFormatException;
+import com.github.tennaito.rsql.misc.ArgumentParser;
+
+/**
+ * Keyset
+ *
+ * Sort keys of a keyset paginated query, resolved from its root, ending with
+ * the identifier of the entity as a tiebreaker so that the order is total.
+ * <p>
+ * A page is continued after the keys of its last row: for keys
+ * <tt>k1, k2</tt> the next page is
+ * <tt>k1 &gt; v1 OR (k1 = v1 AND k2 &gt; v2)</tt>, <tt>&lt;</tt> for the
+ * descending keys. The continuation token carries the sort it was issued
+ * for and the values of the keys, formatted so that the
+ * {@link ArgumentParser} reads them back.
+ *
+ * @author AntonioRabelo
+ */
+final class Keyset {
+
+	private final List<SortKey> keys = new ArrayList<>();
+	private final List<Path<?>> paths = new ArrayList<>();
+
+	/**
+	 * Resolve the sort keys with the joins of the predicate builder.
+	 *
+	 * @param sort              Sort keys, in order.
+	 * @param root              Root of the query.
+	 * @param predicateBuilder  Builder of the predicates of the same query.
+	 * @param entityManager     JPA EntityManager.
+	 * @param misc              Facade with all necessary tools for predicate creation.
+	 * @throws IllegalArgumentException if a key is not sortable, or the entity has no single identifier.
+	 */
+	Keyset(List<SortKey> sort, From<?, ?> root, PredicateBuilder predicateBuilder, EntityManager entityManager, BuilderTools misc) {
+		SingularAttribute<?, ?> identifier = identifier(entityManager.getMetamodel().entity(root.getJavaType()));
+		boolean identified = false;
+		for (SortKey key : sort) {
+			Path<?> path = predicateBuilder.findSortPath(key.getSelector(), root, entityManager, misc);
+			identified |= path.getParentPath() == root && identifier.equals(path.getModel());
+			keys.add(key);
+			paths.add(path);
+		}
+		if (!identified) {
+			keys.add(SortKey.asc(identifier.getName()));
+			paths.add(root.get(identifier.getName()));
+		}
+	}
+
+	static SingularAttribute<?, ?> identifier(EntityType<?> type) {
+		if (type.hasSingleIdAttribute()) {
+			for (SingularAttribute<?, ?> attribute : type.getSingularAttributes()) {
+				if (attribute.isId()) {
+					return attribute;
+				}
+			}
+		}
+		throw new IllegalArgumentException("Entity has no single identifier: " + type.getJavaType().getName());
+	}
+
+	/**
+	 * @return the paths of the keys, in order.
+	 */
+	List<Path<?>> getPaths() {
+		return paths;
+	}
+
+	/**
+	 * @return the sort, identifier included, as in <tt>department.name,-startDate,id</tt>.
+	 */
+	String getSpecification() {
+		StringBuilder specification = new StringBuilder();
+		for (SortKey key : keys) {
+			if (specification.length() > 0) {
+				specification.append(',');
+			}
+			specification.append(key);
+		}
+		return specification.toString();
+	}
+
+	/**
+	 * @param builder  JPA CriteriaBuilder.
+	 * @return         the orders of the keys.
+	 */
+	List<Order> createOrders(CriteriaBuilder builder) {
+		List<Order> orders = new ArrayList<>(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			orders.add(keys.get(i).isAscending() ? builder.asc(paths.get(i)) : builder.desc(paths.get(i)));
+		}
+		return orders;
+	}
+
+	/**
+	 * Create the predicate of the rows after the given keys, binding each
+	 * value as a parameter.
+	 *
+	 * @param values      Values of the keys of the last row.
+	 * @param builder     JPA CriteriaBuilder.
+	 * @param parameters  Side table receiving the values.
+	 * @return            the seek predicate.
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	Predicate createSeekPredicate(List<Object> values, CriteriaBuilder builder, QueryParameters parameters) {
+		List<Predicate> alternatives = new ArrayList<>(keys.size());
+		List<Predicate> equalities = new ArrayList<>(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			Expression path = paths.get(i);
+			Expression value = parameters.bind(builder, PredicateBuilder.wrapperType(path.getJavaType()), values.get(i), UnaryOperator.identity(), null, i);
+			List<Predicate> alternative = new ArrayList<>(equalities);
+			alternative.add(keys.get(i).isAscending() ? builder.greaterThan(path, value) : builder.lessThan(path, value));
+			alternatives.add(alternative.size() == 1 ? alternative.get(0) : builder.and(alternative.toArray(new Predicate[0])));
+			equalities.add(builder.equal(path, value));
+		}
+		return builder.or(alternatives.toArray(new Predicate[0]));
+	}
+
+	///////////////  CONTINUATION TOKEN  ///////////////
+
+	/**
+	 * Encode the keys of a row selected with the paths of the keys after
+	 * <tt>offset</tt> other selections.
+	 *
+	 * @param row     Last row of a page.
+	 * @param offset  Position of the first key in the row.
+	 * @return        the continuation token.
+	 * @throws IllegalStateException if a key is <tt>null</tt>.
+	 */
+	String encode(Tuple row, int offset) {
+		StringBuilder token = new StringBuilder();
+		append(token, getSpecification());
+		for (int i = 0; i < keys.size(); i++) {
+			Object value = row.get(offset + i);
+			if (value == null) {
+				throw new IllegalStateException("Keyset pagination requires non null sort keys: " + keys.get(i).getSelector());
+			}
+			append(token, format(value));
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decode the values of the keys from a continuation token.
+	 *
+	 * @param token   Continuation token issued for the same sort.
+	 * @param parser  Parser of the values to the types of the keys.
+	 * @return        the values, in order.
+	 * @throws IllegalArgumentException if the token is malformed or was issued for another sort.
+	 */
+	List<Object> decode(String token, ArgumentParser parser) {
+		List<String> fields = new ArrayList<>(keys.size() + 1);
+		try {
+			String text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			int start = 0;
+			while (start < text.length()) {
+				int colon = text.indexOf(':', start);
+				int end = colon + 1 + Integer.parseInt(text.substring(start, colon));
+				fields.add(text.substring(colon + 1, end));
+				start = end;
+			}
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Invalid continuation token: " + token, e);
+		}
+		if (fields.size() != keys.size() + 1 || !fields.get(0).equals(getSpecification())) {
+			throw new IllegalArgumentException("Continuation token was not issued for the sort " + getSpecification() + ": " + token);
+		}
+		List<Object> values = new ArrayList<>(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			try {
+				values.add(parser.parse(fields.get(i + 1), PredicateBuilder.wrapperType(paths.get(i).getJavaType())));
+			} catch (ArgumentFormatException e) {
+				throw new IllegalArgumentException("Invalid continuation token: " + token, e);
+			}
+		}
+		return values;
+	}
+
+	private static void append(StringBuilder token, String field) {
+		token.append(field.length()).append(':').append(field);
+	}
+
+	/**
+	 * Format a value the way the default argument parser reads it back.
+	 */
+	private static String format(Object value) {
+		if (value instanceof Timestamp) {
+			return ((Timestamp) value).toLocalDateTime().toString();
+		}
+		if (value instanceof Date && !(value instanceof java.sql.Date) && !(value instanceof java.sql.Time)) {
+			return OffsetDateTime.ofInstant(((Date) value).toInstant(), ZoneOffset.UTC).toString();
+		}
+		if (value instanceof Enum) {
+			return ((Enum<?>) value).name();
+		}
+		return value.toString();
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * KeysetPage
+ *
+ * Page of entities fetched by keyset pagination, and the opaque token to
+ * fetch the next page with.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Entity type
+ */
+public final class KeysetPage<T> {
+
+	private final List<T> items;
+	private final String continuation;
+
+	KeysetPage(List<T> items, String continuation) {
+		this.items = Collections.unmodifiableList(items);
+		this.continuation = continuation;
+	}
+
+	/**
+	 * @return the entities of the page, in order.
+	 */
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * @return the token of the next page, <tt>null</tt> when the page is the last one.
+	 */
+	public String getContinuation() {
+		return continuation;
+	}
+
+	/**
+	 * @return <tt>true</tt> if there may be a next page.
+	 */
+	public boolean hasNext() {
+		return continuation != null;
+	}
+}
@@ -0,0 +1,515 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.time.temporal.Temporal;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.Metamodel;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.misc.StringMatching;
+import com.github.tennaito.rsql.misc.TemporalGranularity;
+import com.github.tennaito.rsql.parser.ast.ComparisonOperatorProxy;
+
+import cz.jirutka.rsql.parser.ast.AndNode;
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.LogicalOperator;
+import cz.jirutka.rsql.parser.ast.Node;
+import cz.jirutka.rsql.parser.ast.OrNode;
+
+/**
+ * NodeOptimizer
+ *
+ * Algebraic rewriting of a RSQL AST, run between parsing and predicate
+ * building, that keeps the entities matched by the filter:
+ * <ul>
+ * <li>nested conjunctions and disjunctions are flattened, and duplicate children removed;</li>
+ * <li>in a disjunction, equalities on a same property are merged into one <tt>=in=</tt>;</li>
+ * <li>in a conjunction, equalities, <tt>=in=</tt> lists and exclusions on a same property
+ * are intersected, and range bounds on a same numeric or date property reduced to the
+ * tightest lower and upper bound;</li>
+ * <li>unsatisfiable comparisons, like <tt>x==1;x==2</tt> or <tt>x=gt=5;x=lt=3</tt>, and
+ * tautologies, like <tt>x==null,x!=null</tt>, are detected and propagated.</li>
+ * </ul>
+ * Selectors are compared by the property they resolve to. Comparisons with
+ * operators that are not built in, or whose selector or arguments cannot be
+ * resolved, are kept as they are and left to the predicate building.
+ * String equalities are only merged when they are case sensitive and no
+ * argument is a pattern for the {@link StringMatching} of the property, and
+ * are never found contradictory, since the database collation decides.
+ *
+ * @author AntonioRabelo
+ */
+public final class NodeOptimizer {
+
+	private static final Logger LOG = Logger.getLogger(NodeOptimizer.class.getName());
+
+	private NodeOptimizer() {
+	}
+
+	/**
+	 * Optimize a node.
+	 *
+	 * @param node    RSQL AST node.
+	 * @param entity  Entity the selectors start from.
+	 * @param manager JPA EntityManager.
+	 * @param misc    Facade with the mapper, argument parser and string matching policy.
+	 * @return        the optimized node, or the finding that it is unsatisfiable or a tautology.
+	 */
+	public static OptimizedNode optimize(Node node, Class<?> entity, EntityManager manager, BuilderTools misc) {
+		Metamodel metamodel = manager.getMetamodel();
+		Context context = new Context(entity, SelectorIndex.of(metamodel.managedType(entity)), metamodel, misc);
+		OptimizedNode optimized = optimize(node, context);
+		if (optimized.getNode() == null) {
+			LOG.log(Level.FINE, "Filter {0} is {1}.", new Object[]{node, optimized});
+		}
+		return optimized;
+	}
+
+	private static OptimizedNode optimize(Node node, Context context) {
+		if (!(node instanceof LogicalNode)) {
+			return OptimizedNode.of(node);
+		}
+		LogicalNode logical = (LogicalNode) node;
+		boolean conjunction = logical.getOperator() == LogicalOperator.AND;
+
+		// flatten and remove duplicates; a constant child decides or vanishes
+		Set<Node> children = new LinkedHashSet<>();
+		for (Node child : logical.getChildren()) {
+			OptimizedNode optimized = optimize(child, context);
+			if (optimized.getNode() == null) {
+				if (optimized.isTautology() != conjunction) {
+					return optimized;
+				}
+				continue;
+			}
+			Node optimizedChild = optimized.getNode();
+			if (optimizedChild instanceof LogicalNode && ((LogicalNode) optimizedChild).getOperator() == logical.getOperator()) {
+				children.addAll(((LogicalNode) optimizedChild).getChildren());
+			} else {
+				children.add(optimizedChild);
+			}
+		}
+
+		// group the comparisons by property
+		Map<String, List<Fact>> groups = new LinkedHashMap<>();
+		for (Node child : children) {
+			if (child instanceof ComparisonNode) {
+				Fact fact = Fact.of((ComparisonNode) child, context);
+				if (fact != null) {
+					List<Fact> group = groups.get(fact.property);
+					if (group == null) {
+						group = new ArrayList<>();
+						groups.put(fact.property, group);
+					}
+					group.add(fact);
+				}
+			}
+		}
+
+		Rewrite rewrite = new Rewrite();
+		for (List<Fact> group : groups.values()) {
+			if (group.size() < 2) {
+				continue;
+			}
+			boolean decided = conjunction ? !conjunction(group, rewrite) : disjunction(group, rewrite);
+			if (decided) {
+				return conjunction ? OptimizedNode.unsatisfiable() : OptimizedNode.tautology();
+			}
+		}
+
+		List<Node> optimized = new ArrayList<>(children.size());
+		for (Node child : children) {
+			Node replacement = rewrite.replaced.get(child);
+			if (replacement != null) {
+				optimized.add(replacement);
+			} else if (!rewrite.removed.contains(child)) {
+				optimized.add(child);
+			}
+		}
+		if (optimized.isEmpty()) {
+			return conjunction ? OptimizedNode.tautology() : OptimizedNode.unsatisfiable();
+		}
+		if (optimized.size() == 1) {
+			return OptimizedNode.of(optimized.get(0));
+		}
+		return OptimizedNode.of(conjunction ? new AndNode(optimized) : new OrNode(optimized));
+	}
+
+	/**
+	 * Reduce the comparisons of a conjunction on a same property.
+	 *
+	 * @return <tt>false</tt> if they cannot hold together.
+	 */
+	private static boolean conjunction(List<Fact> group, Rewrite rewrite) {
+		boolean isNull = false;
+		boolean nullRejected = false;
+		for (Fact fact : group) {
+			if (fact.isNull()) {
+				isNull = true;
+			} else {
+				nullRejected = true;
+			}
+		}
+		if (isNull) {
+			return !nullRejected;
+		}
+		if (!group.get(0).comparable) {
+			return true;
+		}
+
+		List<Fact> absorbed = new ArrayList<>();
+		List<Object> values = null;
+		List<String> arguments = null;
+		List<Object> excluded = new ArrayList<>();
+		Bound lower = null;
+		Bound upper = null;
+		for (Fact fact : group) {
+			switch (fact.operator) {
+				case EQUAL:
+				case IN: {
+					if (values == null) {
+						values = new ArrayList<>();
+						arguments = new ArrayList<>();
+						for (int i = 0; i < fact.values.size(); i++) {
+							if (indexOf(values, fact.values.get(i)) < 0) {
+								values.add(fact.values.get(i));
+								arguments.add(fact.node.getArguments().get(i));
+							}
+						}
+					} else {
+						for (int i = values.size() - 1; i >= 0; i--) {
+							if (indexOf(fact.values, values.get(i)) < 0) {
+								values.remove(i);
+								arguments.remove(i);
+							}
+						}
+					}
+					absorbed.add(fact);
+					break;
+				}
+				case NOT_EQUAL:
+				case NOT_IN: {
+					if (!fact.isNotNull()) {
+						excluded.addAll(fact.values);
+					}
+					absorbed.add(fact);
+					break;
+				}
+				default: {
+					if (!fact.ordered) {
+						break;
+					}
+					Bound bound = Bound.of(fact);
+					if (bound.lower) {
+						lower = (lower == null || bound.tighterThan(lower)) ? bound : lower;
+					} else {
+						upper = (upper == null || bound.tighterThan(upper)) ? bound : upper;
+					}
+					absorbed.add(fact);
+				}
+			}
+		}
+
+		if (values != null) {
+			for (int i = values.size() - 1; i >= 0; i--) {
+				Object value = values.get(i);
+				if (indexOf(excluded, value) >= 0 || (lower != null && !lower.admits(value)) || (upper != null && !upper.admits(value))) {
+					values.remove(i);
+					arguments.remove(i);
+				}
+			}
+			if (values.isEmpty()) {
+				return false;
+			}
+			if (absorbed.size() > 1) {
+				Fact first = absorbed.get(0);
+				ComparisonOperatorProxy operator = values.size() == 1 ? ComparisonOperatorProxy.EQUAL : ComparisonOperatorProxy.IN;
+				rewrite.replace(absorbed, new ComparisonNode(operator.getOperator(), first.node.getSelector(), arguments));
+			}
+			return true;
+		}
+		if (lower != null && upper != null && lower.excludes(upper)) {
+			return false;
+		}
+		List<Fact> ranges = new ArrayList<>();
+		for (Fact fact : absorbed) {
+			if (fact.operator != ComparisonOperatorProxy.NOT_EQUAL && fact.operator != ComparisonOperatorProxy.NOT_IN
+					&& (lower == null || fact != lower.fact) && (upper == null || fact != upper.fact)) {
+				ranges.add(fact);
+			}
+		}
+		rewrite.remove(ranges);
+		return true;
+	}
+
+	/**
+	 * Reduce the comparisons of a disjunction on a same property.
+	 *
+	 * @return <tt>true</tt> if one of them always holds.
+	 */
+	private static boolean disjunction(List<Fact> group, Rewrite rewrite) {
+		boolean isNull = false;
+		boolean isNotNull = false;
+		List<Fact> equalities = new ArrayList<>();
+		for (Fact fact : group) {
+			isNull |= fact.isNull();
+			isNotNull |= fact.isNotNull();
+			if ((fact.operator == ComparisonOperatorProxy.EQUAL || fact.operator == ComparisonOperatorProxy.IN)
+					&& fact.mergeable && !fact.isNull()) {
+				equalities.add(fact);
+			}
+		}
+		// through a collection, the property is null or not null for some element only
+		if (isNull && isNotNull && !group.get(0).plural) {
+			return true;
+		}
+		if (equalities.size() > 1) {
+			List<Object> values = new ArrayList<>();
+			List<String> arguments = new ArrayList<>();
+			for (Fact fact : equalities) {
+				for (int i = 0; i < fact.values.size(); i++) {
+					if (indexOf(values, fact.values.get(i)) < 0) {
+						values.add(fact.values.get(i));
+						arguments.add(fact.node.getArguments().get(i));
+					}
+				}
+			}
+			ComparisonOperatorProxy operator = values.size() == 1 ? ComparisonOperatorProxy.EQUAL : ComparisonOperatorProxy.IN;
+			rewrite.replace(equalities, new ComparisonNode(operator.getOperator(), equalities.get(0).node.getSelector(), arguments));
+		}
+		return false;
+	}
+
+	private static int indexOf(List<Object> values, Object value) {
+		for (int i = 0; i < values.size(); i++) {
+			if (same(values.get(i), value)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static boolean same(Object one, Object other) {
+		if (one instanceof Comparable && other != null && one.getClass() == other.getClass()) {
+			return ((Comparable) one).compareTo(other) == 0;
+		}
+		return one == null ? other == null : one.equals(other);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static int compare(Object one, Object other) {
+		return ((Comparable) one).compareTo(other);
+	}
+
+	/**
+	 * What the optimization needs to know about the entity.
+	 */
+	private static final class Context {
+
+		private final Class<?> entity;
+		private final SelectorIndex index;
+		private final Metamodel metamodel;
+		private final BuilderTools misc;
+
+		private Context(Class<?> entity, SelectorIndex index, Metamodel metamodel, BuilderTools misc) {
+			this.entity = entity;
+			this.index = index;
+			this.metamodel = metamodel;
+			this.misc = misc;
+		}
+	}
+
+	/**
+	 * Comparison resolved to its property, with its parsed arguments.
+	 */
+	private static final class Fact {
+
+		private final ComparisonNode node;
+		private final ComparisonOperatorProxy operator;
+		private final String property;
+		private final boolean plural;
+		private final List<Object> values;
+		/** equalities on the property can be merged into one <tt>=in=</tt>. */
+		private final boolean mergeable;
+		/** distinct values of the property never compare as equal. */
+		private final boolean comparable;
+		/** range bounds of the property can be compared. */
+		private final boolean ordered;
+		/** range bounds of the property stand for whole days. */
+		private final boolean days;
+
+		private Fact(ComparisonNode node, ComparisonOperatorProxy operator, String property, boolean plural,
+				List<Object> values, boolean mergeable, boolean comparable, boolean ordered, boolean days) {
+			this.node = node;
+			this.operator = operator;
+			this.property = property;
+			this.plural = plural;
+			this.values = values;
+			this.mergeable = mergeable;
+			this.comparable = comparable;
+			this.ordered = ordered;
+			this.days = days;
+		}
+
+		/**
+		 * @return the fact of a comparison, <tt>null</tt> if it cannot be analyzed.
+		 */
+		private static Fact of(ComparisonNode node, Context context) {
+			ComparisonOperatorProxy operator = ComparisonOperatorProxy.asEnum(node.getOperator());
+			if (operator == null) {
+				return null;
+			}
+			SelectorIndex.Resolution resolution = context.index.resolve(node.getSelector(), context.misc.getPropertiesMapper(), context.metamodel);
+			if (resolution == null) {
+				return null;
+			}
+			List<Object> values;
+			try {
+				values = new ArrayList<>(context.misc.getArgumentParser().parse(node.getArguments(), resolution.javaType));
+			} catch (RuntimeException e) {
+				return null;
+			}
+			boolean plural = false;
+			for (SelectorIndex.Step step : resolution.steps) {
+				plural |= step.plural;
+			}
+			boolean ordered = true;
+			boolean mergeable = true;
+			for (Object value : values) {
+				if (value == null && operator != ComparisonOperatorProxy.EQUAL && operator != ComparisonOperatorProxy.NOT_EQUAL) {
+					// only ==null and !=null are null checks
+					return null;
+				}
+				ordered &= value instanceof Number || value instanceof Date || (value instanceof Temporal && value instanceof Comparable);
+			}
+			boolean comparable = resolution.javaType != String.class;
+			if (!comparable && (operator == ComparisonOperatorProxy.EQUAL || operator == ComparisonOperatorProxy.NOT_EQUAL)) {
+				StringMatching matching = context.misc.getStringMatchingPolicy().getMatching(node.getSelector(), context.entity);
+				mergeable = !matching.isCaseInsensitive();
+				for (String argument : node.getArguments()) {
+					mergeable &= !matching.isPattern(argument);
+				}
+			}
+			String property = resolution.steps[resolution.steps.length - 1].path;
+			boolean days = PredicateBuilder.isDayComparable(resolution.javaType)
+					&& context.misc.getTemporalGranularityPolicy().getGranularity(node.getSelector(), context.entity) == TemporalGranularity.DAY;
+			return new Fact(node, operator, property, plural, Collections.unmodifiableList(values), mergeable, comparable, ordered, days);
+		}
+
+		private boolean isNull() {
+			return operator == ComparisonOperatorProxy.EQUAL && values.get(0) == null;
+		}
+
+		private boolean isNotNull() {
+			return operator == ComparisonOperatorProxy.NOT_EQUAL && values.get(0) == null;
+		}
+	}
+
+	/**
+	 * Lower or upper bound of a range comparison. The bounds of whole days are
+	 * the inclusive start of a day for lower bounds and the exclusive one for
+	 * upper bounds, as they are compared by the predicates.
+	 */
+	private static final class Bound {
+
+		private final Fact fact;
+		private final Object value;
+		private final boolean lower;
+		private final boolean inclusive;
+
+		private Bound(Fact fact, Object value, boolean lower, boolean inclusive) {
+			this.fact = fact;
+			this.value = value;
+			this.lower = lower;
+			this.inclusive = inclusive;
+		}
+
+		private static Bound of(Fact fact) {
+			Object value = fact.values.get(0);
+			boolean lower = fact.operator == ComparisonOperatorProxy.GREATER_THAN || fact.operator == ComparisonOperatorProxy.GREATER_THAN_OR_EQUAL;
+			boolean inclusive = fact.operator == ComparisonOperatorProxy.GREATER_THAN_OR_EQUAL || fact.operator == ComparisonOperatorProxy.LESS_THAN_OR_EQUAL;
+			if (fact.days) {
+				boolean nextDay = fact.operator == ComparisonOperatorProxy.GREATER_THAN || fact.operator == ComparisonOperatorProxy.LESS_THAN_OR_EQUAL;
+				return new Bound(fact, PredicateBuilder.startOfDay(value, nextDay ? 1 : 0), lower, lower);
+			}
+			return new Bound(fact, value, lower, inclusive);
+		}
+
+		private boolean tighterThan(Bound other) {
+			int comparison = compare(value, other.value);
+			return (lower ? comparison > 0 : comparison < 0) || (comparison == 0 && !inclusive && other.inclusive);
+		}
+
+		private boolean admits(Object candidate) {
+			int comparison = compare(candidate, value);
+			return (lower ? comparison > 0 : comparison < 0) || (comparison == 0 && inclusive);
+		}
+
+		/**
+		 * @return <tt>true</tt> if no value is within this lower bound and the upper one.
+		 */
+		private boolean excludes(Bound upper) {
+			int comparison = compare(value, upper.value);
+			return comparison > 0 || (comparison == 0 && !(inclusive && upper.inclusive));
+		}
+	}
+
+	/**
+	 * Replacements and removals of the children of a logical node.
+	 */
+	private static final class Rewrite {
+
+		private final Map<Node, Node> replaced = new IdentityHashMap<>();
+		private final Set<Node> removed = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+
+		/**
+		 * Replace the first fact by the node, and remove the others.
+		 */
+		private void replace(List<Fact> facts, Node node) {
+			replaced.put(facts.get(0).node, node);
+			remove(facts.subList(1, facts.size()));
+		}
+
+		private void remove(List<Fact> facts) {
+			for (Fact fact : facts) {
+				removed.add(fact.node);
+			}
+		}
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+
+/**
+ * OperatorHandler
+ *
+ * Creates the predicates of the comparisons of one operator, once their
+ * selector is resolved into a path. Handlers are registered in the
+ * {@link OperatorRegistry} of the builder tools.
+ *
+ * @author AntonioRabelo
+ */
+public interface OperatorHandler {
+
+    /**
+     * Create a Predicate from the RSQL AST comparison node.
+     *
+     * @param path        Path of the selector of the comparison.
+     * @param comparison  RSQL AST comparison node.
+     * @param builder     JPA CriteriaBuilder.
+     * @param tools       Builder tools facade, to parse the arguments.
+     * @return            Predicate a predicate representation of the node.
+     * @throws IllegalArgumentException When illegal arguments are found.
+     */
+    Predicate createPredicate(Path<?> path, ComparisonNode comparison, CriteriaBuilder builder, BuilderTools tools) throws IllegalArgumentException;
+}
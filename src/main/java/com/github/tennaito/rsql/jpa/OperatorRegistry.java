@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.tennaito.rsql.parser.ast.ComparisonOperatorProxy;
+
+import cz.jirutka.rsql.parser.ast.ComparisonOperator;
+import cz.jirutka.rsql.parser.ast.RSQLOperators;
+
+/**
+ * OperatorRegistry
+ *
+ * Handlers of the comparison operators beyond the ones of
+ * {@link ComparisonOperatorProxy}, looked up once per comparison node. The
+ * operators without handler are delegated to the {@link PredicateBuilderStrategy}
+ * of the builder tools, if any.
+ * <p>
+ * The registry is filled while configuring the builder tools, and only read
+ * while building predicates. Frozen builder tools hold a read-only copy.
+ *
+ * @author AntonioRabelo
+ */
+public class OperatorRegistry {
+
+	/**
+	 * Read-only registry without any handler.
+	 */
+	public static final OperatorRegistry EMPTY = new OperatorRegistry().readOnlyCopy();
+
+	private final Map<ComparisonOperator, OperatorHandler> handlers = new HashMap<>();
+
+	private final boolean readOnly;
+
+	public OperatorRegistry() {
+		this.readOnly = false;
+	}
+
+	/**
+	 * Copy the handlers of another registry.
+	 *
+	 * @param registry Registry to copy.
+	 */
+	public OperatorRegistry(OperatorRegistry registry) {
+		this(registry, false);
+	}
+
+	private OperatorRegistry(OperatorRegistry registry, boolean readOnly) {
+		this.handlers.putAll(registry.handlers);
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Copy the handlers of this registry into a registry that cannot be changed.
+	 *
+	 * @return a read-only copy, on which {@link #register(ComparisonOperator, OperatorHandler)} throws.
+	 */
+	public OperatorRegistry readOnlyCopy() {
+		return new OperatorRegistry(this, true);
+	}
+
+	/**
+	 * Register the handler of an operator, replacing the previous one.
+	 *
+	 * @param operator  Comparison operator, not one of {@link ComparisonOperatorProxy}.
+	 * @param handler   Handler of the comparisons of the operator.
+	 * @return          this registry.
+	 * @throws UnsupportedOperationException if this registry is read-only.
+	 */
+	public OperatorRegistry register(ComparisonOperator operator, OperatorHandler handler) {
+		if (readOnly) {
+			throw new UnsupportedOperationException("Operator registry is read-only.");
+		}
+		if (operator == null || handler == null) {
+			throw new IllegalArgumentException("Operator and handler must be defined.");
+		}
+		if (ComparisonOperatorProxy.asEnum(operator) != null) {
+			throw new IllegalArgumentException("Built-in operator cannot be replaced: " + operator);
+		}
+		handlers.put(operator, handler);
+		return this;
+	}
+
+	/**
+	 * Get the handler of an operator.
+	 *
+	 * @param operator Comparison operator.
+	 * @return         the handler, <tt>null</tt> if none was registered.
+	 */
+	public OperatorHandler getHandler(ComparisonOperator operator) {
+		return handlers.get(operator);
+	}
+
+	/**
+	 * Get the operators the parser must know of: the default ones and the
+	 * registered ones.
+	 *
+	 * @return a new set of operators, for <tt>new RSQLParser(operators)</tt>.
+	 */
+	public Set<ComparisonOperator> getOperators() {
+		Set<ComparisonOperator> operators = new HashSet<>(RSQLOperators.defaultOperators());
+		operators.addAll(handlers.keySet());
+		return operators;
+	}
+}
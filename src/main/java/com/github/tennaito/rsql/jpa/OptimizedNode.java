@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * OptimizedNode
+ *
+ * Outcome of the {@link NodeOptimizer}: an equivalent node, or the finding
+ * that the filter matches no entity or every entity, in which case the
+ * caller needs no query with that filter.
+ *
+ * @author AntonioRabelo
+ */
+public final class OptimizedNode {
+
+	private static final OptimizedNode UNSATISFIABLE = new OptimizedNode(null, false);
+
+	private static final OptimizedNode TAUTOLOGY = new OptimizedNode(null, true);
+
+	private final Node node;
+
+	private final boolean tautology;
+
+	private OptimizedNode(Node node, boolean tautology) {
+		this.node = node;
+		this.tautology = tautology;
+	}
+
+	static OptimizedNode of(Node node) {
+		return new OptimizedNode(node, false);
+	}
+
+	static OptimizedNode unsatisfiable() {
+		return UNSATISFIABLE;
+	}
+
+	static OptimizedNode tautology() {
+		return TAUTOLOGY;
+	}
+
+	/**
+	 * @return the optimized node, <tt>null</tt> if the filter is unsatisfiable or a tautology.
+	 */
+	public Node getNode() {
+		return node;
+	}
+
+	/**
+	 * @return <tt>true</tt> if no entity can match the filter.
+	 */
+	public boolean isUnsatisfiable() {
+		return node == null && !tautology;
+	}
+
+	/**
+	 * @return <tt>true</tt> if every entity matches the filter.
+	 */
+	public boolean isTautology() {
+		return tautology;
+	}
+
+	@Override
+	public String toString() {
+		if (node != null) {
+			return node.toString();
+		}
+		return tautology ? "TAUTOLOGY" : "UNSATISFIABLE";
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+/**
+ * PluralPathStrategy
+ *
+ * How comparisons on selectors going through a collection (a to-many
+ * association or an element collection) are compiled.
+ *
+ * @author AntonioRabelo
+ */
+public enum PluralPathStrategy {
+
+	/**
+	 * Join the collection on the query, which returns a row per element.
+	 */
+	JOIN,
+
+	/**
+	 * Compare in a correlated EXISTS subquery, keeping one row per entity.
+	 * The comparisons of a logical node on the same collection share one
+	 * subquery, so that they hold for the same element. Applies to the
+	 * query visitors and the {@link JpaQueryCompiler} queries; a predicate
+	 * built alone, with no query to create the subquery from, joins.
+	 */
+	EXISTS
+}
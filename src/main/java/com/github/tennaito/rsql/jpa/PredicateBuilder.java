@@ -25,11 +25,19 @@
 package com.github.tennaito.rsql.jpa;
 
 import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.metrics.QueryListener;
+import com.github.tennaito.rsql.metrics.QueryPhase;
+import com.github.tennaito.rsql.misc.ParameterBindingPolicy;
+import com.github.tennaito.rsql.misc.StringMatching;
+import com.github.tennaito.rsql.misc.TemporalGranularity;
 import com.github.tennaito.rsql.parser.ast.ComparisonOperatorProxy;
+import cz.jirutka.rsql.parser.ast.AndNode;
 import cz.jirutka.rsql.parser.ast.ComparisonNode;
 import cz.jirutka.rsql.parser.ast.ComparisonOperator;
 import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.LogicalOperator;
 import cz.jirutka.rsql.parser.ast.Node;
+import cz.jirutka.rsql.parser.ast.OrNode;
 
 import javax.persistence.EntityManager;
 import javax.persistence.criteria.*;
@@ -38,7 +46,16 @@ import javax.persistence.metamodel.Attribute.PersistentAttributeType;
 import javax.persistence.metamodel.ManagedType;
 import javax.persistence.metamodel.Metamodel;
 import javax.persistence.metamodel.PluralAttribute;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -59,23 +76,26 @@ public final class PredicateBuilder {
 
     public static final Character LIKE_WILDCARD = '*';
 
-    private static final Date START_DATE;
-    private static final Date END_DATE;
+    private static final UnaryOperator<Object> START_OF_DAY = argument -> startOfDay(argument, 0);
+
+    private static final UnaryOperator<Object> START_OF_NEXT_DAY = argument -> startOfDay(argument, 1);
 
     /**
-     * Map to cache already created joins
+     * Joins already created and parameters of the query being built.
      */
-    private Map<String, Join<?, ?>> joinMap = new HashMap<>();
+    private final CompilationContext context;
 
-    static {
-        //
-        //  Use a date range that Oracle can cope with - apparently the years around 1 BC and 1 AD are messed up in Oracle - known bug
-        //
-        Calendar cal = Calendar.getInstance();
-        cal.set( 9999, Calendar.DECEMBER, 31);
-        END_DATE = cal.getTime();
-        cal.set( 5, Calendar.JANUARY, 1);           //      Use Jan 1, 5 AD, since that's where the Roman's sort of got it together with leap years.
-        START_DATE = cal.getTime();
+    public PredicateBuilder() {
+        this(new CompilationContext());
+    }
+
+    /**
+     * Create a builder for the compilation of one query.
+     *
+     * @param context  State of the query being built.
+     */
+    PredicateBuilder(CompilationContext context) {
+        this.context = context;
     }
 
     /**
@@ -89,8 +109,6 @@ public final class PredicateBuilder {
      * @return 			Predicate a predicate representation of the Node.
      */
     public <T> Predicate createPredicate(Node node, From root, Class<T> entity, EntityManager manager, BuilderTools misc) {
-        LOG.log(Level.INFO, "Creating Predicate for: {0}", node);
-
         if (node instanceof LogicalNode) {
             return createPredicate((LogicalNode)node, root, entity, manager, misc);
         }
@@ -113,23 +131,55 @@ public final class PredicateBuilder {
      * @return 				 Predicate a predicate representation of the Node.
      */
     public <T> Predicate createPredicate(LogicalNode logical, From root, Class<T> entity, EntityManager entityManager, BuilderTools misc) {
-        LOG.log(Level.INFO, "Creating Predicate for logical node: {0}", logical);
-
-    	CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    	PluralPathStrategy strategy = context.pluralPathStrategy;
+    	boolean admitted = admit(logical, root, entityManager, misc);
+    	boolean analyzed = analyzeJoins(logical, root, entityManager, misc);
+    	try {
+	    	CriteriaBuilder builder = entityManager.getCriteriaBuilder();
 
-    	List<Predicate> predicates = new ArrayList<>();
+	    	List<Predicate> predicates = new ArrayList<>();
 
-    	LOG.log(Level.INFO, "Creating Predicates from all children nodes.");
-    	for (Node node : logical.getChildren()) {
-    		predicates.add(createPredicate(node, root, entity, entityManager, misc));
-		}
+	    	// comparisons on the same collection compiled into one subquery, by collection path
+	    	Map<String, List<Node>> subqueries = null;
+	    	for (Node node : logical.getChildren()) {
+	    		String collection = (node instanceof ComparisonNode) ? findSubqueryPath((ComparisonNode) node, root, entityManager, misc) : null;
+	    		if (collection == null) {
+	    			predicates.add(createPredicate(node, root, entity, entityManager, misc));
+	    			continue;
+	    		}
+	    		if (subqueries == null) {
+	    			subqueries = new LinkedHashMap<>();
+	    		}
+	    		List<Node> members = subqueries.get(collection);
+	    		if (members == null) {
+	    			members = new ArrayList<>();
+	    			subqueries.put(collection, members);
+	    		}
+	    		members.add(node);
+			}
+	    	if (subqueries != null) {
+	    		for (List<Node> members : subqueries.values()) {
+	    			Node member = members.size() == 1 ? members.get(0)
+	    					: (logical.getOperator() == LogicalOperator.AND ? new AndNode(members) : new OrNode(members));
+	    			predicates.add(createExists(member, root, entity, entityManager, misc));
+	    		}
+	    	}
 
-        switch (logical.getOperator()) {
-            case AND : return builder.and(predicates.toArray(new Predicate[0]));
-            case OR : return builder.or(predicates.toArray(new Predicate[0]));
-        }
+	        switch (logical.getOperator()) {
+	            case AND : return builder.and(predicates.toArray(new Predicate[0]));
+	            case OR : return builder.or(predicates.toArray(new Predicate[0]));
+	        }
 
-        throw new IllegalArgumentException("Unknown operator: " + logical.getOperator());
+	        throw new IllegalArgumentException("Unknown operator: " + logical.getOperator());
+    	} finally {
+    		if (analyzed) {
+    			context.requiredJoins = null;
+    		}
+    		if (admitted) {
+    			context.cost = null;
+    			context.pluralPathStrategy = strategy;
+    		}
+    	}
     }
 
     /**
@@ -148,25 +198,151 @@ public final class PredicateBuilder {
     		LOG.log(Level.SEVERE, msg);
     		throw new IllegalArgumentException(msg);
     	}
-    	LOG.log(Level.INFO, "Creating Predicate for comparison node: {0}", comparison);
+    	PluralPathStrategy strategy = context.pluralPathStrategy;
+    	boolean admitted = admit(comparison, startRoot, entityManager, misc);
+    	boolean analyzed = analyzeJoins(comparison, startRoot, entityManager, misc);
+    	try {
+    		return createComparisonPredicate(comparison, startRoot, entity, entityManager, misc);
+    	} finally {
+    		if (analyzed) {
+    			context.requiredJoins = null;
+    		}
+    		if (admitted) {
+    			context.cost = null;
+    			context.pluralPathStrategy = strategy;
+    		}
+    	}
+    }
 
-        LOG.log(Level.INFO, "Property graph path : {0}", comparison.getSelector());
+    /**
+     * Create a Predicate from the RSQL AST comparison node, once the root is known to be defined.
+     */
+    private <T> Predicate createComparisonPredicate(ComparisonNode comparison, From startRoot, Class<T> entity, EntityManager entityManager, BuilderTools misc) {
+    	if (findSubqueryPath(comparison, startRoot, entityManager, misc) != null) {
+    		return createExists(comparison, startRoot, entity, entityManager, misc);
+    	}
+    	QueryListener listener = misc.getQueryListener();
         Expression propertyPath = findPropertyPath(comparison.getSelector(), startRoot, entityManager, misc);
 
-		LOG.log(Level.INFO, "Cast all arguments to type {0}.", propertyPath.getJavaType().getName());
+    	if (context.placeholders != null && hasPlaceholder(comparison)) {
+    		long begin = listener.begin(QueryPhase.PREDICATE_BUILD);
+    		Predicate predicate = createPlaceholderPredicate(propertyPath, comparison, entity, entityManager, misc);
+    		listener.end(QueryPhase.PREDICATE_BUILD, begin);
+    		return predicate;
+    	}
+
+    	if (ComparisonOperatorProxy.asEnum(comparison.getOperator()) == null) {
+    		OperatorHandler handler = misc.getOperatorRegistry().getHandler(comparison.getOperator());
+    		if (handler != null) {
+    			long begin = listener.begin(QueryPhase.PREDICATE_BUILD);
+    			Predicate predicate = handler.createPredicate((Path<?>) propertyPath, comparison, entityManager.getCriteriaBuilder(), misc);
+    			listener.end(QueryPhase.PREDICATE_BUILD, begin);
+    			return predicate;
+    		}
+    		// operators without handler are delegated
+    		if (misc.getPredicateBuilder() != null) {
+    			return misc.getPredicateBuilder().createPredicate(comparison, startRoot, entity, entityManager, misc);
+    		}
+    		throw new IllegalArgumentException("Unknown operator: " + comparison.getOperator());
+    	}
+
+    	long begin = listener.begin(QueryPhase.ARGUMENT_CONVERSION);
     	List<?> castedArguments = misc.getArgumentParser().parse(comparison.getArguments(), propertyPath.getJavaType());
+    	listener.end(QueryPhase.ARGUMENT_CONVERSION, begin);
 
-    	try {
-    		// try to create a predicate
-    		return createPredicate(propertyPath, comparison.getOperator(), castedArguments, entityManager);
-    	} catch (IllegalArgumentException e) {
-    		// if operator dont exist try to delegate
-            if (misc.getPredicateBuilder() != null) {
-            	return misc.getPredicateBuilder().createPredicate(comparison, startRoot, entity, entityManager, misc);
-            }
-            // if no strategy was defined then there are no more operators.
-            throw e;
+    	StringMatching matching = null;
+    	if (propertyPath.getJavaType() == String.class) {
+    		matching = misc.getStringMatchingPolicy().getMatching(comparison.getSelector(), entity);
+    	}
+
+    	TemporalGranularity granularity = TemporalGranularity.EXACT;
+    	if (isDayComparable(propertyPath.getJavaType())) {
+    		granularity = misc.getTemporalGranularityPolicy().getGranularity(comparison.getSelector(), entity);
+    	}
+
+    	QueryParameters bound = context.parameters;
+    	if (bound != null) {
+    		ParameterBindingPolicy policy = (context.bindingPolicy != null) ? context.bindingPolicy : misc.getParameterBindingPolicy();
+    		if (policy.isInlined(comparison.getSelector(), entity, propertyPath.getJavaType())) {
+    			bound = null;
+    		}
+    	}
+
+    	begin = listener.begin(QueryPhase.PREDICATE_BUILD);
+    	Predicate predicate = createPredicate(propertyPath, comparison, castedArguments, bound, matching, granularity, misc.getInListStrategy(), entityManager);
+    	listener.end(QueryPhase.PREDICATE_BUILD, begin);
+    	return predicate;
+    }
+
+    private static boolean hasPlaceholder(ComparisonNode comparison) {
+    	for (String argument : comparison.getArguments()) {
+    		if (PreparedQuery.isPlaceholder(argument)) {
+    			return true;
+    		}
     	}
+    	return false;
+    }
+
+    /**
+     * Create a Predicate comparing the property path with a placeholder of the
+     * query being prepared, whose value is only known when it is executed.
+     *
+     * @param propertyPath   Property path that we want to compare.
+     * @param comparison     Comparison node whose argument is a placeholder.
+     * @param entity         The main entity of the query.
+     * @param manager        JPA EntityManager.
+     * @param misc           Facade with all necessary tools for predicate creation.
+     * @return               Predicate a predicate representation.
+     * @throws IllegalArgumentException if the placeholder is not the only argument of a default operator.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T> Predicate createPlaceholderPredicate(Expression propertyPath, ComparisonNode comparison, Class<T> entity, EntityManager manager, BuilderTools misc) {
+        ComparisonOperatorProxy operator = ComparisonOperatorProxy.asEnum(comparison.getOperator());
+        if (operator == null || comparison.getArguments().size() != 1) {
+            throw new IllegalArgumentException("A placeholder must be the only argument of a default operator: " + comparison);
+        }
+        CriteriaBuilder builder = manager.getCriteriaBuilder();
+        String name = comparison.getArguments().get(0).substring(1);
+        Class<?> type = wrapperType(propertyPath.getJavaType());
+        switch (operator) {
+            case EQUAL :
+            case NOT_EQUAL : {
+                Expression compared = propertyPath;
+                UnaryOperator<Object> transform = UnaryOperator.identity();
+                if (type == String.class) {
+                    StringMatching matching = misc.getStringMatchingPolicy().getMatching(comparison.getSelector(), entity);
+                    if (matching.isCaseInsensitive()) {
+                        compared = (matching.getShadowAttribute() != null)
+                                ? ((Path<?>) propertyPath).getParentPath().get(matching.getShadowAttribute())
+                                : builder.lower(propertyPath);
+                        transform = value -> matching.toValue((String) value);
+                    }
+                }
+                Expression parameter = PreparedQuery.Placeholder.occurrence(context.placeholders, builder, name, type, false, transform);
+                return operator == ComparisonOperatorProxy.EQUAL ? builder.equal(compared, parameter) : builder.notEqual(compared, parameter);
+            }
+            case IN :
+            case NOT_IN : {
+                Predicate in = propertyPath.in(PreparedQuery.Placeholder.occurrence(context.placeholders, builder, name, type, true, UnaryOperator.identity()));
+                return operator == ComparisonOperatorProxy.IN ? in : builder.not(in);
+            }
+            default : {
+                if (!Comparable.class.isAssignableFrom(type)) {
+                    throw new IllegalArgumentException("Placeholder of a range comparison must stand for a Comparable: " + comparison);
+                }
+                boolean days = isDayComparable(type)
+                        && misc.getTemporalGranularityPolicy().getGranularity(comparison.getSelector(), entity) == TemporalGranularity.DAY;
+                boolean nextDay = operator == ComparisonOperatorProxy.GREATER_THAN || operator == ComparisonOperatorProxy.LESS_THAN_OR_EQUAL;
+                Expression parameter = PreparedQuery.Placeholder.occurrence(context.placeholders, builder, name, type, false,
+                        !days ? UnaryOperator.identity() : (nextDay ? START_OF_NEXT_DAY : START_OF_DAY));
+                switch (operator) {
+                    case GREATER_THAN : return days ? builder.greaterThanOrEqualTo(propertyPath, parameter) : builder.greaterThan(propertyPath, parameter);
+                    case GREATER_THAN_OR_EQUAL : return builder.greaterThanOrEqualTo(propertyPath, parameter);
+                    case LESS_THAN : return builder.lessThan(propertyPath, parameter);
+                    default : return days ? builder.lessThan(propertyPath, parameter) : builder.lessThanOrEqualTo(propertyPath, parameter);
+                }
+            }
+        }
     }
 
     /**
@@ -180,6 +356,133 @@ public final class PredicateBuilder {
      * @throws               IllegalArgumentException if attribute of the given property name does not exist
      */
     public <T> Path<?> findPropertyPath(String propertyPath, Path startRoot, EntityManager entityManager,  BuilderTools misc) {
+        QueryListener listener = misc.getQueryListener();
+        long begin = listener.begin(QueryPhase.PATH_RESOLUTION);
+        Metamodel metaModel = entityManager.getMetamodel();
+        SelectorIndex index = SelectorIndex.of(metaModel.managedType(startRoot.getJavaType()));
+        SelectorIndex.Resolution resolution = index.resolve(propertyPath, misc.getPropertiesMapper(), metaModel);
+        if (resolution == null) {
+            // a segment is not an attribute, but it may still be a join alias
+            Path<?> path = walkPropertyPath(propertyPath, startRoot, entityManager, misc);
+            listener.end(QueryPhase.PATH_RESOLUTION, begin);
+            return path;
+        }
+
+        Path<?> root = startRoot;
+        SelectorIndex.Step[] steps = resolution.steps;
+        for (int i = 0; i < steps.length; i++) {
+            SelectorIndex.Step step = steps[i];
+            if (resolution.foreignKey && i == steps.length - 2 && !context.joins.containsKey(step.path)) {
+                // the identifier is the foreign key column, compare it without joining
+                root = root.get(step.attribute);
+            } else if (step.join && root instanceof From) {
+                // Check if we already created join for the current path
+                Join<?, ?> join = context.joins.get(step.path);
+                if (join == null) {
+                    long joinBegin = listener.begin(QueryPhase.JOIN_CREATION);
+                    JoinType type = (context.requiredJoins != null && context.requiredJoins.contains(step.path)) ? JoinType.INNER : JoinType.LEFT;
+                    join = ((From<?, ?>) root).join(step.attribute, type);
+                    context.joins.put(step.path, join);
+                    listener.end(QueryPhase.JOIN_CREATION, joinBegin);
+                }
+                root = join;
+            } else {
+                root = root.get(step.attribute);
+            }
+        }
+        listener.end(QueryPhase.PATH_RESOLUTION, begin);
+        return root;
+    }
+
+    /**
+     * Find the path of a sort key in the graph from startRoot, reusing the
+     * joins of the predicates. The selector must reach a comparable property
+     * through to-one associations, so that sorting does not multiply rows.
+     *
+     * @param selector       The selector of the sort key.
+     * @param startRoot      From that property path depends on.
+     * @param entityManager  JPA EntityManager.
+     * @param misc           Facade with all necessary tools for predicate creation.
+     * @return               The Path for the selector
+     * @throws               IllegalArgumentException if the selector does not resolve to a sortable property
+     */
+    Path<?> findSortPath(String selector, From startRoot, EntityManager entityManager, BuilderTools misc) {
+        SelectorIndex.Resolution resolution = resolveSingular(selector, startRoot, entityManager, misc, "Cannot sort by a collection: ");
+        if (!Comparable.class.isAssignableFrom(wrapperType(resolution.javaType))) {
+            throw new IllegalArgumentException("Cannot sort by a property that is not comparable: " + selector);
+        }
+        return findPropertyPath(selector, startRoot, entityManager, misc);
+    }
+
+    /**
+     * Find the path of a projected field in the graph from startRoot, reusing
+     * the joins of the predicates. The selector must reach a basic or embedded
+     * property through to-one associations, so that the projection has a row
+     * per entity and loads no entity.
+     *
+     * @param selector       The selector of the field.
+     * @param startRoot      From that property path depends on.
+     * @param entityManager  JPA EntityManager.
+     * @param misc           Facade with all necessary tools for predicate creation.
+     * @return               The Path for the selector
+     * @throws               IllegalArgumentException if the selector does not resolve to a single value
+     */
+    Path<?> findSelectionPath(String selector, From startRoot, EntityManager entityManager, BuilderTools misc) {
+        SelectorIndex.Resolution resolution = resolveSingular(selector, startRoot, entityManager, misc, "Cannot select a collection: ");
+        if (resolution.steps[resolution.steps.length - 1].join) {
+            throw new IllegalArgumentException("Cannot select an association, select its properties: " + selector);
+        }
+        return findPropertyPath(selector, startRoot, entityManager, misc);
+    }
+
+    private SelectorIndex.Resolution resolveSingular(String selector, From startRoot, EntityManager entityManager, BuilderTools misc, String pluralMessage) {
+        Metamodel metaModel = entityManager.getMetamodel();
+        SelectorIndex.Resolution resolution = SelectorIndex.of(metaModel.managedType(startRoot.getJavaType()))
+                .resolve(selector, misc.getPropertiesMapper(), metaModel);
+        if (resolution == null) {
+            throw new IllegalArgumentException("Unknown property: " + selector + " from entity " + startRoot.getJavaType().getName());
+        }
+        for (SelectorIndex.Step step : resolution.steps) {
+            if (step.plural) {
+                throw new IllegalArgumentException(pluralMessage + selector);
+            }
+        }
+        return resolution;
+    }
+
+    /**
+     * Create the orders of sort keys. Built after the predicates of the same
+     * query, they reuse their joins instead of joining the same path again.
+     *
+     * @param sort           The sort keys, in order.
+     * @param startRoot      From that property paths depend on.
+     * @param entityManager  JPA EntityManager.
+     * @param misc           Facade with all necessary tools for predicate creation.
+     * @return               The orders of the keys.
+     * @throws               IllegalArgumentException if a selector does not resolve to a sortable property
+     */
+    public List<Order> createOrders(List<SortKey> sort, From startRoot, EntityManager entityManager, BuilderTools misc) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        List<Order> orders = new ArrayList<>(sort.size());
+        for (SortKey key : sort) {
+            Path<?> path = findSortPath(key.getSelector(), startRoot, entityManager, misc);
+            orders.add(key.isAscending() ? builder.asc(path) : builder.desc(path));
+        }
+        return orders;
+    }
+
+    /**
+     * Find a property path in the graph from startRoot, walking the metamodel
+     * and the joins of startRoot segment by segment.
+     *
+     * @param propertyPath   The property path to find.
+     * @param startRoot      From that property path depends on.
+     * @param entityManager  JPA EntityManager.
+     * @param misc           Facade with all necessary tools for predicate creation.
+     * @return               The Path for the property path
+     * @throws               IllegalArgumentException if attribute of the given property name does not exist
+     */
+    private Path<?> walkPropertyPath(String propertyPath, Path startRoot, EntityManager entityManager,  BuilderTools misc) {
         String[] graph = propertyPath.split("\\.");
 
         Metamodel metaModel = entityManager.getMetamodel();
@@ -192,7 +495,7 @@ public final class PredicateBuilder {
             currentPath = currentPath + property;
             String mappedProperty = misc.getPropertiesMapper().translate(property, classMetadata.getJavaType());
             if (!mappedProperty.equals(property)) {
-                root = findPropertyPath(mappedProperty, root, entityManager, misc);
+                root = walkPropertyPath(mappedProperty, root, entityManager, misc);
                 if (root instanceof Join) {
                     classMetadata = metaModel.managedType(root.getJavaType());
                 }
@@ -203,7 +506,7 @@ public final class PredicateBuilder {
                     if (root != null) {
                         String previousClass = classMetadata.getJavaType().getName();
                         classMetadata = metaModel.managedType(root.getJavaType());
-                        LOG.log(Level.INFO, "Use named join between {0} and {1}: {2}", new Object[]{previousClass, classMetadata.getJavaType().getName(), root.getAlias()});
+                        LOG.log(Level.FINE, "Use named join between {0} and {1}: {2}", new Object[]{previousClass, classMetadata.getJavaType().getName(), root.getAlias()});
                         continue;
                     }
                     throw new IllegalArgumentException("Unknown property: " + mappedProperty + " from entity " + classMetadata.getJavaType().getName());
@@ -224,25 +527,21 @@ public final class PredicateBuilder {
 
                     if (isAssociationType(mappedProperty, classMetadata)) {
                         classMetadata = metaModel.managedType(associationType);
-                        LOG.log(Level.INFO, "Create a join between {0} and {1}.", new Object[]{previousClass, classMetadata.getJavaType().getName()});
-                    } else {
-                        LOG.log(Level.INFO, "Create a join between {0} and {1}.", new Object[]{previousClass, mappedProperty});
                     }
 
                     if (root instanceof From) {
                         // Check if we already created join for the current path
-                        if (joinMap.containsKey(currentPath)) {
-                            root = joinMap.get(currentPath);
+                        if (context.joins.containsKey(currentPath)) {
+                            root = context.joins.get(currentPath);
                         } else {
-                            LOG.log(Level.INFO, "Create a join between {0} and {1}.", new Object[]{previousClass, classMetadata.getJavaType().getName()});
+                            LOG.log(Level.FINE, "Create a join between {0} and {1}.", new Object[]{previousClass, classMetadata.getJavaType().getName()});
                             root = ((From) root).join(mappedProperty, JoinType.LEFT);
-                            joinMap.put(currentPath, (Join) root);
+                            context.joins.put(currentPath, (Join) root);
                         }
                     } else {
                         root = root.get(mappedProperty);
                     }
                 } else {
-                    LOG.log(Level.INFO, "Create property path for type {0} property {1}.", new Object[]{classMetadata.getJavaType().getName(), mappedProperty});
                     root = root.get(mappedProperty);
 
                     if (isEmbeddedType(mappedProperty, classMetadata)) {
@@ -281,47 +580,51 @@ public final class PredicateBuilder {
      * Create Predicate for comparison operators.
      *
      * @param propertyPath  Property path that we want to compare.
-     * @param operator      Comparison operator.
+     * @param comparison    Comparison node the arguments belong to.
      * @param arguments     Arguments (1 for binary comparisons, n for multi-value comparisons [in, not in (out)])
+     * @param bound         Side table receiving the arguments as parameters, <tt>null</tt> to render them as literals.
+     * @param matching      Matching of the arguments of a String property, <tt>null</tt> for other properties.
+     * @param granularity   Granularity of the range comparisons of the property.
+     * @param inLists       Strategy for the arguments of in and out comparisons.
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private Predicate createPredicate(Expression propertyPath, ComparisonOperator operator, List<?> arguments, EntityManager manager) {
-    	LOG.log(Level.INFO, "Creating predicate: propertyPath {0} {1}", new Object[]{operator, arguments});
-
+    private Predicate createPredicate(Expression propertyPath, ComparisonNode comparison, List<?> arguments, QueryParameters bound, StringMatching matching, TemporalGranularity granularity, InListStrategy inLists, EntityManager manager) {
+        ComparisonOperator operator = comparison.getOperator();
         final ComparisonOperatorProxy comparisonOperator = ComparisonOperatorProxy.asEnum(operator);
         if (comparisonOperator != null) {
+            CriteriaBuilder builder = manager.getCriteriaBuilder();
+            Class type = propertyPath.getJavaType();
     		switch (comparisonOperator) {
 	    		case EQUAL : {
 	    			Object argument = arguments.get(0);
                     if (argument instanceof String) {
-	    				return createLike(propertyPath, (String) argument, manager);
+	    				return createMatch(propertyPath, matching, comparison, (String) argument, bound, false, manager);
 	    			} else if (Objects.isNull(argument)) {
 	    				return createIsNull(propertyPath, manager);
 	    			} else {
-	    				return createEqual(propertyPath, argument, manager);
+	    				return createEqual(propertyPath, argumentExpression(bound, comparison, 0, type, argument, UnaryOperator.identity(), builder), manager);
 	    			}
 	    		}
 	    		case NOT_EQUAL : {
 	    			Object argument = arguments.get(0);
                     if (argument instanceof String) {
-	    				return createNotLike(propertyPath, (String) argument, manager);
+	    				return createMatch(propertyPath, matching, comparison, (String) argument, bound, true, manager);
 	    			} else if (Objects.isNull(argument)) {
 	    				return createIsNotNull(propertyPath, manager);
 	    			} else {
-	    				return createNotEqual(propertyPath, argument, manager);
+	    				return createNotEqual(propertyPath, argumentExpression(bound, comparison, 0, type, argument, UnaryOperator.identity(), builder), manager);
 	    			}
 	    		}
 	    		case GREATER_THAN : {
 	    			Object argument = arguments.get(0);
                     Predicate predicate;
-                    if (argument instanceof Date) {
-                        int days = 1;
-                        predicate = createBetweenThan(propertyPath, modifyDate(argument, days), END_DATE, manager);
+                    if (granularity == TemporalGranularity.DAY && argument != null) {
+                        predicate = createGreaterEqualComparable(propertyPath, argumentExpression(bound, comparison, 0, type, argument, START_OF_NEXT_DAY, builder), manager);
                     } else if (argument instanceof Number || argument == null) {
-                        predicate = createGreaterThan(propertyPath, (Number) argument, manager);
+                        predicate = createGreaterThan(propertyPath, argumentExpression(bound, comparison, 0, type, argument, UnaryOperator.identity(), builder), manager);
                     } else if (argument instanceof Comparable) {
-                        predicate = createGreaterThanComparable(propertyPath, (Comparable) argument, manager);
+                        predicate = createGreaterThanComparable(propertyPath, argumentExpression(bound, comparison, 0, type, argument, UnaryOperator.identity(), builder), manager);
                     } else {
                         throw new IllegalArgumentException(buildNotComparableMessage(operator, argument));
                     }
@@ -330,12 +633,12 @@ public final class PredicateBuilder {
 	    		case GREATER_THAN_OR_EQUAL : {
 	    			Object argument = arguments.get(0);
                     Predicate predicate;
-                    if (argument instanceof Date){
-                        predicate = createBetweenThan(propertyPath, (Date)argument, END_DATE, manager);
+                    if (granularity == TemporalGranularity.DAY && argument != null) {
+                        predicate = createGreaterEqualComparable(propertyPath, argumentExpression(bound, comparison, 0, type, argument, START_OF_DAY, builder), manager);
                     } else if (argument instanceof Number || argument == null) {
-                        predicate = createGreaterEqual(propertyPath, (Number)argument, manager);
+                        predicate = createGreaterEqual(propertyPath, argumentExpression(bound, comparison, 0, type, argument, UnaryOperator.identity(), builder), manager);
                     } else if (argument instanceof Comparable) {
-                        predicate = createGreaterEqualComparable(propertyPath, (Comparable) argument, manager);
+                        predicate = createGreaterEqualComparable(propertyPath, argumentExpression(bound, comparison, 0, type, argument, UnaryOperator.identity(), builder), manager);
                     } else {
                         throw new IllegalArgumentException(buildNotComparableMessage(operator, argument));
                     }
@@ -345,13 +648,12 @@ public final class PredicateBuilder {
 	    		case LESS_THAN : {
 	    			Object argument = arguments.get(0);
                     Predicate predicate;
-                    if (argument instanceof Date) {
-                        int days = -1;
-                        predicate = createBetweenThan(propertyPath, START_DATE, modifyDate(argument, days), manager);
+                    if (granularity == TemporalGranularity.DAY && argument != null) {
+                        predicate = createLessThanComparable(propertyPath, argumentExpression(bound, comparison, 0, type, argument, START_OF_DAY, builder), manager);
                     } else if (argument instanceof Number || argument == null) {
-                        predicate = createLessThan(propertyPath, (Number) argument, manager);
+                        predicate = createLessThan(propertyPath, argumentExpression(bound, comparison, 0, type, argument, UnaryOperator.identity(), builder), manager);
                     } else if (argument instanceof Comparable) {
-                        predicate = createLessThanComparable(propertyPath, (Comparable) argument, manager);
+                        predicate = createLessThanComparable(propertyPath, argumentExpression(bound, comparison, 0, type, argument, UnaryOperator.identity(), builder), manager);
                     } else {
                         throw new IllegalArgumentException(buildNotComparableMessage(operator, argument));
                     }
@@ -361,51 +663,101 @@ public final class PredicateBuilder {
 	    			Object argument = arguments.get(0);
 
                     Predicate predicate;
-                    if (argument instanceof Date){
-                        	predicate = createBetweenThan(propertyPath,START_DATE, (Date)argument, manager);
+                    if (granularity == TemporalGranularity.DAY && argument != null) {
+                        predicate = createLessThanComparable(propertyPath, argumentExpression(bound, comparison, 0, type, argument, START_OF_NEXT_DAY, builder), manager);
                     } else if (argument instanceof Number || argument == null) {
-                        predicate = createLessEqual(propertyPath, (Number)argument, manager);
+                        predicate = createLessEqual(propertyPath, argumentExpression(bound, comparison, 0, type, argument, UnaryOperator.identity(), builder), manager);
                     } else if (argument instanceof Comparable) {
-                        predicate = createLessEqualComparable(propertyPath, (Comparable) argument, manager);
+                        predicate = createLessEqualComparable(propertyPath, argumentExpression(bound, comparison, 0, type, argument, UnaryOperator.identity(), builder), manager);
                     } else {
                         throw new IllegalArgumentException(buildNotComparableMessage(operator, argument));
                     }
                     return predicate;
                 }
-	    		case IN : return createIn(propertyPath, arguments, manager);
-	    		case NOT_IN : return createNotIn(propertyPath, arguments, manager);
+	    		case IN : return createIn(propertyPath, comparison, arguments, bound, inLists, manager);
+	    		case NOT_IN : return createNotIn(propertyPath, comparison, arguments, bound, inLists, manager);
     		}
     	}
         throw new IllegalArgumentException("Unknown operator: " + operator);
     }
 
     /**
-     +     * Creates the between than.
-     +     *
-     +     * @param propertyPath the property path
-     +     * @param startDate the start date
-     +     * @param argument the argument
-     +     * @param manager the manager
-     +     * @return the predicate
-     +     */
-    private Predicate createBetweenThan(Expression propertyPath, Date start, Date end, EntityManager manager) {
-       	CriteriaBuilder builder = manager.getCriteriaBuilder();
-       	return builder.between(propertyPath, start, end);
+     * Create the expression standing for an argument of a comparison: a literal,
+     * or a parameter recorded in the side table when parameters are bound.
+     *
+     * @param bound       Side table receiving the parameters, <tt>null</tt> for a literal.
+     * @param comparison  Comparison node the argument belongs to.
+     * @param index       Position of the argument in the comparison node.
+     * @param type        Type of the expression.
+     * @param argument    Casted argument.
+     * @param transform   Transformation turning the argument into the compared value.
+     * @param builder     JPA CriteriaBuilder.
+     * @return            Expression of the argument.
+     */
+    private <Y> Expression<Y> argumentExpression(QueryParameters bound, ComparisonNode comparison, int index, Class<Y> type, Object argument, UnaryOperator<Object> transform, CriteriaBuilder builder) {
+        return argumentExpression(bound, comparison, index, type, argument, transform, QueryParameters.ANY_ARGUMENT, builder);
+    }
+
+    /**
+     * Create the expression standing for an argument of a comparison, when only
+     * some arguments build the same predicate.
+     *
+     * @param accepts     Casted arguments a parameter may later be rebound to.
+     * @see #argumentExpression(QueryParameters, ComparisonNode, int, Class, Object, UnaryOperator, CriteriaBuilder)
+     */
+    private <Y> Expression<Y> argumentExpression(QueryParameters bound, ComparisonNode comparison, int index, Class<Y> type, Object argument, UnaryOperator<Object> transform, java.util.function.Predicate<Object> accepts, CriteriaBuilder builder) {
+        if (argument == null) {
+            return builder.nullLiteral(type);
+        }
+        if (bound != null) {
+            return bound.bind(builder, wrapperType(type), argument, transform, accepts, comparison, index);
+        }
+        return (Expression<Y>) builder.literal(transform.apply(argument));
+    }
+
+    /**
+     * Apply a String matching constraint to the property path: a "like"
+     * constraint when the argument is a pattern, an "equal" one otherwise.
+     * Case-insensitive matching compares the lower case property, or its
+     * shadow attribute.
+     *
+     * @param propertyPath  Property path that we want to compare.
+     * @param matching      Matching of the property.
+     * @param comparison    Comparison node the argument belongs to.
+     * @param argument      Argument.
+     * @param bound         Side table receiving the parameters, <tt>null</tt> for literals.
+     * @param negated       <tt>true</tt> for the negative constraint.
+     * @param manager       JPA EntityManager.
+     * @return              Predicate a predicate representation.
+     */
+    private Predicate createMatch(Expression<String> propertyPath, StringMatching matching, ComparisonNode comparison, String argument, QueryParameters bound, boolean negated, EntityManager manager) {
+        CriteriaBuilder builder = manager.getCriteriaBuilder();
+        Expression<String> compared = propertyPath;
+        if (matching.isCaseInsensitive()) {
+            compared = (matching.getShadowAttribute() != null)
+                    ? ((Path<?>) propertyPath).getParentPath().<String>get(matching.getShadowAttribute())
+                    : builder.lower(propertyPath);
+        }
+        if (matching.isPattern(argument)) {
+            Expression<String> pattern = argumentExpression(bound, comparison, 0, String.class, argument, parsed -> matching.toPattern((String) parsed), parsed -> matching.isPattern((String) parsed), builder);
+            return negated ? createNotLike(compared, pattern, matching.getEscapeChar(), manager) : createLike(compared, pattern, matching.getEscapeChar(), manager);
+        }
+        Expression<String> value = argumentExpression(bound, comparison, 0, String.class, argument, parsed -> matching.toValue((String) parsed), parsed -> !matching.isPattern((String) parsed), builder);
+        return negated ? createNotEqual(compared, value, manager) : createEqual(compared, value, manager);
     }
 
     /**
-     * Apply a case-insensitive "like" constraint to the property path. Value
-     * should contains wildcards "*" (% in SQL) and "_".
+     * Apply a "like" constraint to the property path.
      *
      * @param propertyPath  Property path that we want to compare.
-     * @param argument      Argument with/without wildcards
+     * @param pattern       Pattern with "%" and "_" wildcards.
+     * @param escape        Escape character of the pattern, <tt>null</tt> if none.
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private Predicate createLike(Expression<String> propertyPath, String argument, EntityManager manager) {
-        String like = argument.replace(LIKE_WILDCARD, '%');
+    private Predicate createLike(Expression<String> propertyPath, Expression<String> pattern, Character escape, EntityManager manager) {
         CriteriaBuilder builder = manager.getCriteriaBuilder();
-        return builder.like(builder.lower(propertyPath), like.toLowerCase());
+        return (escape == null) ? builder.like(propertyPath, pattern) : builder.like(propertyPath, pattern, escape);
     }
 
     /**
@@ -428,7 +780,7 @@ public final class PredicateBuilder {
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private Predicate createEqual(Expression<?> propertyPath, Object argument, EntityManager manager) {
+    private Predicate createEqual(Expression<?> propertyPath, Expression<?> argument, EntityManager manager) {
     	CriteriaBuilder builder = manager.getCriteriaBuilder();
     	return builder.equal(propertyPath, argument);
     }
@@ -441,23 +793,23 @@ public final class PredicateBuilder {
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private Predicate createNotEqual(Expression<?> propertyPath, Object argument, EntityManager manager) {
+    private Predicate createNotEqual(Expression<?> propertyPath, Expression<?> argument, EntityManager manager) {
     	CriteriaBuilder builder = manager.getCriteriaBuilder();
         return builder.notEqual(propertyPath, argument);
     }
 
     /**
-     * Apply a negative case-insensitive "like" constraint to the property path.
-     * Value should contains wildcards "*" (% in SQL) and "_".
+     * Apply a negative "like" constraint to the property path.
      *
      * @param propertyPath  Property path that we want to compare.
-     * @param argument      Argument with/without wildcards
+     * @param pattern       Pattern with "%" and "_" wildcards.
+     * @param escape        Escape character of the pattern, <tt>null</tt> if none.
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private Predicate createNotLike(Expression<String> propertyPath, String argument, EntityManager manager) {
+    private Predicate createNotLike(Expression<String> propertyPath, Expression<String> pattern, Character escape, EntityManager manager) {
     	CriteriaBuilder builder = manager.getCriteriaBuilder();
-        return builder.not(createLike(propertyPath, argument, manager));
+        return builder.not(createLike(propertyPath, pattern, escape, manager));
     }
 
     /**
@@ -480,7 +832,7 @@ public final class PredicateBuilder {
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private Predicate createGreaterThan(Expression<? extends Number> propertyPath, Number argument, EntityManager manager) {
+    private Predicate createGreaterThan(Expression<? extends Number> propertyPath, Expression<? extends Number> argument, EntityManager manager) {
     	CriteriaBuilder builder = manager.getCriteriaBuilder();
         return builder.gt(propertyPath, argument);
     }
@@ -493,7 +845,7 @@ public final class PredicateBuilder {
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private <Y extends Comparable<? super Y>> Predicate createGreaterThanComparable(Expression<? extends Y> propertyPath, Y argument, EntityManager manager) {
+    private <Y extends Comparable<? super Y>> Predicate createGreaterThanComparable(Expression<? extends Y> propertyPath, Expression<? extends Y> argument, EntityManager manager) {
         CriteriaBuilder builder = manager.getCriteriaBuilder();
         return builder.greaterThan(propertyPath, argument);
     }
@@ -506,7 +858,7 @@ public final class PredicateBuilder {
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private Predicate createGreaterEqual(Expression<? extends Number> propertyPath, Number argument, EntityManager manager) {
+    private Predicate createGreaterEqual(Expression<? extends Number> propertyPath, Expression<? extends Number> argument, EntityManager manager) {
     	CriteriaBuilder builder = manager.getCriteriaBuilder();
         return builder.ge(propertyPath, argument);
     }
@@ -519,7 +871,7 @@ public final class PredicateBuilder {
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private <Y extends Comparable<? super Y>> Predicate createGreaterEqualComparable(Expression<? extends Y> propertyPath, Y argument, EntityManager manager) {
+    private <Y extends Comparable<? super Y>> Predicate createGreaterEqualComparable(Expression<? extends Y> propertyPath, Expression<? extends Y> argument, EntityManager manager) {
         CriteriaBuilder builder = manager.getCriteriaBuilder();
         return builder.greaterThanOrEqualTo(propertyPath, argument);
     }
@@ -532,7 +884,7 @@ public final class PredicateBuilder {
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private Predicate createLessThan(Expression<? extends Number> propertyPath, Number argument, EntityManager manager) {
+    private Predicate createLessThan(Expression<? extends Number> propertyPath, Expression<? extends Number> argument, EntityManager manager) {
     	CriteriaBuilder builder = manager.getCriteriaBuilder();
         return builder.lt(propertyPath, argument);
     }
@@ -545,7 +897,7 @@ public final class PredicateBuilder {
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private <Y extends Comparable<? super Y>> Predicate createLessThanComparable(Expression<? extends Y> propertyPath, Y argument, EntityManager manager) {
+    private <Y extends Comparable<? super Y>> Predicate createLessThanComparable(Expression<? extends Y> propertyPath, Expression<? extends Y> argument, EntityManager manager) {
         CriteriaBuilder builder = manager.getCriteriaBuilder();
         return builder.lessThan(propertyPath, argument);
     }
@@ -558,7 +910,7 @@ public final class PredicateBuilder {
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private Predicate createLessEqual(Expression<? extends Number> propertyPath, Number argument, EntityManager manager) {
+    private Predicate createLessEqual(Expression<? extends Number> propertyPath, Expression<? extends Number> argument, EntityManager manager) {
     	CriteriaBuilder builder = manager.getCriteriaBuilder();
         return builder.le(propertyPath, argument);
     }
@@ -571,34 +923,80 @@ public final class PredicateBuilder {
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private <Y extends Comparable<? super Y>> Predicate createLessEqualComparable(Expression<? extends Y> propertyPath, Y argument, EntityManager manager) {
+    private <Y extends Comparable<? super Y>> Predicate createLessEqualComparable(Expression<? extends Y> propertyPath, Expression<? extends Y> argument, EntityManager manager) {
         CriteriaBuilder builder = manager.getCriteriaBuilder();
         return builder.lessThanOrEqualTo(propertyPath, argument);
     }
 
     /**
      * Apply a "in" constraint to the property path.
+     * <p>
+     * The list is split into ORed <tt>IN</tt>s no longer than the chunk size of
+     * the strategy. When the arguments are bound as parameters and none is
+     * <tt>null</tt>, a long list is bound as one collection parameter per
+     * chunk, and the others are padded by repeating their last argument.
      *
      * @param propertyPath  Property path that we want to compare.
+     * @param comparison    Comparison node the arguments belong to.
      * @param arguments     List of arguments.
+     * @param bound         Side table receiving the parameters, <tt>null</tt> for literals.
+     * @param inLists       Strategy for the arguments of in and out comparisons.
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private Predicate createIn(Expression<?> propertyPath, List<?> arguments, EntityManager manager) {
-    	return propertyPath.in(arguments);
+    private Predicate createIn(Expression<?> propertyPath, ComparisonNode comparison, List<?> arguments, QueryParameters bound, InListStrategy inLists, EntityManager manager) {
+        CriteriaBuilder builder = manager.getCriteriaBuilder();
+        if (bound == null) {
+            if (arguments.size() <= inLists.getChunkSize()) {
+                return propertyPath.in(arguments);
+            }
+            List<Predicate> chunks = new ArrayList<>();
+            for (int start = 0; start < arguments.size(); start += inLists.getChunkSize()) {
+                chunks.add(propertyPath.in(arguments.subList(start, Math.min(arguments.size(), start + inLists.getChunkSize()))));
+            }
+            return builder.or(chunks.toArray(new Predicate[0]));
+        }
+        boolean values = !arguments.contains(null);
+        if (values && inLists.isCollection(arguments.size())) {
+            // the provider expands each collection into one parameter per element, so chunk them too
+            List<Predicate> chunks = new ArrayList<>();
+            for (int start = 0; start < arguments.size(); start += inLists.getChunkSize()) {
+                Expression<Collection<?>> collection = (Expression) bound.bindAll(builder, wrapperType(propertyPath.getJavaType()), arguments, start, inLists.getChunkSize(), comparison);
+                chunks.add(propertyPath.in(collection));
+            }
+            return chunks.size() == 1 ? chunks.get(0) : builder.or(chunks.toArray(new Predicate[0]));
+        }
+        int size = values ? inLists.paddedSize(arguments.size()) : arguments.size();
+        Expression<?>[] expressions = new Expression<?>[size];
+        for (int i = 0; i < size; i++) {
+            // padding repeats the last argument, which the plan rebinds the same way.
+            int index = Math.min(i, arguments.size() - 1);
+            expressions[i] = argumentExpression(bound, comparison, i, propertyPath.getJavaType(), arguments.get(index), UnaryOperator.identity(), builder);
+        }
+        if (size <= inLists.getChunkSize()) {
+            return propertyPath.in(expressions);
+        }
+        List<Predicate> chunks = new ArrayList<>();
+        for (int start = 0; start < size; start += inLists.getChunkSize()) {
+            chunks.add(propertyPath.in(Arrays.copyOfRange(expressions, start, Math.min(size, start + inLists.getChunkSize()))));
+        }
+        return builder.or(chunks.toArray(new Predicate[0]));
     }
 
     /**
      * Apply a "not in" (out) constraint to the property path.
      *
      * @param propertyPath  Property path that we want to compare.
+     * @param comparison    Comparison node the arguments belong to.
      * @param arguments     List of arguments.
+     * @param bound         Side table receiving the parameters, <tt>null</tt> for literals.
+     * @param inLists       Strategy for the arguments of in and out comparisons.
      * @param manager       JPA EntityManager.
      * @return              Predicate a predicate representation.
      */
-    private Predicate createNotIn(Expression<?> propertyPath, List<?> arguments, EntityManager manager) {
+    private Predicate createNotIn(Expression<?> propertyPath, ComparisonNode comparison, List<?> arguments, QueryParameters bound, InListStrategy inLists, EntityManager manager) {
     	CriteriaBuilder builder = manager.getCriteriaBuilder();
-    	return builder.not(createIn(propertyPath,arguments, manager));
+    	return builder.not(createIn(propertyPath, comparison, arguments, bound, inLists, manager));
     }
 
     /**
@@ -657,19 +1055,50 @@ public final class PredicateBuilder {
     }
 
     /**
-      * Get date regarding the operation (less then or greater than)
+     * Verify if the values of a type can be compared by day.
      *
-      * @param argument Date to be modified
-      * @param days Days to be added or removed form argument;
-      *@return Date modified date
-      */
-    private Date modifyDate(Object argument, int days) {
-        Date date = (Date) argument;
-        Calendar c = Calendar.getInstance();
-        c.setTime(date);
-        c.add(Calendar.DATE, days);
-        date = c.getTime();
-        return date;
+     * @param type  Java type of the property.
+     * @return      <tt>true</tt> for the date and date time types.
+     */
+    static boolean isDayComparable(Class<?> type) {
+        return (Date.class.isAssignableFrom(type) && !java.sql.Time.class.isAssignableFrom(type))
+                || type == LocalDate.class || type == LocalDateTime.class || type == Instant.class
+                || type == OffsetDateTime.class || type == ZonedDateTime.class;
+    }
+
+    /**
+     * Get the start of the day of a date, moved by a number of days. The days
+     * of a {@link Date} are those of the default time zone, the days of an
+     * {@link Instant} those of UTC.
+     *
+     * @param argument  Date or date time, see {@link #isDayComparable(Class)}.
+     * @param days      Days to be added or removed from the start of the day.
+     * @return          the start of the day, of the type of the argument.
+     */
+    static Object startOfDay(Object argument, int days) {
+        if (argument instanceof java.sql.Date) {
+            return java.sql.Date.valueOf(((java.sql.Date) argument).toLocalDate().plusDays(days));
+        }
+        if (argument instanceof Date) {
+            Instant start = ((Date) argument).toInstant().atZone(ZoneId.systemDefault()).truncatedTo(ChronoUnit.DAYS).plusDays(days).toInstant();
+            return (argument instanceof Timestamp) ? Timestamp.from(start) : Date.from(start);
+        }
+        if (argument instanceof LocalDate) {
+            return ((LocalDate) argument).plusDays(days);
+        }
+        if (argument instanceof LocalDateTime) {
+            return ((LocalDateTime) argument).truncatedTo(ChronoUnit.DAYS).plusDays(days);
+        }
+        if (argument instanceof Instant) {
+            return ((Instant) argument).truncatedTo(ChronoUnit.DAYS).plus(days, ChronoUnit.DAYS);
+        }
+        if (argument instanceof OffsetDateTime) {
+            return ((OffsetDateTime) argument).truncatedTo(ChronoUnit.DAYS).plusDays(days);
+        }
+        if (argument instanceof ZonedDateTime) {
+            return ((ZonedDateTime) argument).truncatedTo(ChronoUnit.DAYS).plusDays(days);
+        }
+        throw new IllegalArgumentException("Cannot compare by day: " + argument.getClass());
     }
 
     /**
@@ -685,10 +1114,193 @@ public final class PredicateBuilder {
                 argument.getClass().getSimpleName());
     }
 
+    /**
+     * Bind the arguments of the next predicates as parameters.
+     *
+     * @param parameters  Side table receiving the parameters and their values,
+     *                    <tt>null</tt> to render arguments as literals.
+     * @param policy      Policy for the arguments kept as literals,
+     *                    <tt>null</tt> to use the one of the builder tools.
+     * @return            Fluent interface.
+     */
+    PredicateBuilder bindParameters(QueryParameters parameters, ParameterBindingPolicy policy) {
+        context.parameters = parameters;
+        context.bindingPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Define the query whose whole where clause the next nodes make. Joins
+     * that every match of a node requires are then INNER joins, and plural
+     * paths may be compiled into subqueries of that query.
+     *
+     * @param query  The query, <tt>null</tt> when the predicates may be
+     *               combined with other ones and only use LEFT joins.
+     * @return       Fluent interface.
+     */
+    PredicateBuilder whereClauseOf(CommonAbstractCriteria query) {
+        context.query = query;
+        return this;
+    }
+
+    /**
+     * Override the strategy of the builder tools for the comparisons on collections.
+     *
+     * @param strategy  PluralPathStrategy, <tt>null</tt> to use the one of the builder tools.
+     * @return          Fluent interface.
+     */
+    PredicateBuilder pluralPathStrategy(PluralPathStrategy strategy) {
+        context.pluralPathStrategy = strategy;
+        return this;
+    }
+
+    /**
+     * Verify if a collection was joined, so that an entity may appear in
+     * several rows of the query.
+     *
+     * @return <tt>true</tt> if one of the joins created so far goes through a collection.
+     */
+    boolean hasPluralJoins() {
+        for (Join<?, ?> join : context.joins.values()) {
+            if (join.getAttribute().isCollection()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check a node built at the top of the predicates against the budget of
+     * the builder tools, compiling its comparisons on collections into EXISTS
+     * subqueries when that is how it fits in.
+     *
+     * @return <tt>true</tt> if the node was checked, and the cost and plural
+     *         path strategy must be restored once it is built.
+     * @throws QueryBudgetExceededException if the node does not fit in the budget.
+     */
+    private boolean admit(Node node, From root, EntityManager entityManager, BuilderTools misc) {
+        QueryBudget budget = misc.getQueryBudget();
+        if (budget == null || context.cost != null || root == null) {
+            return false;
+        }
+        PluralPathStrategy strategy = (context.pluralPathStrategy != null) ? context.pluralPathStrategy : misc.getPluralPathStrategy();
+        boolean subqueries = context.query != null && !(context.query instanceof Subquery) && root instanceof Root;
+        QueryCost cost = QueryCost.estimate(node, root.getJavaType(), entityManager, misc, subqueries ? strategy : PluralPathStrategy.JOIN);
+        List<String> violations = budget.violations(cost);
+        if (!violations.isEmpty()) {
+            if (budget.isDegradingPluralJoins() && subqueries && cost.getPluralJoins() > 0) {
+                QueryCost degraded = QueryCost.estimate(node, root.getJavaType(), entityManager, misc, PluralPathStrategy.EXISTS);
+                if (budget.violations(degraded).isEmpty()) {
+                    LOG.log(Level.FINE, "Node {0} exceeds its budget with {1}, using EXISTS subqueries.", new Object[]{node, cost});
+                    context.pluralPathStrategy = PluralPathStrategy.EXISTS;
+                    context.cost = degraded;
+                    return true;
+                }
+            }
+            LOG.log(Level.FINE, "Node {0} rejected with {1}.", new Object[]{node, cost});
+            throw new QueryBudgetExceededException(cost, violations);
+        }
+        context.cost = cost;
+        return true;
+    }
+
+    /**
+     * Run the join analysis for a node built at the top of the where clause.
+     *
+     * @return <tt>true</tt> if the node was analyzed, and the result must be
+     *         discarded once it is built.
+     */
+    private boolean analyzeJoins(Node node, From root, EntityManager entityManager, BuilderTools misc) {
+        if (context.query == null || context.requiredJoins != null || root == null) {
+            return false;
+        }
+        context.requiredJoins = JoinAnalysis.requiredJoins(node, root.getJavaType(), entityManager, misc);
+        return true;
+    }
+
+    /**
+     * Find the collection a comparison goes through when it must be compiled
+     * into an EXISTS subquery rather than joining the collection.
+     *
+     * @return the translated path of the collection, or <tt>null</tt> if the
+     *         comparison is built on the query itself.
+     */
+    private String findSubqueryPath(ComparisonNode comparison, From root, EntityManager entityManager, BuilderTools misc) {
+        // collections inside a subquery are joined, its rows do not matter
+        if (context.query == null || context.query instanceof Subquery || !(root instanceof Root)
+                || (context.pluralPathStrategy != null ? context.pluralPathStrategy : misc.getPluralPathStrategy()) != PluralPathStrategy.EXISTS
+                || ComparisonOperatorProxy.asEnum(comparison.getOperator()) == null) {
+            return null;
+        }
+        Metamodel metaModel = entityManager.getMetamodel();
+        SelectorIndex.Resolution resolution = SelectorIndex.of(metaModel.managedType(root.getJavaType()))
+                .resolve(comparison.getSelector(), misc.getPropertiesMapper(), metaModel);
+        if (resolution == null) {
+            return null;
+        }
+        for (SelectorIndex.Step step : resolution.steps) {
+            if (step.plural) {
+                return step.path;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Create an EXISTS predicate on a subquery correlated with the root, whose
+     * where clause is the node. The arguments are bound to the same parameters
+     * as the ones of the query.
+     *
+     * @param node           RSQL AST node.
+     * @param root           Root of the query.
+     * @param entity         The main entity of the query.
+     * @param entityManager  JPA EntityManager.
+     * @param misc           Facade with all necessary tools for predicate creation.
+     * @return               Predicate a predicate representation of the Node.
+     */
+    private <T> Predicate createExists(Node node, From root, Class<T> entity, EntityManager entityManager, BuilderTools misc) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        Subquery<Integer> subquery = context.query.subquery(Integer.class);
+        Root<?> correlated = subquery.correlate((Root<?>) root);
+        CompilationContext nestedContext = new CompilationContext(context.parameters, context.bindingPolicy);
+        nestedContext.cost = context.cost;
+        nestedContext.placeholders = context.placeholders;
+        PredicateBuilder nested = new PredicateBuilder(nestedContext).whereClauseOf(subquery);
+        Predicate predicate = nested.createPredicate(node, correlated, entity, entityManager, misc);
+        return builder.exists(subquery.select(builder.literal(1)).where(predicate));
+    }
+
+    /**
+     * Forget the joins created so far, when the next predicates are built
+     * from another root.
+     */
+    void clearJoins() {
+        context.joins.clear();
+    }
+
+    /**
+     * Get the wrapper class of a primitive type.
+     *
+     * @param type  Java type.
+     * @return      The wrapper class if the type is primitive, the type itself otherwise.
+     */
+    static Class wrapperType(Class<?> type) {
+        if (!type.isPrimitive()) return type;
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == boolean.class) return Boolean.class;
+        if (type == double.class) return Double.class;
+        if (type == float.class) return Float.class;
+        if (type == short.class) return Short.class;
+        if (type == byte.class) return Byte.class;
+        if (type == char.class) return Character.class;
+        return Void.class;
+    }
+
     /**
      * This is used to test join caching
      */
     int getJoinCount() {
-        return joinMap.size();
+        return context.joins.size();
     }
 }
@@ -0,0 +1,237 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.ParameterExpression;
+
+/**
+ * PreparedQuery
+ *
+ * Criteria query compiled once from a node whose arguments may be
+ * placeholders, <tt>$</tt> followed by a name, and bound to typed values on
+ * each execution:
+ * <pre>
+ * PreparedQuery&lt;Course&gt; prepared = compiler.prepare(new RSQLParser().parse("department.id==$department;code=in=$codes"), manager);
+ *
+ * Map&lt;String, Object&gt; values = new HashMap&lt;String, Object&gt;();
+ * values.put("department", 1L);
+ * values.put("codes", Arrays.asList("MI-MDW", "MI-PAA"));
+ * List&lt;Course&gt; courses = prepared.createQuery(manager, values).getResultList();
+ * </pre>
+ * The selectors are resolved, and the type of each placeholder is known, when
+ * the query is prepared. A placeholder is the only argument of a comparison:
+ * a value for <tt>==</tt>, <tt>!=</tt> and the range operators, a non empty
+ * collection for <tt>=in=</tt> and <tt>=out=</tt>. Bound values are data,
+ * never patterns, and cannot be <tt>null</tt>.
+ * <p>
+ * A prepared query is immutable and may be shared by all threads.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Query result type
+ */
+public final class PreparedQuery<T> {
+
+	/**
+	 * First character of the placeholder arguments.
+	 */
+	public static final char PLACEHOLDER_PREFIX = '$';
+
+	private final CriteriaQuery<T> criteria;
+
+	private final Map<String, Placeholder> placeholders;
+
+	PreparedQuery(CriteriaQuery<T> criteria, Map<String, Placeholder> placeholders) {
+		this.criteria = criteria;
+		this.placeholders = Collections.unmodifiableMap(placeholders);
+	}
+
+	/**
+	 * Verify if an argument is a placeholder.
+	 *
+	 * @param argument RSQL argument.
+	 * @return         <tt>true</tt> for <tt>$</tt> followed by a name.
+	 */
+	static boolean isPlaceholder(String argument) {
+		return argument != null && argument.length() > 1 && argument.charAt(0) == PLACEHOLDER_PREFIX;
+	}
+
+	/**
+	 * @return the criteria query the parameters are bound to.
+	 */
+	CriteriaQuery<T> getCriteria() {
+		return criteria;
+	}
+
+	/**
+	 * @return the names of the placeholders, without their prefix.
+	 */
+	public Set<String> getPlaceholders() {
+		return placeholders.keySet();
+	}
+
+	/**
+	 * Get the type of the values of a placeholder.
+	 *
+	 * @param name Name of the placeholder.
+	 * @return     the type of its value, or of the elements of its collection.
+	 */
+	public Class<?> getType(String name) {
+		return placeholder(name).type;
+	}
+
+	/**
+	 * @param name Name of the placeholder.
+	 * @return     <tt>true</tt> if the placeholder is bound to a collection.
+	 */
+	public boolean isCollection(String name) {
+		return placeholder(name).collection;
+	}
+
+	/**
+	 * Create a typed query with the values bound to the placeholders.
+	 *
+	 * @param manager  JPA EntityManager of the persistence unit the query was prepared for.
+	 * @param values   Value of each placeholder, by name.
+	 * @return         the typed query with every parameter set.
+	 * @throws IllegalArgumentException if a placeholder is missing or unknown, or a value has not its type.
+	 */
+	public TypedQuery<T> createQuery(EntityManager manager, Map<String, ?> values) {
+		for (String name : values.keySet()) {
+			placeholder(name);
+		}
+		TypedQuery<T> query = manager.createQuery(criteria);
+		for (Placeholder placeholder : placeholders.values()) {
+			if (!values.containsKey(placeholder.name)) {
+				throw new IllegalArgumentException("Placeholder " + PLACEHOLDER_PREFIX + placeholder.name + " was not bound.");
+			}
+			placeholder.set(query, values.get(placeholder.name));
+		}
+		return query;
+	}
+
+	private Placeholder placeholder(String name) {
+		Placeholder placeholder = placeholders.get(name);
+		if (placeholder == null) {
+			throw new IllegalArgumentException("Unknown placeholder: " + PLACEHOLDER_PREFIX + name);
+		}
+		return placeholder;
+	}
+
+	/**
+	 * A placeholder and the parameters standing for it in the criteria, one
+	 * per comparison it is an argument of.
+	 */
+	static final class Placeholder {
+
+		private final String name;
+		private final Class<?> type;
+		private final boolean collection;
+		private final List<ParameterExpression<Object>> parameters = new ArrayList<>();
+		private final List<UnaryOperator<Object>> transforms = new ArrayList<>();
+
+		private Placeholder(String name, Class<?> type, boolean collection) {
+			this.name = name;
+			this.type = type;
+			this.collection = collection;
+		}
+
+		/**
+		 * Create a parameter for an occurrence of a placeholder.
+		 *
+		 * @param placeholders  Placeholders of the query being prepared.
+		 * @param builder       JPA CriteriaBuilder.
+		 * @param name          Name of the placeholder.
+		 * @param type          Type of the value, or of the elements of the collection.
+		 * @param collection    <tt>true</tt> if the value is a collection.
+		 * @param transform     Transformation turning a value into the compared one.
+		 * @return              The parameter expression.
+		 * @throws IllegalArgumentException if the placeholder already stands for another type.
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		static ParameterExpression<Object> occurrence(Map<String, Placeholder> placeholders, CriteriaBuilder builder,
+				String name, Class<?> type, boolean collection, UnaryOperator<Object> transform) {
+			Placeholder placeholder = placeholders.get(name);
+			if (placeholder == null) {
+				placeholder = new Placeholder(name, type, collection);
+				placeholders.put(name, placeholder);
+			} else if (placeholder.type != type || placeholder.collection != collection) {
+				throw new IllegalArgumentException("Placeholder " + PLACEHOLDER_PREFIX + name + " stands for both "
+						+ placeholder.describe() + " and " + new Placeholder(name, type, collection).describe() + ".");
+			}
+			// numbered rather than named after the placeholder, whose name may not be a valid parameter name
+			int ordinal = 1;
+			for (Placeholder other : placeholders.values()) {
+				ordinal += other.parameters.size();
+			}
+			String parameterName = "p" + ordinal;
+			Class parameterType = collection ? List.class : type;
+			ParameterExpression parameter = builder.parameter(parameterType, parameterName);
+			placeholder.parameters.add(parameter);
+			placeholder.transforms.add(transform);
+			return parameter;
+		}
+
+		private void set(TypedQuery<?> query, Object value) {
+			Object checked = collection ? elements(value) : check(value);
+			for (int i = 0; i < parameters.size(); i++) {
+				query.setParameter(parameters.get(i), collection ? checked : transforms.get(i).apply(checked));
+			}
+		}
+
+		private List<Object> elements(Object value) {
+			if (!(value instanceof Collection) || ((Collection<?>) value).isEmpty()) {
+				throw new IllegalArgumentException("Placeholder " + PLACEHOLDER_PREFIX + name + " takes " + describe() + ", not " + value + ".");
+			}
+			List<Object> elements = new ArrayList<>();
+			for (Object element : (Collection<?>) value) {
+				elements.add(check(element));
+			}
+			return elements;
+		}
+
+		private Object check(Object value) {
+			if (!type.isInstance(value)) {
+				throw new IllegalArgumentException("Placeholder " + PLACEHOLDER_PREFIX + name + " takes " + describe() + ", not " + value + ".");
+			}
+			return value;
+		}
+
+		private String describe() {
+			return (collection ? "a non empty collection of " : "a ") + type.getSimpleName();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Projection
+ *
+ * Fields selected instead of the whole entity, like the
+ * <tt>fields=id,name,department.name</tt> parameter of a request. Each
+ * selector is resolved like the selectors of the comparisons, through the
+ * {@link com.github.tennaito.rsql.misc.Mapper}, and must reach a basic or
+ * embedded property through to-one associations only. The selectors are the
+ * aliases of the elements of the tuples.
+ *
+ * @author AntonioRabelo
+ */
+public final class Projection {
+
+	private final List<String> selectors;
+
+	private Projection(List<String> selectors) {
+		if (selectors.isEmpty()) {
+			throw new IllegalArgumentException("Projection has no field.");
+		}
+		Set<String> distinct = new LinkedHashSet<>();
+		for (String selector : selectors) {
+			if (selector == null || selector.isEmpty()) {
+				throw new IllegalArgumentException("Invalid projection: " + selectors);
+			}
+			if (!distinct.add(selector)) {
+				throw new IllegalArgumentException("Field selected twice: " + selector);
+			}
+		}
+		this.selectors = Collections.unmodifiableList(new ArrayList<>(distinct));
+	}
+
+	/**
+	 * @param selectors  Dotted selectors, in order.
+	 * @return           the projection of the fields.
+	 */
+	public static Projection of(String... selectors) {
+		return new Projection(Arrays.asList(selectors));
+	}
+
+	/**
+	 * Parse a comma separated list of fields.
+	 *
+	 * @param fields  Fields, like <tt>id,name,department.name</tt>.
+	 * @return        the projection of the fields.
+	 * @throws IllegalArgumentException if a field is empty or repeated.
+	 */
+	public static Projection parse(String fields) {
+		List<String> selectors = new ArrayList<>();
+		for (String field : (fields == null ? "" : fields).split(",", -1)) {
+			selectors.add(field.trim());
+		}
+		return new Projection(selectors);
+	}
+
+	/**
+	 * @return the selectors, in order.
+	 */
+	public List<String> getSelectors() {
+		return selectors;
+	}
+
+	@Override
+	public String toString() {
+		return String.join(",", selectors);
+	}
+}
@@ -0,0 +1,244 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * QueryBudget
+ *
+ * Limits of the {@link QueryCost} of the queries compiled with the builder
+ * tools holding it. A node that exceeds one of them is rejected with a
+ * {@link QueryBudgetExceededException} before any predicate is built.
+ * <p>
+ * Joins of collections multiply the rows of a query. When allowed to degrade,
+ * a query that only fits in the budget once its comparisons on collections are
+ * compiled into EXISTS subqueries (see {@link PluralPathStrategy#EXISTS}) is
+ * compiled that way rather than rejected. Predicates that may be combined
+ * with other ones cannot degrade.
+ * <p>
+ * Every limit is unlimited until set. The budget is read while compiling, so
+ * it must be configured before it is shared.
+ *
+ * @author AntonioRabelo
+ */
+public class QueryBudget {
+
+	private int maxComparisons = Integer.MAX_VALUE;
+	private int maxJoins = Integer.MAX_VALUE;
+	private int maxPluralJoins = Integer.MAX_VALUE;
+	private int maxPluralDepth = Integer.MAX_VALUE;
+	private int maxInSize = Integer.MAX_VALUE;
+	private int maxLeadingWildcards = Integer.MAX_VALUE;
+	private int maxUnindexedComparisons = Integer.MAX_VALUE;
+	private long maxScore = Long.MAX_VALUE;
+	private boolean degradingPluralJoins;
+
+	private final Map<Class<?>, Set<String>> indexedSelectors = new HashMap<>();
+
+	/**
+	 * Construct an unlimited budget.
+	 */
+	public QueryBudget() {
+	}
+
+	/**
+	 * Construct a copy of another budget.
+	 *
+	 * @param budget Budget to copy.
+	 */
+	public QueryBudget(QueryBudget budget) {
+		this.maxComparisons = budget.maxComparisons;
+		this.maxJoins = budget.maxJoins;
+		this.maxPluralJoins = budget.maxPluralJoins;
+		this.maxPluralDepth = budget.maxPluralDepth;
+		this.maxInSize = budget.maxInSize;
+		this.maxLeadingWildcards = budget.maxLeadingWildcards;
+		this.maxUnindexedComparisons = budget.maxUnindexedComparisons;
+		this.maxScore = budget.maxScore;
+		this.degradingPluralJoins = budget.degradingPluralJoins;
+		for (Map.Entry<Class<?>, Set<String>> entry : budget.indexedSelectors.entrySet()) {
+			indexedSelectors.put(entry.getKey(), new HashSet<>(entry.getValue()));
+		}
+	}
+
+	/**
+	 * @return maximum number of comparisons.
+	 */
+	public int getMaxComparisons() {
+		return maxComparisons;
+	}
+
+	public void setMaxComparisons(int maxComparisons) {
+		this.maxComparisons = maxComparisons;
+	}
+
+	/**
+	 * @return maximum number of joins.
+	 */
+	public int getMaxJoins() {
+		return maxJoins;
+	}
+
+	public void setMaxJoins(int maxJoins) {
+		this.maxJoins = maxJoins;
+	}
+
+	/**
+	 * @return maximum number of joins of collections on the query itself.
+	 */
+	public int getMaxPluralJoins() {
+		return maxPluralJoins;
+	}
+
+	public void setMaxPluralJoins(int maxPluralJoins) {
+		this.maxPluralJoins = maxPluralJoins;
+	}
+
+	/**
+	 * @return maximum number of collections a selector goes through.
+	 */
+	public int getMaxPluralDepth() {
+		return maxPluralDepth;
+	}
+
+	public void setMaxPluralDepth(int maxPluralDepth) {
+		this.maxPluralDepth = maxPluralDepth;
+	}
+
+	/**
+	 * @return maximum number of arguments of an <tt>=in=</tt> or <tt>=out=</tt> comparison.
+	 */
+	public int getMaxInSize() {
+		return maxInSize;
+	}
+
+	public void setMaxInSize(int maxInSize) {
+		this.maxInSize = maxInSize;
+	}
+
+	/**
+	 * @return maximum number of patterns starting with a wildcard.
+	 */
+	public int getMaxLeadingWildcards() {
+		return maxLeadingWildcards;
+	}
+
+	public void setMaxLeadingWildcards(int maxLeadingWildcards) {
+		this.maxLeadingWildcards = maxLeadingWildcards;
+	}
+
+	/**
+	 * @return maximum number of comparisons on properties that are not indexed.
+	 */
+	public int getMaxUnindexedComparisons() {
+		return maxUnindexedComparisons;
+	}
+
+	public void setMaxUnindexedComparisons(int maxUnindexedComparisons) {
+		this.maxUnindexedComparisons = maxUnindexedComparisons;
+	}
+
+	/**
+	 * @return maximum score, see {@link QueryCost#getScore()}.
+	 */
+	public long getMaxScore() {
+		return maxScore;
+	}
+
+	public void setMaxScore(long maxScore) {
+		this.maxScore = maxScore;
+	}
+
+	/**
+	 * @return <tt>true</tt> if queries may use EXISTS subqueries on collections to fit in the budget.
+	 */
+	public boolean isDegradingPluralJoins() {
+		return degradingPluralJoins;
+	}
+
+	public void setDegradingPluralJoins(boolean degradingPluralJoins) {
+		this.degradingPluralJoins = degradingPluralJoins;
+	}
+
+	/**
+	 * Declare the properties of selectors as indexed, in addition to the
+	 * identifiers, unique columns and indexes of the mapping.
+	 *
+	 * @param entityClass  Entity the selectors start from.
+	 * @param selectors    RSQL selectors.
+	 */
+	public void setIndexed(Class<?> entityClass, String... selectors) {
+		Set<String> indexed = indexedSelectors.get(entityClass);
+		if (indexed == null) {
+			indexed = new HashSet<>();
+			indexedSelectors.put(entityClass, indexed);
+		}
+		for (String selector : selectors) {
+			indexed.add(selector);
+		}
+	}
+
+	/**
+	 * Verify if the property of a selector was declared as indexed.
+	 *
+	 * @param selector     RSQL selector.
+	 * @param entityClass  Entity the selector starts from.
+	 * @return             <tt>true</tt> if declared with {@link #setIndexed(Class, String...)}.
+	 */
+	public boolean isIndexed(String selector, Class<?> entityClass) {
+		Set<String> indexed = indexedSelectors.get(entityClass);
+		return indexed != null && indexed.contains(selector);
+	}
+
+	/**
+	 * Find the limits a cost exceeds.
+	 *
+	 * @param cost Cost of a node.
+	 * @return     the descriptions of the exceeded limits, empty if the cost fits.
+	 */
+	public List<String> violations(QueryCost cost) {
+		List<String> violations = new ArrayList<>();
+		exceeds(violations, "comparisons", cost.getComparisons(), maxComparisons);
+		exceeds(violations, "joins", cost.getJoins(), maxJoins);
+		exceeds(violations, "plural joins", cost.getPluralJoins(), maxPluralJoins);
+		exceeds(violations, "plural depth", cost.getPluralDepth(), maxPluralDepth);
+		exceeds(violations, "in size", cost.getMaxInSize(), maxInSize);
+		exceeds(violations, "leading wildcards", cost.getLeadingWildcards(), maxLeadingWildcards);
+		exceeds(violations, "unindexed comparisons", cost.getUnindexedComparisons(), maxUnindexedComparisons);
+		exceeds(violations, "score", cost.getScore(), maxScore);
+		return violations;
+	}
+
+	private static void exceeds(List<String> violations, String name, long value, long limit) {
+		if (value > limit) {
+			violations.add(name + " " + value + " > " + limit);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.List;
+
+/**
+ * Indicate that a RSQL node was rejected because its cost exceeds the
+ * {@link QueryBudget} of the builder tools.
+ *
+ * @author AntonioRabelo
+ */
+public class QueryBudgetExceededException extends IllegalArgumentException {
+
+	/**
+	 * SERIAL UID
+	 */
+	private static final long serialVersionUID = -3318237043211904613L;
+
+	private final transient QueryCost cost;
+
+	private final List<String> violations;
+
+	/**
+	 * Construct a <tt>QueryBudgetExceededException</tt> with the cost of the
+	 * node and the limits it exceeds.
+	 *
+	 * @param cost
+	 * @param violations
+	 */
+	public QueryBudgetExceededException(QueryCost cost, List<String> violations) {
+		super("Query exceeds its budget: " + String.join(", ", violations) + ".");
+		this.cost = cost;
+		this.violations = violations;
+	}
+
+	public QueryCost getCost() {
+		return cost;
+	}
+
+	public List<String> getViolations() {
+		return violations;
+	}
+}
@@ -0,0 +1,280 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.Metamodel;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.misc.StringMatching;
+import com.github.tennaito.rsql.parser.ast.ComparisonOperatorProxy;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * QueryCost
+ *
+ * Estimated cost of the query compiled from a RSQL AST, read from the node
+ * and the metamodel only: the comparisons, the joins and the joins of
+ * collections, which multiply the rows, the number of collections a selector
+ * goes through, the size of the <tt>=in=</tt> lists, the patterns starting
+ * with a wildcard and the comparisons on properties that are not indexed.
+ * <p>
+ * The score weighs them all, from one point per comparison up to
+ * {@value #LEADING_WILDCARD_WEIGHT} points per pattern starting with a
+ * wildcard, which no index can serve.
+ *
+ * @author AntonioRabelo
+ */
+public final class QueryCost {
+
+	/**
+	 * Points per comparison.
+	 */
+	public static final int COMPARISON_WEIGHT = 1;
+
+	/**
+	 * Points per join.
+	 */
+	public static final int JOIN_WEIGHT = 4;
+
+	/**
+	 * Points per join of a collection, in addition to the join points.
+	 */
+	public static final int PLURAL_JOIN_WEIGHT = 16;
+
+	/**
+	 * Arguments of <tt>=in=</tt> and <tt>=out=</tt> lists per point.
+	 */
+	public static final int IN_ARGUMENTS_PER_POINT = 100;
+
+	/**
+	 * Points per pattern starting with a wildcard.
+	 */
+	public static final int LEADING_WILDCARD_WEIGHT = 32;
+
+	/**
+	 * Points per comparison on a property that is not indexed.
+	 */
+	public static final int UNINDEXED_WEIGHT = 8;
+
+	private int comparisons;
+	private int joins;
+	private int pluralJoins;
+	private int pluralDepth;
+	private int maxInSize;
+	private int inArguments;
+	private int leadingWildcards;
+	private int unindexedComparisons;
+
+	private QueryCost() {
+	}
+
+	/**
+	 * Estimate the cost of a node with the plural path strategy of the builder tools.
+	 *
+	 * @param node    RSQL AST node.
+	 * @param entity  Entity the selectors start from.
+	 * @param manager JPA EntityManager.
+	 * @param misc    Facade with the mapper, string matching policy and budget.
+	 * @return        the cost of the node.
+	 */
+	public static QueryCost estimate(Node node, Class<?> entity, EntityManager manager, BuilderTools misc) {
+		return estimate(node, entity, manager, misc, misc.getPluralPathStrategy());
+	}
+
+	/**
+	 * Estimate the cost of a node.
+	 *
+	 * @param strategy Strategy of the comparisons on collections: with EXISTS
+	 *                 subqueries, no collection is joined on the query itself.
+	 */
+	static QueryCost estimate(Node node, Class<?> entity, EntityManager manager, BuilderTools misc, PluralPathStrategy strategy) {
+		Metamodel metamodel = manager.getMetamodel();
+		QueryCost cost = new QueryCost();
+		Set<String> joins = new HashSet<>();
+		Set<String> pluralJoins = new HashSet<>();
+		cost.add(node, new Context(entity, SelectorIndex.of(metamodel.managedType(entity)), metamodel, misc, strategy), joins, pluralJoins);
+		cost.joins = joins.size();
+		cost.pluralJoins = pluralJoins.size();
+		return cost;
+	}
+
+	private void add(Node node, Context context, Set<String> joinPaths, Set<String> pluralPaths) {
+		if (node instanceof LogicalNode) {
+			for (Node child : ((LogicalNode) node).getChildren()) {
+				add(child, context, joinPaths, pluralPaths);
+			}
+			return;
+		}
+		if (!(node instanceof ComparisonNode)) {
+			return;
+		}
+		ComparisonNode comparison = (ComparisonNode) node;
+		comparisons++;
+		ComparisonOperatorProxy operator = ComparisonOperatorProxy.asEnum(comparison.getOperator());
+		if (operator == ComparisonOperatorProxy.IN || operator == ComparisonOperatorProxy.NOT_IN) {
+			maxInSize = Math.max(maxInSize, comparison.getArguments().size());
+			inArguments += comparison.getArguments().size();
+		}
+
+		SelectorIndex.Resolution resolution = context.index.resolve(comparison.getSelector(), context.misc.getPropertiesMapper(), context.metamodel);
+		if (resolution == null) {
+			// a join alias, already paid for by whoever created the join
+			return;
+		}
+		SelectorIndex.Step[] steps = resolution.steps;
+		int depth = 0;
+		for (int i = 0; i < steps.length; i++) {
+			SelectorIndex.Step step = steps[i];
+			if (step.plural) {
+				depth++;
+				if (context.strategy != PluralPathStrategy.EXISTS) {
+					pluralPaths.add(step.path);
+				}
+			}
+			if (step.join && !(resolution.foreignKey && i == steps.length - 2)) {
+				joinPaths.add(step.path);
+			}
+		}
+		pluralDepth = Math.max(pluralDepth, depth);
+
+		if (!resolution.indexed && (context.budget == null || !context.budget.isIndexed(comparison.getSelector(), context.entity))) {
+			unindexedComparisons++;
+		}
+		if (resolution.javaType == String.class
+				&& (operator == ComparisonOperatorProxy.EQUAL || operator == ComparisonOperatorProxy.NOT_EQUAL)) {
+			StringMatching matching = context.misc.getStringMatchingPolicy().getMatching(comparison.getSelector(), context.entity);
+			String argument = comparison.getArguments().get(0);
+			if (matching.isPattern(argument) && hasLeadingWildcard(matching.toPattern(argument))) {
+				leadingWildcards++;
+			}
+		}
+	}
+
+	/**
+	 * Verify if a <tt>LIKE</tt> pattern starts with a wildcard.
+	 *
+	 * @param pattern JPQL pattern.
+	 * @return        <tt>true</tt> if no index can serve the pattern.
+	 */
+	private static boolean hasLeadingWildcard(String pattern) {
+		return !pattern.isEmpty() && (pattern.charAt(0) == '%' || pattern.charAt(0) == '_');
+	}
+
+	/**
+	 * @return the number of comparisons.
+	 */
+	public int getComparisons() {
+		return comparisons;
+	}
+
+	/**
+	 * @return the number of joins, subqueries included.
+	 */
+	public int getJoins() {
+		return joins;
+	}
+
+	/**
+	 * @return the number of joins of collections on the query itself, each multiplying its rows.
+	 */
+	public int getPluralJoins() {
+		return pluralJoins;
+	}
+
+	/**
+	 * @return the largest number of collections a selector goes through.
+	 */
+	public int getPluralDepth() {
+		return pluralDepth;
+	}
+
+	/**
+	 * @return the number of arguments of the largest <tt>=in=</tt> or <tt>=out=</tt> comparison.
+	 */
+	public int getMaxInSize() {
+		return maxInSize;
+	}
+
+	/**
+	 * @return the number of patterns starting with a wildcard.
+	 */
+	public int getLeadingWildcards() {
+		return leadingWildcards;
+	}
+
+	/**
+	 * @return the number of comparisons on properties that are not indexed.
+	 */
+	public int getUnindexedComparisons() {
+		return unindexedComparisons;
+	}
+
+	/**
+	 * @return the weighted sum of the cost factors.
+	 */
+	public long getScore() {
+		return (long) comparisons * COMPARISON_WEIGHT
+				+ (long) joins * JOIN_WEIGHT
+				+ (long) pluralJoins * PLURAL_JOIN_WEIGHT
+				+ inArguments / IN_ARGUMENTS_PER_POINT
+				+ (long) leadingWildcards * LEADING_WILDCARD_WEIGHT
+				+ (long) unindexedComparisons * UNINDEXED_WEIGHT;
+	}
+
+	@Override
+	public String toString() {
+		return "QueryCost[comparisons=" + comparisons + ", joins=" + joins + ", pluralJoins=" + pluralJoins
+				+ ", pluralDepth=" + pluralDepth + ", maxInSize=" + maxInSize + ", leadingWildcards=" + leadingWildcards
+				+ ", unindexedComparisons=" + unindexedComparisons + ", score=" + getScore() + "]";
+	}
+
+	/**
+	 * What the estimation needs to know about the entity.
+	 */
+	private static final class Context {
+
+		private final Class<?> entity;
+		private final SelectorIndex index;
+		private final Metamodel metamodel;
+		private final BuilderTools misc;
+		private final QueryBudget budget;
+		private final PluralPathStrategy strategy;
+
+		private Context(Class<?> entity, SelectorIndex index, Metamodel metamodel, BuilderTools misc, PluralPathStrategy strategy) {
+			this.entity = entity;
+			this.index = index;
+			this.metamodel = metamodel;
+			this.misc = misc;
+			this.budget = misc.getQueryBudget();
+			this.strategy = strategy;
+		}
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.ParameterExpression;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+
+/**
+ * QueryParameters
+ *
+ * Side table of the parameters created while building predicates, holding
+ * the value bound to each one and where that value came from.
+ * <p>
+ * Once the criteria query is built, the values are set on the typed query
+ * created from it:
+ * <pre>
+ * QueryParameters parameters = new QueryParameters();
+ * CriteriaQuery&lt;Course&gt; criteria = node.accept(visitor.defineParameters(parameters), manager);
+ * List&lt;Course&gt; courses = parameters.apply(manager.createQuery(criteria)).getResultList();
+ * </pre>
+ *
+ * @author AntonioRabelo
+ */
+public class QueryParameters {
+
+	/**
+	 * Accepts every argument.
+	 */
+	static final Predicate<Object> ANY_ARGUMENT = argument -> true;
+
+	/**
+	 * Index of a binding holding all the arguments of its comparison.
+	 */
+	static final int ALL_ARGUMENTS = -1;
+
+	private final List<Binding> bindings = new ArrayList<>();
+
+	/**
+	 * Create a parameter for a comparison argument and record its value.
+	 *
+	 * @param builder     JPA CriteriaBuilder.
+	 * @param type        Type of the parameter.
+	 * @param argument    Casted argument.
+	 * @param transform   Transformation turning the argument into the bound value.
+	 * @param comparison  Comparison node the argument belongs to, <tt>null</tt> for a value that is not an argument.
+	 * @param index       Position of the argument in the comparison node.
+	 * @return            The parameter expression.
+	 */
+	<Y> ParameterExpression<Y> bind(CriteriaBuilder builder, Class<Y> type, Object argument,
+			UnaryOperator<Object> transform, ComparisonNode comparison, int index) {
+		return bind(builder, type, argument, transform, ANY_ARGUMENT, comparison, index);
+	}
+
+	/**
+	 * Create a parameter for a comparison argument and record its value, along
+	 * with the arguments that the parameter can later be rebound to.
+	 *
+	 * @param builder     JPA CriteriaBuilder.
+	 * @param type        Type of the parameter.
+	 * @param argument    Casted argument.
+	 * @param transform   Transformation turning the argument into the bound value.
+	 * @param accepts     Casted arguments that would have built the same predicate.
+	 * @param comparison  Comparison node the argument belongs to, <tt>null</tt> for a value that is not an argument.
+	 * @param index       Position of the argument in the comparison node.
+	 * @return            The parameter expression.
+	 */
+	<Y> ParameterExpression<Y> bind(CriteriaBuilder builder, Class<Y> type, Object argument,
+			UnaryOperator<Object> transform, Predicate<Object> accepts, ComparisonNode comparison, int index) {
+		ParameterExpression<Y> parameter = builder.parameter(type, "p" + (bindings.size() + 1));
+		bindings.add(new Binding(parameter, transform.apply(argument), type, transform, accepts, comparison, index));
+		return parameter;
+	}
+
+	/**
+	 * Create a single collection-valued parameter for a chunk of the arguments
+	 * of a comparison and record them.
+	 *
+	 * @param builder     JPA CriteriaBuilder.
+	 * @param type        Type of the elements of the collection.
+	 * @param arguments   Casted arguments, all of them.
+	 * @param from        Position of the first argument of the chunk.
+	 * @param length      Maximum number of arguments of the chunk.
+	 * @param comparison  Comparison node the arguments belong to.
+	 * @return            The parameter expression.
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	ParameterExpression<List> bindAll(CriteriaBuilder builder, Class<?> type, List<?> arguments, int from, int length, ComparisonNode comparison) {
+		ParameterExpression<List> parameter = builder.parameter(List.class, "p" + (bindings.size() + 1));
+		List<Object> chunk = new ArrayList<Object>(arguments.subList(from, chunkEnd(arguments.size(), from, length)));
+		bindings.add(new Binding(parameter, chunk, type, UnaryOperator.identity(), ANY_ARGUMENT, comparison, ALL_ARGUMENTS, from, length));
+		return parameter;
+	}
+
+	/**
+	 * @return the position following the last argument of a chunk.
+	 */
+	static int chunkEnd(int size, int from, int length) {
+		return (int) Math.min(size, (long) from + length);
+	}
+
+	/**
+	 * Set all the bound values on the query.
+	 *
+	 * @param query JPA typed query created from the criteria.
+	 * @return      the same query.
+	 */
+	public <X> TypedQuery<X> apply(TypedQuery<X> query) {
+		for (Binding binding : bindings) {
+			query.setParameter(binding.parameter, binding.value);
+		}
+		return query;
+	}
+
+	/**
+	 * Get the bound values by parameter name.
+	 *
+	 * @return the values in creation order.
+	 */
+	public Map<String, Object> asMap() {
+		Map<String, Object> values = new LinkedHashMap<>();
+		for (Binding binding : bindings) {
+			values.put(binding.parameter.getName(), binding.value);
+		}
+		return values;
+	}
+
+	/**
+	 * @return the number of bound parameters.
+	 */
+	public int size() {
+		return bindings.size();
+	}
+
+	List<Binding> getBindings() {
+		return Collections.unmodifiableList(bindings);
+	}
+
+	/**
+	 * A parameter and its bound value. A binding of {@link #ALL_ARGUMENTS}
+	 * holds the list of the values of the elements of the given type, for the
+	 * arguments of the chunk starting at <tt>from</tt>.
+	 */
+	static final class Binding {
+
+		final ParameterExpression<Object> parameter;
+		final Object value;
+		final Class<?> type;
+		final UnaryOperator<Object> transform;
+		final Predicate<Object> accepts;
+		final ComparisonNode comparison;
+		final int index;
+		final int from;
+		final int length;
+
+		Binding(ParameterExpression<?> parameter, Object value, Class<?> type,
+				UnaryOperator<Object> transform, Predicate<Object> accepts, ComparisonNode comparison, int index) {
+			this(parameter, value, type, transform, accepts, comparison, index, 0, Integer.MAX_VALUE);
+		}
+
+		@SuppressWarnings("unchecked")
+		Binding(ParameterExpression<?> parameter, Object value, Class<?> type,
+				UnaryOperator<Object> transform, Predicate<Object> accepts, ComparisonNode comparison, int index, int from, int length) {
+			this.parameter = (ParameterExpression<Object>) parameter;
+			this.value = value;
+			this.type = type;
+			this.transform = transform;
+			this.accepts = accepts;
+			this.comparison = comparison;
+			this.index = index;
+			this.from = from;
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaQuery;
+
+import com.github.tennaito.rsql.metrics.QueryListener;
+import com.github.tennaito.rsql.metrics.QueryPhase;
+import com.github.tennaito.rsql.misc.ArgumentParser;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * QueryPlan
+ *
+ * A criteria query compiled once for a query shape, whose arguments are all
+ * parameters. Executing the plan for another node of the same shape only
+ * parses the new arguments and binds them.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Query result type
+ */
+final class QueryPlan<T> {
+
+	private final CriteriaQuery<T> criteria;
+
+	private final Slot[] slots;
+
+	/**
+	 * Create a plan from a compiled criteria.
+	 *
+	 * @param criteria    Criteria query built with bound parameters.
+	 * @param node        Node the criteria was compiled from.
+	 * @param parameters  Parameters created while compiling.
+	 */
+	QueryPlan(CriteriaQuery<T> criteria, Node node, QueryParameters parameters) {
+		this.criteria = criteria;
+		Map<ComparisonNode, Integer> ordinals = new IdentityHashMap<>();
+		List<ComparisonNode> comparisons = QueryShape.comparisons(node);
+		for (int i = 0; i < comparisons.size(); i++) {
+			ordinals.put(comparisons.get(i), i);
+		}
+		List<QueryParameters.Binding> bindings = parameters.getBindings();
+		this.slots = new Slot[bindings.size()];
+		for (int i = 0; i < slots.length; i++) {
+			QueryParameters.Binding binding = bindings.get(i);
+			Integer ordinal = ordinals.get(binding.comparison);
+			if (ordinal == null) {
+				throw new IllegalStateException("Parameter bound outside of the compiled node: " + binding.comparison);
+			}
+			slots[i] = new Slot(binding, ordinal);
+		}
+	}
+
+	/**
+	 * Create a typed query for a node with the same shape as the plan.
+	 *
+	 * @param node     RSQL AST node.
+	 * @param manager  JPA EntityManager.
+	 * @param parser   Parser of the arguments.
+	 * @param listener Listener of the argument conversion.
+	 * @return         the typed query with every parameter set, or <tt>null</tt>
+	 *                 if an argument does not fit the plan and the node must be compiled.
+	 */
+	TypedQuery<T> createQuery(Node node, EntityManager manager, ArgumentParser parser, QueryListener listener) {
+		Object[] values;
+		long begin = listener.begin(QueryPhase.ARGUMENT_CONVERSION);
+		try {
+			values = convert(node, parser);
+		} finally {
+			listener.end(QueryPhase.ARGUMENT_CONVERSION, begin);
+		}
+		if (values == null) {
+			return null;
+		}
+		TypedQuery<T> query = manager.createQuery(criteria);
+		for (int i = 0; i < slots.length; i++) {
+			query.setParameter(slots[i].binding.parameter, values[i]);
+		}
+		return query;
+	}
+
+	/**
+	 * Parse the values of the parameters from the arguments of a node.
+	 *
+	 * @return the values, or <tt>null</tt> if an argument does not fit the plan.
+	 */
+	private Object[] convert(Node node, ArgumentParser parser) {
+		List<ComparisonNode> comparisons = QueryShape.comparisons(node);
+		Object[] values = new Object[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			Slot slot = slots[i];
+			List<String> arguments = comparisons.get(slot.comparison).getArguments();
+			if (slot.argument == QueryParameters.ALL_ARGUMENTS) {
+				List<String> chunk = arguments.subList(slot.binding.from, QueryParameters.chunkEnd(arguments.size(), slot.binding.from, slot.binding.length));
+				List<?> elements = parser.parse(chunk, slot.binding.type);
+				if (elements.contains(null)) {
+					return null;
+				}
+				values[i] = elements;
+				continue;
+			}
+			// a padded list repeats its last argument.
+			Object argument = parser.parse(arguments.get(Math.min(slot.argument, arguments.size() - 1)), slot.binding.type);
+			if (argument == null || !slot.binding.accepts.test(argument)) {
+				return null;
+			}
+			values[i] = slot.binding.transform.apply(argument);
+		}
+		return values;
+	}
+
+	/**
+	 * Where the value of a parameter comes from.
+	 */
+	private static final class Slot {
+
+		private final QueryParameters.Binding binding;
+		private final int comparison;
+		private final int argument;
+
+		private Slot(QueryParameters.Binding binding, int comparison) {
+			this.binding = binding;
+			this.comparison = comparison;
+			this.argument = binding.index;
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.tennaito.rsql.misc.StringMatching;
+import com.github.tennaito.rsql.parser.ast.ComparisonOperatorProxy;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.LogicalOperator;
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * QueryShape
+ *
+ * Utility methods describing the literal-stripped shape of a RSQL AST: the
+ * logical structure, selectors, operators and argument count, with every
+ * argument replaced by a placeholder. The placeholder tells the arguments
+ * that change the predicate that is built apart: <tt>null</tt> ones, and the
+ * ones holding a wildcard, which are <tt>LIKE</tt> patterns for most
+ * {@link StringMatching}s.
+ *
+ * @author AntonioRabelo
+ */
+final class QueryShape {
+
+	private QueryShape() {
+	}
+
+	/**
+	 * Describe the shape of the node. The argument lists that are padded or
+	 * bound as one collection are described by their padded size, or as a
+	 * collection.
+	 *
+	 * @param node    RSQL AST node.
+	 * @param inLists Strategy for the arguments of in and out comparisons.
+	 * @return     the shape, or <tt>null</tt> if the node uses operators
+	 *             that are not built in and therefore cannot be rebound.
+	 */
+	static String of(Node node, InListStrategy inLists) {
+		StringBuilder shape = new StringBuilder(64);
+		return append(node, inLists, shape) ? shape.toString() : null;
+	}
+
+	/**
+	 * Collect the comparison nodes in the order predicates are built from them.
+	 *
+	 * @param node RSQL AST node.
+	 * @return     all comparison nodes, depth first.
+	 */
+	static List<ComparisonNode> comparisons(Node node) {
+		List<ComparisonNode> comparisons = new ArrayList<>();
+		collect(node, comparisons);
+		return comparisons;
+	}
+
+	/**
+	 * Verify if an argument will be parsed as <tt>null</tt>.
+	 *
+	 * @param argument RSQL argument.
+	 * @return         <tt>true</tt> if the argument stands for null.
+	 */
+	static boolean isNullArgument(String argument) {
+		if (argument == null) {
+			return true;
+		}
+		String trimmed = argument.trim();
+		return trimmed.length() == 4 && trimmed.equalsIgnoreCase("null");
+	}
+
+	/**
+	 * Verify if none of the arguments will be parsed as <tt>null</tt>.
+	 *
+	 * @param arguments RSQL arguments.
+	 * @return          <tt>true</tt> if they all stand for values.
+	 */
+	static boolean hasNoNullArgument(List<String> arguments) {
+		for (String argument : arguments) {
+			if (isNullArgument(argument)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static char placeholder(String argument) {
+		if (isNullArgument(argument)) {
+			return '0';
+		}
+		return StringMatching.hasWildcard(argument) ? '*' : '?';
+	}
+
+	private static boolean append(Node node, InListStrategy inLists, StringBuilder shape) {
+		if (node instanceof LogicalNode) {
+			LogicalNode logical = (LogicalNode) node;
+			char separator = logical.getOperator() == LogicalOperator.AND ? ';' : ',';
+			shape.append('(');
+			boolean first = true;
+			for (Node child : logical.getChildren()) {
+				if (!first) {
+					shape.append(separator);
+				}
+				first = false;
+				if (!append(child, inLists, shape)) {
+					return false;
+				}
+			}
+			shape.append(')');
+			return true;
+		}
+		if (node instanceof ComparisonNode) {
+			ComparisonNode comparison = (ComparisonNode) node;
+			ComparisonOperatorProxy operator = ComparisonOperatorProxy.asEnum(comparison.getOperator());
+			if (operator == null) {
+				return false;
+			}
+			shape.append(comparison.getSelector()).append(comparison.getOperator().getSymbol()).append('[');
+			List<String> arguments = comparison.getArguments();
+			if ((operator == ComparisonOperatorProxy.IN || operator == ComparisonOperatorProxy.NOT_IN)
+					&& hasNoNullArgument(arguments) && (inLists.isPadding() || inLists.isCollection(arguments.size()))) {
+				shape.append(inLists.isCollection(arguments.size()) ? "*" + inLists.chunkCount(arguments.size()) : "#" + inLists.paddedSize(arguments.size()));
+			} else {
+				for (String argument : arguments) {
+					shape.append(placeholder(argument));
+				}
+			}
+			shape.append(']');
+			return true;
+		}
+		return false;
+	}
+
+	private static void collect(Node node, List<ComparisonNode> comparisons) {
+		if (node instanceof LogicalNode) {
+			for (Node child : ((LogicalNode) node).getChildren()) {
+				collect(child, comparisons);
+			}
+		} else if (node instanceof ComparisonNode) {
+			comparisons.add((ComparisonNode) node);
+		}
+	}
+}
@@ -0,0 +1,421 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.Column;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinColumns;
+import javax.persistence.JoinTable;
+import javax.persistence.OneToOne;
+import javax.persistence.Table;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.Attribute.PersistentAttributeType;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type.PersistenceType;
+
+import com.github.tennaito.rsql.misc.BoundedCache;
+import com.github.tennaito.rsql.misc.Mapper;
+
+/**
+ * SelectorIndex
+ *
+ * Index of the attributes of a managed type, lazily built once per type, and
+ * of the resolutions of the dotted property paths starting from that type.
+ * <p>
+ * Resolving a selector only translates its segments with the {@link Mapper}
+ * and looks up the resolution of the translated path, which is compiled the
+ * first time from the metamodel. The index keeps no reference to the
+ * metamodel, so the index of a closed persistence unit can be collected.
+ *
+ * @author AntonioRabelo
+ */
+final class SelectorIndex {
+
+	private static final Logger LOG = Logger.getLogger(SelectorIndex.class.getName());
+
+	/**
+	 * Maximum number of resolutions kept per managed type.
+	 */
+	static final int MAXIMUM_RESOLUTIONS = 512;
+
+	private static final ConcurrentMap<TypeKey, SelectorIndex> INDEXES = new ConcurrentHashMap<>();
+
+	private static final ReferenceQueue<ManagedType<?>> COLLECTED = new ReferenceQueue<>();
+
+	private final Class<?> javaType;
+
+	private final Map<String, Property> properties;
+
+	private final BoundedCache<String, Resolution> resolutions = new BoundedCache<>(MAXIMUM_RESOLUTIONS);
+
+	private SelectorIndex(ManagedType<?> type) {
+		this.javaType = type.getJavaType();
+		Map<String, Property> map = new HashMap<>();
+		Set<String> indexedColumns = indexedColumns(javaType);
+		for (Attribute<?, ?> attribute : type.getAttributes()) {
+			map.put(attribute.getName(), new Property(attribute, indexedColumns));
+		}
+		this.properties = map;
+	}
+
+	/**
+	 * Get the index of a managed type, building it on first use.
+	 *
+	 * @param type  Managed type.
+	 * @return      The index of the type.
+	 */
+	static SelectorIndex of(ManagedType<?> type) {
+		SelectorIndex index = INDEXES.get(new TypeKey(type, null));
+		if (index == null) {
+			expungeCollected();
+			index = INDEXES.computeIfAbsent(new TypeKey(type, COLLECTED), key -> new SelectorIndex(type));
+		}
+		return index;
+	}
+
+	/**
+	 * Remove the indexes of the managed types already collected.
+	 */
+	private static void expungeCollected() {
+		Reference<?> collected;
+		while ((collected = COLLECTED.poll()) != null) {
+			INDEXES.remove(collected);
+		}
+	}
+
+	/**
+	 * Find the columns leading an index declared on the table of a type or of
+	 * its super classes.
+	 *
+	 * @return the upper case column names.
+	 */
+	private static Set<String> indexedColumns(Class<?> type) {
+		Set<String> columns = new HashSet<>();
+		for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+			Table table = current.getAnnotation(Table.class);
+			if (table == null) {
+				continue;
+			}
+			for (Index index : table.indexes()) {
+				String first = index.columnList().split(",")[0].trim().split("\\s+")[0];
+				columns.add(first.toUpperCase(Locale.ROOT));
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Resolve a selector.
+	 *
+	 * @param selector   Dotted selector, each segment being translated by the mapper.
+	 * @param mapper     Mapper of the selectors to property names.
+	 * @param metamodel  Metamodel of the persistence unit.
+	 * @return           The resolution, or <tt>null</tt> if a segment is not an attribute.
+	 */
+	Resolution resolve(String selector, Mapper mapper, Metamodel metamodel) {
+		Translation translation = new Translation(this);
+		if (!translate(selector, mapper, metamodel, translation)) {
+			return null;
+		}
+		String path = translation.path.toString();
+		Resolution resolution = resolutions.get(path);
+		if (resolution == null) {
+			resolution = compile(path, metamodel);
+			LOG.log(Level.FINE, "Resolved {0} from {1}.", new Object[]{path, javaType.getName()});
+			resolutions.putIfAbsent(path, resolution);
+		}
+		return resolution;
+	}
+
+	/**
+	 * Translate the segments of a selector into attribute names.
+	 *
+	 * @return <tt>false</tt> if a segment is not an attribute.
+	 */
+	private static boolean translate(String selector, Mapper mapper, Metamodel metamodel, Translation translation) {
+		int start = 0;
+		while (start <= selector.length()) {
+			int end = selector.indexOf('.', start);
+			if (end < 0) {
+				end = selector.length();
+			}
+			if (translation.index == null) {
+				// the previous segment is a basic attribute
+				return false;
+			}
+			String segment = selector.substring(start, end);
+			String mapped = mapper.translate(segment, translation.index.javaType);
+			if (!mapped.equals(segment)) {
+				if (!translate(mapped, mapper, metamodel, translation)) {
+					return false;
+				}
+			} else {
+				Property property = translation.index.properties.get(segment);
+				if (property == null) {
+					return false;
+				}
+				if (translation.path.length() > 0) {
+					translation.path.append('.');
+				}
+				translation.path.append(segment);
+				translation.index = property.target(metamodel);
+			}
+			start = end + 1;
+		}
+		return true;
+	}
+
+	private Resolution compile(String path, Metamodel metamodel) {
+		List<Step> steps = new ArrayList<>();
+		SelectorIndex index = this;
+		Class<?> type = javaType;
+		Property previous = null;
+		Property property = null;
+		boolean foreignKey = false;
+		int start = 0;
+		while (start <= path.length()) {
+			int end = path.indexOf('.', start);
+			if (end < 0) {
+				end = path.length();
+			}
+			property = index.properties.get(path.substring(start, end));
+			steps.add(new Step(property.name, path.substring(0, end), property.join, property.plural));
+			foreignKey = property.identifier && previous != null && previous.foreignKey;
+			type = property.javaType;
+			index = property.target(metamodel);
+			previous = property;
+			start = end + 1;
+		}
+		return new Resolution(steps.toArray(new Step[0]), type, foreignKey, property.indexed);
+	}
+
+	/**
+	 * Attribute of the managed type, reduced to what the resolution needs.
+	 */
+	private static final class Property {
+
+		private final String name;
+		private final Class<?> javaType;
+		private final boolean join;
+		private final boolean plural;
+		private final boolean managed;
+		private final boolean identifier;
+		private final boolean foreignKey;
+		private final boolean indexed;
+		private volatile SelectorIndex target;
+
+		private Property(Attribute<?, ?> attribute, Set<String> indexedColumns) {
+			this.name = attribute.getName();
+			PersistentAttributeType kind = attribute.getPersistentAttributeType();
+			if (attribute.isCollection()) {
+				PluralAttribute<?, ?, ?> plural = (PluralAttribute<?, ?, ?>) attribute;
+				this.javaType = plural.getBindableJavaType();
+				this.managed = plural.getElementType().getPersistenceType() != PersistenceType.BASIC;
+			} else {
+				this.javaType = attribute.getJavaType();
+				this.managed = attribute.isAssociation() || kind == PersistentAttributeType.EMBEDDED;
+			}
+			this.join = attribute.isAssociation() || kind == PersistentAttributeType.ELEMENT_COLLECTION;
+			this.plural = attribute.isCollection();
+			this.identifier = attribute instanceof SingularAttribute && ((SingularAttribute<?, ?>) attribute).isId();
+			this.foreignKey = holdsForeignKey(attribute);
+			this.indexed = isIndexed(attribute, identifier, indexedColumns);
+		}
+
+		/**
+		 * Verify if the column of the attribute is known to be indexed: an
+		 * identifier, a unique column, or the first column of an index of the
+		 * table.
+		 */
+		private static boolean isIndexed(Attribute<?, ?> attribute, boolean identifier, Set<String> indexedColumns) {
+			if (identifier) {
+				return true;
+			}
+			String name = attribute.getName();
+			Member member = attribute.getJavaMember();
+			if (member instanceof AnnotatedElement) {
+				Column column = ((AnnotatedElement) member).getAnnotation(Column.class);
+				if (column != null) {
+					if (column.unique()) {
+						return true;
+					}
+					if (!column.name().isEmpty()) {
+						name = column.name();
+					}
+				}
+			}
+			return indexedColumns.contains(name.toUpperCase(Locale.ROOT));
+		}
+
+		/**
+		 * Verify if the table of the attribute holds the foreign key of a to-one
+		 * association: a many-to-one, or the owning side of a one-to-one, with a
+		 * single join column referencing the primary key. Mappings that cannot
+		 * be told from annotations are assumed not to.
+		 */
+		private static boolean holdsForeignKey(Attribute<?, ?> attribute) {
+			PersistentAttributeType kind = attribute.getPersistentAttributeType();
+			if (kind != PersistentAttributeType.MANY_TO_ONE && kind != PersistentAttributeType.ONE_TO_ONE) {
+				return false;
+			}
+			Member member = attribute.getJavaMember();
+			if (!(member instanceof AnnotatedElement)) {
+				return false;
+			}
+			AnnotatedElement element = (AnnotatedElement) member;
+			JoinColumn column = element.getAnnotation(JoinColumn.class);
+			if (element.isAnnotationPresent(JoinTable.class) || element.isAnnotationPresent(JoinColumns.class)
+					|| (column != null && !column.referencedColumnName().isEmpty())) {
+				return false;
+			}
+			if (kind == PersistentAttributeType.ONE_TO_ONE) {
+				OneToOne oneToOne = element.getAnnotation(OneToOne.class);
+				return oneToOne != null && oneToOne.mappedBy().isEmpty();
+			}
+			return true;
+		}
+
+		/**
+		 * @return the index of the type the attribute leads to, <tt>null</tt> for a basic type.
+		 */
+		private SelectorIndex target(Metamodel metamodel) {
+			if (!managed) {
+				return null;
+			}
+			SelectorIndex index = target;
+			if (index == null) {
+				index = SelectorIndex.of(metamodel.managedType(javaType));
+				target = index;
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Weak, identity based key of a managed type, so that the index of a
+	 * closed persistence unit does not keep its metamodel.
+	 */
+	private static final class TypeKey extends WeakReference<ManagedType<?>> {
+
+		private final int hash;
+
+		private TypeKey(ManagedType<?> type, ReferenceQueue<ManagedType<?>> queue) {
+			super(type, queue);
+			this.hash = System.identityHashCode(type);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof TypeKey)) {
+				return false;
+			}
+			ManagedType<?> type = get();
+			return type != null && type == ((TypeKey) obj).get();
+		}
+	}
+
+	/**
+	 * Translated path and the index reached by it.
+	 */
+	private static final class Translation {
+
+		private final StringBuilder path = new StringBuilder();
+		private SelectorIndex index;
+
+		private Translation(SelectorIndex index) {
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Step of a resolution: a join, or a get when the attribute is basic or
+	 * embedded or when the path it starts from cannot be joined. A plural step
+	 * goes through a collection, multiplying the rows of the query.
+	 */
+	static final class Step {
+
+		final String attribute;
+		final String path;
+		final boolean join;
+		final boolean plural;
+
+		private Step(String attribute, String path, boolean join, boolean plural) {
+			this.attribute = attribute;
+			this.path = path;
+			this.join = join;
+			this.plural = plural;
+		}
+	}
+
+	/**
+	 * Steps to replay from the root for a property path, and the Java type
+	 * reached. A path ending with the identifier of a to-one association whose
+	 * foreign key is held by the table of the previous step is a foreign key
+	 * path: it can be compared without joining the association. The column
+	 * reached is indexed when the mapping declares it so.
+	 */
+	static final class Resolution {
+
+		final Step[] steps;
+		final Class<?> javaType;
+		final boolean foreignKey;
+		final boolean indexed;
+
+		private Resolution(Step[] steps, Class<?> javaType, boolean foreignKey, boolean indexed) {
+			this.steps = steps;
+			this.javaType = javaType;
+			this.foreignKey = foreignKey;
+			this.indexed = indexed;
+		}
+	}
+}
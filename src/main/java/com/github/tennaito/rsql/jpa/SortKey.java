@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SortKey
+ *
+ * Selector of a sort order and its direction. The selector is resolved like
+ * the selectors of the comparisons, through the
+ * {@link com.github.tennaito.rsql.misc.Mapper}, and must reach a comparable
+ * property through to-one associations only.
+ * <p>
+ * A sort specification, like the <tt>sort=department.name,-startDate</tt>
+ * parameter of a request, is a comma separated list of selectors, each
+ * prefixed by <tt>-</tt> for a descending key or optionally by <tt>+</tt>
+ * for an ascending one.
+ *
+ * @author AntonioRabelo
+ */
+public final class SortKey {
+
+	private final String selector;
+	private final boolean ascending;
+
+	private SortKey(String selector, boolean ascending) {
+		if (selector == null || selector.isEmpty()) {
+			throw new IllegalArgumentException("Sort selector was undefined.");
+		}
+		this.selector = selector;
+		this.ascending = ascending;
+	}
+
+	/**
+	 * @param selector  Dotted selector.
+	 * @return          the ascending key.
+	 */
+	public static SortKey asc(String selector) {
+		return new SortKey(selector, true);
+	}
+
+	/**
+	 * @param selector  Dotted selector.
+	 * @return          the descending key.
+	 */
+	public static SortKey desc(String selector) {
+		return new SortKey(selector, false);
+	}
+
+	/**
+	 * Parse a sort specification.
+	 *
+	 * @param specification  Comma separated keys, like <tt>department.name,-startDate</tt>;
+	 *                       <tt>null</tt> or blank for no sort.
+	 * @return               the keys, in order.
+	 * @throws IllegalArgumentException if a key is empty.
+	 */
+	public static List<SortKey> parse(String specification) {
+		if (specification == null || specification.trim().isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<SortKey> keys = new ArrayList<>();
+		for (String key : specification.split(",", -1)) {
+			key = key.trim();
+			boolean descending = key.startsWith("-");
+			String selector = descending || key.startsWith("+") ? key.substring(1).trim() : key;
+			if (selector.isEmpty()) {
+				throw new IllegalArgumentException("Invalid sort: " + specification);
+			}
+			keys.add(new SortKey(selector, !descending));
+		}
+		return Collections.unmodifiableList(keys);
+	}
+
+	public String getSelector() {
+		return selector;
+	}
+
+	public boolean isAscending() {
+		return ascending;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof SortKey)) {
+			return false;
+		}
+		SortKey other = (SortKey) obj;
+		return ascending == other.ascending && selector.equals(other.selector);
+	}
+
+	@Override
+	public int hashCode() {
+		return ascending ? selector.hashCode() : ~selector.hashCode();
+	}
+
+	/**
+	 * @return the selector, prefixed by <tt>-</tt> when descending.
+	 */
+	@Override
+	public String toString() {
+		return ascending ? selector : "-" + selector;
+	}
+}
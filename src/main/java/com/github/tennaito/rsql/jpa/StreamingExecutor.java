@@ -0,0 +1,226 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaQuery;
+
+/**
+ * StreamingExecutor
+ *
+ * Executor of queries returning their results as a stream read from an open
+ * cursor, so that exports and batch jobs run in constant memory whatever the
+ * number of rows:
+ * <pre>
+ * StreamingExecutor executor = new StreamingExecutor();
+ * executor.setFetchSize(500);
+ * try (Stream&lt;Course&gt; courses = executor.stream(compiler.createQuery(node, manager), manager)) {
+ *     courses.forEach(writer::write);
+ * }
+ * </pre>
+ * <ul>
+ * <li>The fetch size is given to the JDBC driver through the hints of the
+ * persistence providers, so that it does not load the whole result set.</li>
+ * <li>Every <tt>clearInterval</tt> rows, the persistence context is cleared
+ * before reading the next row: the entities read so far, and any other
+ * entity managed by the entity manager, are detached.</li>
+ * <li>Providers honouring the <tt>eclipselink.cursor.scrollable</tt> hint
+ * are read through their scrollable cursor, the others through
+ * {@link TypedQuery#getResultStream()}, which scrolls the results with
+ * Hibernate.</li>
+ * </ul>
+ * The cursor is closed when the stream is closed, or as soon as the last row
+ * is read. The stream must be consumed within the transaction, and the
+ * entity manager not used for anything else meanwhile.
+ *
+ * @author AntonioRabelo
+ */
+public class StreamingExecutor {
+
+	private static final Logger LOG = Logger.getLogger(StreamingExecutor.class.getName());
+
+	/**
+	 * Default number of rows fetched by the driver per round trip.
+	 */
+	public static final int DEFAULT_FETCH_SIZE = 1000;
+
+	static final String HIBERNATE_FETCH_SIZE = "org.hibernate.fetchSize";
+	static final String ECLIPSELINK_FETCH_SIZE = "eclipselink.jdbc.fetch-size";
+	static final String ECLIPSELINK_SCROLLABLE_CURSOR = "eclipselink.cursor.scrollable";
+
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+	private int clearInterval = DEFAULT_FETCH_SIZE;
+
+	/**
+	 * @return the number of rows fetched by the driver per round trip.
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	public void setFetchSize(int fetchSize) {
+		if (fetchSize < 1) {
+			throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+		}
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * @return the number of rows read between two clears of the persistence context, 0 to never clear it.
+	 */
+	public int getClearInterval() {
+		return clearInterval;
+	}
+
+	public void setClearInterval(int clearInterval) {
+		if (clearInterval < 0) {
+			throw new IllegalArgumentException("Clear interval must not be negative: " + clearInterval);
+		}
+		this.clearInterval = clearInterval;
+	}
+
+	/**
+	 * Stream the results of a criteria query.
+	 *
+	 * @param criteria      Criteria query, like the one of a {@link JpaCriteriaQueryVisitor}.
+	 * @param entityManager JPA EntityManager.
+	 * @return              the stream of the results, to be closed.
+	 */
+	public <T> Stream<T> stream(CriteriaQuery<T> criteria, EntityManager entityManager) {
+		return stream(entityManager.createQuery(criteria), entityManager);
+	}
+
+	/**
+	 * Stream the results of a typed query, with its parameters already set.
+	 *
+	 * @param query         Typed query, like the one of a {@link JpaQueryCompiler}.
+	 * @param entityManager JPA EntityManager the query was created by.
+	 * @return              the stream of the results, to be closed.
+	 * @throws PersistenceException if the query fails.
+	 */
+	public <T> Stream<T> stream(TypedQuery<T> query, EntityManager entityManager) {
+		query.setHint(HIBERNATE_FETCH_SIZE, fetchSize);
+		query.setHint(ECLIPSELINK_FETCH_SIZE, fetchSize);
+		query.setHint(ECLIPSELINK_SCROLLABLE_CURSOR, Boolean.TRUE);
+		Rows<T> rows;
+		if (Boolean.TRUE.equals(query.getHints().get(ECLIPSELINK_SCROLLABLE_CURSOR))) {
+			// the provider returns its cursor as the single result
+			rows = new Rows<>(cursor(query.getSingleResult()), entityManager);
+		} else {
+			Stream<T> results = query.getResultStream();
+			rows = new Rows<>(results.iterator(), entityManager);
+			rows.onClose = results::close;
+		}
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED), false).onClose(rows::close);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Iterator<T> cursor(Object result) {
+		if (!(result instanceof Iterator)) {
+			throw new PersistenceException("Expected a cursor, got: " + (result == null ? null : result.getClass().getName()));
+		}
+		return (Iterator<T>) result;
+	}
+
+	/**
+	 * Rows of an open cursor, clearing the persistence context every
+	 * <tt>clearInterval</tt> rows and closing the cursor after the last one.
+	 */
+	private final class Rows<T> implements Iterator<T> {
+
+		private final Iterator<T> cursor;
+		private final EntityManager entityManager;
+		private Runnable onClose;
+		private boolean closed;
+		private long count;
+		private long cleared;
+
+		private Rows(Iterator<T> cursor, EntityManager entityManager) {
+			this.cursor = cursor;
+			this.entityManager = entityManager;
+			this.onClose = () -> closeCursor(cursor);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (closed) {
+				return false;
+			}
+			if (clearInterval > 0 && count > cleared && count % clearInterval == 0) {
+				// before the cursor may read the next row into the context
+				entityManager.clear();
+				cleared = count;
+			}
+			if (cursor.hasNext()) {
+				return true;
+			}
+			close();
+			return false;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			count++;
+			return cursor.next();
+		}
+
+		private void close() {
+			if (!closed) {
+				closed = true;
+				onClose.run();
+				LOG.log(Level.FINE, "Closed the cursor after {0} rows.", count);
+			}
+		}
+	}
+
+	/**
+	 * Close a provider cursor, which is not {@link AutoCloseable} but has a
+	 * public <tt>close</tt> method.
+	 */
+	private static void closeCursor(Object cursor) {
+		try {
+			if (cursor instanceof AutoCloseable) {
+				((AutoCloseable) cursor).close();
+			} else {
+				cursor.getClass().getMethod("close").invoke(cursor);
+			}
+		} catch (Exception e) {
+			throw new PersistenceException("Cannot close the cursor.", e);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.metrics;
+
+/**
+ * Listener of the phases of the translation of RSQL queries.
+ * <p>
+ * A phase is measured by calling {@link #begin(QueryPhase)} before it and
+ * {@link #end(QueryPhase, long)} with the returned value once it completed;
+ * phases failing with an exception are not reported. The {@link #NONE}
+ * listener skips even reading the clock.
+ * <p>
+ * Implementations are shared between threads and must be thread safe.
+ *
+ * @author AntonioRabelo
+ */
+public interface QueryListener {
+
+	/**
+	 * Listener ignoring every phase.
+	 */
+	QueryListener NONE = new QueryListener() {
+
+		@Override
+		public long begin(QueryPhase phase) {
+			return 0L;
+		}
+
+		@Override
+		public void end(QueryPhase phase, long begin) {
+			// unobserved
+		}
+	};
+
+	/**
+	 * Called when a phase begins.
+	 *
+	 * @param phase phase
+	 * @return value to pass to {@link #end(QueryPhase, long)}, the time in nanoseconds by default.
+	 */
+	default long begin(QueryPhase phase) {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Called when a phase completed.
+	 *
+	 * @param phase phase
+	 * @param begin value returned by {@link #begin(QueryPhase)}.
+	 */
+	void end(QueryPhase phase, long begin);
+}
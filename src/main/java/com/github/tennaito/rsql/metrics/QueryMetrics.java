@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * QueryMetrics
+ *
+ * {@link QueryListener} counting the phases and recording their latencies.
+ * Counters are striped {@link LongAdder}s, so concurrent queries do not
+ * contend; latencies go in a histogram of power of two buckets of
+ * nanoseconds.
+ *
+ * @author AntonioRabelo
+ */
+public class QueryMetrics implements QueryListener {
+
+	/**
+	 * Number of buckets of the histograms, bucket <tt>i</tt> counts the
+	 * latencies in [2<sup>i</sup>, 2<sup>i+1</sup>[ nanoseconds, bucket 0 also the null ones.
+	 */
+	public static final int BUCKETS = 64;
+
+	private final LongAdder[] counts = adders(QueryPhase.values().length);
+	private final LongAdder[] totals = adders(QueryPhase.values().length);
+	private final LongAdder[][] histograms = new LongAdder[QueryPhase.values().length][];
+
+	public QueryMetrics() {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = adders(BUCKETS);
+		}
+	}
+
+	@Override
+	public void end(QueryPhase phase, long begin) {
+		record(phase, System.nanoTime() - begin);
+	}
+
+	/**
+	 * Record one occurrence of a phase.
+	 *
+	 * @param phase phase
+	 * @param nanos duration in nanoseconds
+	 */
+	public void record(QueryPhase phase, long nanos) {
+		int ordinal = phase.ordinal();
+		counts[ordinal].increment();
+		totals[ordinal].add(nanos);
+		histograms[ordinal][bucket(nanos)].increment();
+	}
+
+	/**
+	 * @param phase phase
+	 * @return the number of occurrences of the phase.
+	 */
+	public long getCount(QueryPhase phase) {
+		return counts[phase.ordinal()].sum();
+	}
+
+	/**
+	 * @param phase phase
+	 * @return the total duration of the phase in nanoseconds.
+	 */
+	public long getTotalNanos(QueryPhase phase) {
+		return totals[phase.ordinal()].sum();
+	}
+
+	/**
+	 * @param phase phase
+	 * @return a snapshot of the latency histogram of the phase, see {@link #BUCKETS}.
+	 */
+	public long[] getHistogram(QueryPhase phase) {
+		LongAdder[] histogram = histograms[phase.ordinal()];
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = histogram[i].sum();
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Estimate a latency percentile of a phase.
+	 *
+	 * @param phase      phase
+	 * @param percentile percentile, between 0 and 100.
+	 * @return the upper bound in nanoseconds of the bucket holding the percentile, 0 if the phase never occurred.
+	 */
+	public long getPercentileNanos(QueryPhase phase, double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+		}
+		long[] histogram = getHistogram(phase);
+		long total = 0;
+		for (long count : histogram) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += histogram[i];
+			if (seen >= rank && histogram[i] > 0) {
+				return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Reset every counter.
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i].reset();
+			totals[i].reset();
+			for (LongAdder bucket : histograms[i]) {
+				bucket.reset();
+			}
+		}
+	}
+
+	private static int bucket(long nanos) {
+		return nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+	}
+
+	private static LongAdder[] adders(int size) {
+		LongAdder[] adders = new LongAdder[size];
+		for (int i = 0; i < size; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.metrics;
+
+/**
+ * Phases of the translation of a RSQL query reported to a {@link QueryListener}.
+ *
+ * @author AntonioRabelo
+ */
+public enum QueryPhase {
+
+	/**
+	 * Parsing of the RSQL string into nodes, reported by the
+	 * {@link com.github.tennaito.rsql.parser.ParseCache} for the queries it
+	 * did not cache yet.
+	 */
+	PARSE,
+
+	/**
+	 * Resolution of a selector into a property path, joins included.
+	 */
+	PATH_RESOLUTION,
+
+	/**
+	 * Conversion of the arguments of a comparison into the property type.
+	 */
+	ARGUMENT_CONVERSION,
+
+	/**
+	 * Creation of the predicate of a comparison from its path and arguments.
+	 */
+	PREDICATE_BUILD,
+
+	/**
+	 * Creation of a join, part of a path resolution.
+	 */
+	JOIN_CREATION
+}
@@ -0,0 +1,46 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.misc;
+
+/**
+ * Converter of a string argument into one target type, registered on the
+ * {@link DefaultArgumentParser}.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Target type
+ */
+@FunctionalInterface
+public interface ArgumentConverter<T> {
+
+	/**
+	 * Convert a non null argument.
+	 *
+	 * @param argument string argument
+	 * @return The instance of the given argument in the target type.
+	 * @throws Exception If the argument is not parseable to the target type,
+	 *         it is reported as an {@link ArgumentFormatException}.
+	 */
+	T convert(String argument) throws Exception;
+}
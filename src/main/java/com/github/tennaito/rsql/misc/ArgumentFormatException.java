@@ -56,6 +56,19 @@ public class ArgumentFormatException extends RuntimeException {
     }
 
 
+    /**
+     * Construct an <tt>ArgumentFormatException</tt> with specified argument,
+     * property type and the failure of the conversion.
+     *
+     * @param argument
+     * @param propertyType
+     * @param cause
+     */
+    public ArgumentFormatException(String argument, Class<?> propertyType, Throwable cause) {
+        this(argument, propertyType);
+        initCause(cause);
+    }
+
     public String getArgument() {
         return argument;
     }
@@ -0,0 +1,282 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.misc;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Bounded Cache
+ *
+ * Concurrent map holding at most a fixed number of entries. Lookups are lock
+ * free and only stamp the entry with its access time; when an insertion
+ * exceeds the bound, a single scan evicts the least recently used entries
+ * down to fifteen sixteenths of the maximum size.
+ * <p>
+ * A cache may also bound the total weight of its entries, each entry being
+ * weighed once when inserted; the least recently used entries are then
+ * evicted down to fifteen sixteenths of both bounds.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class BoundedCache<K, V> {
+
+	private final ConcurrentHashMap<K, Entry<V>> entries;
+
+	private final int maximumSize;
+
+	private final long maximumWeight;
+
+	private final ToLongBiFunction<? super K, ? super V> weigher;
+
+	private final AtomicLong weight = new AtomicLong();
+
+	private final LongAdder evictions = new LongAdder();
+
+	private final Object evictionLock = new Object();
+
+	/**
+	 * Construct a cache holding at most <tt>maximumSize</tt> entries.
+	 *
+	 * @param maximumSize maximum number of entries, must be positive.
+	 */
+	public BoundedCache(int maximumSize) {
+		this(maximumSize, Long.MAX_VALUE, (key, value) -> 1);
+	}
+
+	/**
+	 * Construct a cache holding at most <tt>maximumSize</tt> entries, weighing
+	 * at most <tt>maximumWeight</tt> together.
+	 *
+	 * @param maximumSize   maximum number of entries, must be positive.
+	 * @param maximumWeight maximum total weight, must be positive.
+	 * @param weigher       weight of an entry, not negative.
+	 */
+	public BoundedCache(int maximumSize, long maximumWeight, ToLongBiFunction<? super K, ? super V> weigher) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+		}
+		if (maximumWeight <= 0) {
+			throw new IllegalArgumentException("Maximum weight must be positive: " + maximumWeight);
+		}
+		this.maximumSize = maximumSize;
+		this.maximumWeight = maximumWeight;
+		this.weigher = weigher;
+		this.entries = new ConcurrentHashMap<>(Math.min(maximumSize, 1024));
+	}
+
+	/**
+	 * Get the value cached for the key.
+	 *
+	 * @param key cache key.
+	 * @return    the cached value, or <tt>null</tt> if absent.
+	 */
+	public V get(K key) {
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		entry.lastAccess = System.nanoTime();
+		return entry.value;
+	}
+
+	/**
+	 * Cache a value unless another thread already did for the same key.
+	 *
+	 * @param key   cache key.
+	 * @param value value to cache.
+	 * @return      the value held by the cache after the call.
+	 */
+	public V putIfAbsent(K key, V value) {
+		Entry<V> entry = new Entry<>(value, weigher.applyAsLong(key, value));
+		Entry<V> previous = entries.putIfAbsent(key, entry);
+		if (previous != null) {
+			previous.lastAccess = entry.lastAccess;
+			return previous.value;
+		}
+		if (entries.size() > maximumSize | weight.addAndGet(entry.weight) > maximumWeight) {
+			evict();
+		}
+		return value;
+	}
+
+	/**
+	 * Remove the entry of the key.
+	 *
+	 * @param key cache key.
+	 */
+	public void remove(K key) {
+		Entry<V> entry = entries.remove(key);
+		if (entry != null) {
+			weight.addAndGet(-entry.weight);
+		}
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public void clear() {
+		for (K key : entries.keySet()) {
+			remove(key);
+		}
+	}
+
+	/**
+	 * @return the current number of entries.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the maximum number of entries.
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * @return the current total weight of the entries.
+	 */
+	public long getWeight() {
+		return weight.get();
+	}
+
+	/**
+	 * @return the maximum total weight of the entries.
+	 */
+	public long getMaximumWeight() {
+		return maximumWeight;
+	}
+
+	/**
+	 * @return the number of entries evicted so far.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	private void evict() {
+		synchronized (evictionLock) {
+			if (weight.get() > maximumWeight) {
+				evictWeight();
+				return;
+			}
+			int excess = entries.size() - (maximumSize - maximumSize / 16);
+			if (excess <= 0) {
+				return;
+			}
+			// keep the 'excess' oldest entries, the youngest of them on top.
+			PriorityQueue<Candidate<K, V>> oldest = new PriorityQueue<>(excess, Candidate.YOUNGEST_FIRST);
+			for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+				Candidate<K, V> candidate = new Candidate<>(entry);
+				if (oldest.size() < excess) {
+					oldest.add(candidate);
+				} else if (candidate.lastAccess < oldest.peek().lastAccess) {
+					oldest.poll();
+					oldest.add(candidate);
+				}
+			}
+			for (Candidate<K, V> victim : oldest) {
+				evict(victim);
+			}
+		}
+	}
+
+	/**
+	 * Evict the least recently used entries until both the size and the weight
+	 * are down to fifteen sixteenths of their bounds. How many entries that
+	 * takes is not known beforehand, so all of them are sorted.
+	 */
+	private void evictWeight() {
+		int targetSize = maximumSize - maximumSize / 16;
+		long targetWeight = maximumWeight - maximumWeight / 16;
+		List<Candidate<K, V>> candidates = new ArrayList<>(entries.size());
+		for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+			candidates.add(new Candidate<>(entry));
+		}
+		candidates.sort(Candidate.OLDEST_FIRST);
+		for (Candidate<K, V> victim : candidates) {
+			if (entries.size() <= targetSize && weight.get() <= targetWeight) {
+				return;
+			}
+			evict(victim);
+		}
+	}
+
+	private void evict(Candidate<K, V> victim) {
+		if (entries.remove(victim.key, victim.entry)) {
+			weight.addAndGet(-victim.entry.weight);
+			evictions.increment();
+		}
+	}
+
+	/**
+	 * An entry and its access time when the eviction began. Lookups keep
+	 * stamping the entries, so the eviction orders this snapshot: comparing
+	 * the live times would break the contract of the comparator.
+	 */
+	private static final class Candidate<K, V> {
+
+		private static final Comparator<Candidate<?, ?>> OLDEST_FIRST = Comparator.comparingLong(candidate -> candidate.lastAccess);
+
+		private static final Comparator<Candidate<?, ?>> YOUNGEST_FIRST = OLDEST_FIRST.reversed();
+
+		private final K key;
+
+		private final Entry<V> entry;
+
+		private final long lastAccess;
+
+		private Candidate(Map.Entry<K, Entry<V>> entry) {
+			this.key = entry.getKey();
+			this.entry = entry.getValue();
+			this.lastAccess = this.entry.lastAccess;
+		}
+	}
+
+	private static final class Entry<V> {
+
+		private final V value;
+
+		private final long weight;
+
+		private volatile long lastAccess = System.nanoTime();
+
+		private Entry(V value, long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+}
@@ -24,24 +24,42 @@
  */
 package com.github.tennaito.rsql.misc;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.math.BigInteger;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Default implementation of {@linkplain ArgumentParser}. Supported types
- * are String, Integer, Long, Float, Boolean, Enum and Date. If neither one
- * of them match, it tries to invoke valueOf(String s) method via reflection on
+ * are String, Integer, Long, Short, Float, Double, BigDecimal, BigInteger,
+ * Boolean, Enum, UUID, Date, the java.sql and the java.time date and time
+ * types, the latter in ISO 8601 format (see {@link IsoDateTimeParser}). If neither one of them
+ * match, it tries to invoke a public static valueOf(String s) or
+ * parse(CharSequence s) method, or a public constructor taking a String, on
  * the type's class.
+ * <p>
+ * The converter of a type is resolved once and cached; converters for other
+ * types can be registered with {@link #registerConverter(Class, ArgumentConverter)}.
  *
  * @author Jakub Jirutka <jakub@jirutka.cz>
  * @author AntonioRabelo
@@ -50,84 +68,200 @@ public class DefaultArgumentParser implements ArgumentParser {
 
 	private static final Logger LOG = Logger.getLogger(DefaultArgumentParser.class.getName());
 
-    private static final String DATE_PATTERN = "yyyy-MM-dd"; //ISO 8601
-    private static final String DATE_TIME_PATTERN = "yyyy-MM-dd'T'HH:mm:ss"; //ISO 8601
+    private static final MethodType CONVERTER_TYPE = MethodType.methodType(Object.class, String.class);
+
+    /**
+     * Converters registered by the user, they take precedence over the built in ones.
+     */
+    private final Map<Class<?>, ArgumentConverter<?>> registered = new ConcurrentHashMap<>();
+
+    /**
+     * Converter resolved for each type.
+     */
+    private final ClassValue<ArgumentConverter<?>> converters = new ClassValue<ArgumentConverter<?>>() {
+        @Override
+        protected ArgumentConverter<?> computeValue(Class<?> type) {
+            ArgumentConverter<?> converter = registered.get(type);
+            return (converter != null) ? converter : createConverter(type);
+        }
+    };
+
+    /**
+     * Register the converter of a type, replacing the built in or previously
+     * registered one.
+     *
+     * @param type       target type
+     * @param converter  converter of the arguments into the type
+     */
+    public <T> void registerConverter(Class<T> type, ArgumentConverter<? extends T> converter) {
+        registered.put(type, converter);
+        converters.remove(type);
+    }
 
     /* (non-Javadoc)
      * @see br.tennaito.rsql.misc.ArgumentParser#parse(java.lang.String, java.lang.Class)
      */
     public <T> T parse(String argument, Class<T> type)
             throws ArgumentFormatException, IllegalArgumentException {
+        return convert(argument, type, converters.get(type));
+    }
 
-    	LOG.log(Level.INFO, "Parsing argument ''{0}'' as type {1}, thread {2}", new Object[] {argument, type.getSimpleName(), Thread.currentThread().getName()});
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.misc.ArgumentParser#parse(java.util.List, java.lang.Class)
+	 */
+	public <T> List<T> parse(List<String> arguments, Class<T> type)
+			throws ArgumentFormatException, IllegalArgumentException {
+		ArgumentConverter<?> converter = converters.get(type);
+    	List<T> castedArguments = new ArrayList<>(arguments.size());
+    	for (String argument : arguments) {
+    		castedArguments.add(convert(argument, type, converter));
+    	}
+		return castedArguments;
+	}
 
+    private static <T> T convert(String argument, Class<T> type, ArgumentConverter<?> converter) {
         // Nullable object
-        if (argument == null || "null".equals(argument.trim().toLowerCase())) {
+        if (argument == null || "null".equalsIgnoreCase(argument.trim())) {
         	return null;
         }
-
-        // common types
+        if (converter instanceof Unsupported) {
+            throw new IllegalArgumentException("Cannot parse argument type " + type);
+        }
         try {
-            if (type.equals(String.class)) return (T) argument;
-            if (type.equals(Integer.class) || type.equals(int.class)) return (T) Integer.valueOf(argument);
-            if (type.equals(Boolean.class) || type.equals(boolean.class)) return (T) Boolean.valueOf(argument);
-            if (type.isEnum()) return (T) Enum.valueOf((Class<Enum>)type, argument);
-            if (type.equals(Float.class)   || type.equals(float.class)) return (T) Float.valueOf(argument);
-            if (type.equals(Double.class)  || type.equals(double.class)) return (T) Double.valueOf(argument);
-            if (type.equals(Long.class)    || type.equals(long.class)) return (T) Long.valueOf(argument);
-            if (type.equals(BigDecimal.class) ) return (T) new BigDecimal(argument);
-        } catch (IllegalArgumentException ex) {
-            throw new ArgumentFormatException(argument, type);
+            return (T) converter.convert(argument);
+        } catch (ArgumentFormatException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new ArgumentFormatException(argument, type, ex);
         }
+    }
+
+    /**
+     * Create the converter of a type without registered converter.
+     *
+     * @param type target type
+     * @return the converter, an {@link Unsupported} one if there is no way to convert.
+     */
+    private static ArgumentConverter<?> createConverter(Class<?> type) {
+        // common types
+        if (type.equals(String.class)) return argument -> argument;
+        if (type.equals(Integer.class) || type.equals(int.class)) return Integer::valueOf;
+        if (type.equals(Boolean.class) || type.equals(boolean.class)) return Boolean::valueOf;
+        if (type.isEnum()) return enumConverter((Class<Enum>) type);
+        if (type.equals(Float.class)   || type.equals(float.class)) return Float::valueOf;
+        if (type.equals(Double.class)  || type.equals(double.class)) return Double::valueOf;
+        if (type.equals(Long.class)    || type.equals(long.class)) return Long::valueOf;
+        if (type.equals(Short.class)   || type.equals(short.class)) return Short::valueOf;
+        if (type.equals(BigDecimal.class)) return BigDecimal::new;
+        if (type.equals(BigInteger.class)) return BigInteger::new;
+        if (type.equals(UUID.class)) return UUID::fromString;
 
         // date
-        if (type.equals(Date.class)) {
-            return (T) parseDate(argument, type);
-        }
+        if (type.equals(Date.class)) return isoConverter(type, argument -> IsoDateTimeParser.date(argument, ZoneId.systemDefault()));
+        if (type.equals(java.sql.Date.class)) return isoConverter(type, IsoDateTimeParser::sqlDate);
+        if (type.equals(java.sql.Time.class)) return isoConverter(type, IsoDateTimeParser::sqlTime);
+        if (type.equals(java.sql.Timestamp.class)) return isoConverter(type, argument -> IsoDateTimeParser.sqlTimestamp(argument, ZoneId.systemDefault()));
 
         // 1.8 date
-        if (type.equals(LocalDate.class)) {
-                return (T) LocalDate.parse(argument);
-        }
-        if (type.equals(LocalDateTime.class)) {
-                return (T) LocalDateTime.parse(argument);
-        }
+        if (type.equals(LocalDate.class)) return isoConverter(type, IsoDateTimeParser::localDate);
+        if (type.equals(LocalDateTime.class)) return isoConverter(type, IsoDateTimeParser::localDateTime);
+        if (type.equals(LocalTime.class)) return isoConverter(type, IsoDateTimeParser::localTime);
+        if (type.equals(Instant.class)) return isoConverter(type, IsoDateTimeParser::instant);
+        if (type.equals(OffsetDateTime.class)) return isoConverter(type, IsoDateTimeParser::offsetDateTime);
+        if (type.equals(ZonedDateTime.class)) return isoConverter(type, IsoDateTimeParser::zonedDateTime);
 
-        // try to parse via valueOf(String s) method
+        return factoryConverter(type);
+    }
+
+    private static <E extends Enum<E>> ArgumentConverter<E> enumConverter(Class<E> type) {
+        return argument -> Enum.valueOf(type, argument);
+    }
+
+    /**
+     * Create a converter invoking a public factory method or constructor of the type.
+     */
+    private static ArgumentConverter<?> factoryConverter(Class<?> type) {
+        LOG.log(Level.FINE, "Looking for valueOf(String s), parse(CharSequence s) or a String constructor on {0}", type);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
         try {
-        	LOG.log(Level.INFO, "Trying to get and invoke valueOf(String s) method on {0}", type);
-            Method method = type.getMethod("valueOf", String.class);
-            return (T) method.invoke(type, argument);
-        } catch (InvocationTargetException ex) {
-        	throw new ArgumentFormatException(argument, type);
+            MethodHandle handle = null;
+            Method method = factoryMethod(type, "valueOf", String.class);
+            if (method == null) method = factoryMethod(type, "parse", CharSequence.class);
+            if (method == null) method = factoryMethod(type, "parse", String.class);
+            if (method != null) {
+                handle = lookup.unreflect(method);
+            } else if (!type.isPrimitive() && !type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+                Constructor<?> constructor = type.getConstructor(String.class);
+                handle = lookup.unreflectConstructor(constructor);
+            }
+            if (handle != null) {
+                return new MethodHandleConverter(handle.asType(CONVERTER_TYPE));
+            }
         } catch (ReflectiveOperationException ex) {
-        	LOG.log(Level.WARNING, "{0} does not have method valueOf(String s) or method is inaccessible", type);
-        	throw new IllegalArgumentException("Cannot parse argument type " + type);
+            // no suitable constructor, or the factory is inaccessible
         }
+        LOG.log(Level.WARNING, "{0} does not have method valueOf(String s) or method is inaccessible", type);
+        return new Unsupported();
     }
 
-    private <T> Date parseDate(String argument, Class<T> type) {
+    private static Method factoryMethod(Class<?> type, String name, Class<?> parameterType) {
         try {
-            return new SimpleDateFormat(DATE_TIME_PATTERN).parse(argument);
-        } catch (ParseException ex) {
-            LOG.log(Level.INFO, "Not a date time format, lets try with date format.");
+            Method method = type.getMethod(name, parameterType);
+            if (Modifier.isStatic(method.getModifiers()) && type.isAssignableFrom(method.getReturnType())) {
+                return method;
+            }
+        } catch (NoSuchMethodException ex) {
+            // try next factory
         }
-        try {
-            return new SimpleDateFormat(DATE_PATTERN).parse(argument);
-        } catch (ParseException ex1) {
-            throw new ArgumentFormatException(argument, type);
+        return null;
+    }
+
+    /**
+     * Create a converter for a date or time type from an ISO 8601 scanning function.
+     *
+     * @param type     target type
+     * @param scanner  function returning <tt>null</tt> for an argument not in ISO 8601 form
+     * @return the converter
+     */
+    private static <T> ArgumentConverter<T> isoConverter(Class<?> type, Function<String, T> scanner) {
+        return argument -> {
+            T value = scanner.apply(argument);
+            if (value == null) {
+                throw new ArgumentFormatException(argument, type);
+            }
+            return value;
+        };
+    }
+
+    /**
+     * Converter invoking a factory method or constructor.
+     */
+    private static final class MethodHandleConverter implements ArgumentConverter<Object> {
+
+        private final MethodHandle handle;
+
+        private MethodHandleConverter(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        public Object convert(String argument) throws Exception {
+            try {
+                return (Object) handle.invokeExact(argument);
+            } catch (Exception | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new IllegalStateException(ex);
+            }
         }
     }
 
-	/* (non-Javadoc)
-	 * @see br.tennaito.rsql.misc.ArgumentParser#parse(java.util.List, java.lang.Class)
-	 */
-	public <T> List<T> parse(List<String> arguments, Class<T> type)
-			throws ArgumentFormatException, IllegalArgumentException {
-    	List<T> castedArguments = new ArrayList<>(arguments.size());
-    	for (String argument : arguments) {
-    		castedArguments.add(this.parse(argument, type));
-    	}
-		return castedArguments;
-	}
+    /**
+     * Marker of a type that cannot be converted, only null arguments are accepted.
+     */
+    private static final class Unsupported implements ArgumentConverter<Object> {
+
+        public Object convert(String argument) {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
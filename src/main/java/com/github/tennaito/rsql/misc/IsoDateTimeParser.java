@@ -0,0 +1,271 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.misc;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Date;
+
+/**
+ * IsoDateTimeParser
+ *
+ * Scanner of the ISO 8601 extended forms used in RSQL arguments:
+ * <ul>
+ * <li>date: <tt>2011-08-26</tt></li>
+ * <li>date-time: <tt>2011-08-26T14:15</tt>, <tt>2011-08-26T14:15:30</tt>, <tt>2011-08-26T14:15:30.123</tt></li>
+ * <li>date-time with offset: <tt>2011-08-26T14:15:30Z</tt>, <tt>2011-08-26T14:15:30+02:00</tt>,
+ *     followed by <tt>[Europe/Paris]</tt> for zoned date-times</li>
+ * <li>time: <tt>14:15</tt>, <tt>14:15:30</tt>, <tt>14:15:30.123</tt></li>
+ * </ul>
+ * The form is detected from the positions of the separators, so a malformed
+ * argument costs no exception: every method returns <tt>null</tt> instead.
+ * Out of range fields still fail with a {@link java.time.DateTimeException}.
+ *
+ * @author AntonioRabelo
+ */
+final class IsoDateTimeParser {
+
+	private static final int DATE_LENGTH = 10;
+	private static final int TIME_START = DATE_LENGTH + 1;
+
+	private IsoDateTimeParser() {
+	}
+
+	static LocalDate localDate(String text) {
+		return text.length() == DATE_LENGTH ? date(text) : null;
+	}
+
+	static LocalDateTime localDateTime(String text) {
+		int end = dateTimeEnd(text);
+		return end == text.length() ? dateTime(text, end) : null;
+	}
+
+	static LocalTime localTime(String text) {
+		return timeEnd(text, 0) == text.length() ? time(text, 0, text.length()) : null;
+	}
+
+	static OffsetDateTime offsetDateTime(String text) {
+		int end = dateTimeEnd(text);
+		if (end < 0 || offsetEnd(text, end) != text.length()) {
+			return null;
+		}
+		return OffsetDateTime.of(dateTime(text, end), offset(text, end, text.length()));
+	}
+
+	static ZonedDateTime zonedDateTime(String text) {
+		int end = dateTimeEnd(text);
+		int zone = end < 0 ? -1 : offsetEnd(text, end);
+		if (zone < 0) {
+			return null;
+		}
+		ZoneOffset offset = offset(text, end, zone);
+		if (zone == text.length()) {
+			return ZonedDateTime.of(dateTime(text, end), offset);
+		}
+		if (text.charAt(zone) != '[' || text.charAt(text.length() - 1) != ']') {
+			return null;
+		}
+		ZoneId region = ZoneId.of(text.substring(zone + 1, text.length() - 1));
+		return ZonedDateTime.ofLocal(dateTime(text, end), region, offset);
+	}
+
+	static Instant instant(String text) {
+		OffsetDateTime dateTime = offsetDateTime(text);
+		return dateTime == null ? null : dateTime.toInstant();
+	}
+
+	/**
+	 * Parse a date, a date-time or a date-time with offset; dates and
+	 * date-times without offset are in the default time zone.
+	 */
+	static Date date(String text, ZoneId zone) {
+		if (text.length() == DATE_LENGTH) {
+			LocalDate date = date(text);
+			return date == null ? null : Date.from(date.atStartOfDay(zone).toInstant());
+		}
+		int end = dateTimeEnd(text);
+		if (end < 0) {
+			return null;
+		}
+		if (end == text.length()) {
+			return Date.from(dateTime(text, end).atZone(zone).toInstant());
+		}
+		if (offsetEnd(text, end) != text.length()) {
+			return null;
+		}
+		return Date.from(dateTime(text, end).toInstant(offset(text, end, text.length())));
+	}
+
+	static java.sql.Date sqlDate(String text) {
+		LocalDate date = localDate(text);
+		return date == null ? null : java.sql.Date.valueOf(date);
+	}
+
+	static java.sql.Time sqlTime(String text) {
+		LocalTime time = localTime(text);
+		return time == null ? null : java.sql.Time.valueOf(time);
+	}
+
+	static java.sql.Timestamp sqlTimestamp(String text, ZoneId zone) {
+		if (dateTimeEnd(text) == text.length()) {
+			return java.sql.Timestamp.valueOf(dateTime(text, text.length()));
+		}
+		Date date = date(text, zone);
+		return date == null ? null : new java.sql.Timestamp(date.getTime());
+	}
+
+	///////////////  SCANNING  ///////////////
+
+	private static LocalDate date(String text) {
+		if (text.length() < DATE_LENGTH || text.charAt(4) != '-' || text.charAt(7) != '-') {
+			return null;
+		}
+		int year = digits(text, 0, 4);
+		int month = digits(text, 5, 7);
+		int day = digits(text, 8, 10);
+		if (year < 0 || month < 0 || day < 0) {
+			return null;
+		}
+		return LocalDate.of(year, month, day);
+	}
+
+	/**
+	 * @return the end of the date-time starting the text, -1 if it does not start with one.
+	 */
+	private static int dateTimeEnd(String text) {
+		if (text.length() <= TIME_START || text.charAt(DATE_LENGTH) != 'T' || date(text) == null) {
+			return -1;
+		}
+		return timeEnd(text, TIME_START);
+	}
+
+	private static LocalDateTime dateTime(String text, int end) {
+		return LocalDateTime.of(date(text), time(text, TIME_START, end));
+	}
+
+	/**
+	 * @return the end of the time starting at <tt>start</tt>, -1 if there is no time.
+	 */
+	private static int timeEnd(String text, int start) {
+		if (!digitsAt(text, start, 2) || !charAt(text, start + 2, ':') || !digitsAt(text, start + 3, 2)) {
+			return -1;
+		}
+		int end = start + 5;
+		if (!charAt(text, end, ':')) {
+			return end;
+		}
+		if (!digitsAt(text, end + 1, 2)) {
+			return -1;
+		}
+		end += 3;
+		if (!charAt(text, end, '.')) {
+			return end;
+		}
+		int fraction = end + 1;
+		end = fraction;
+		while (end < text.length() && end - fraction < 9 && isDigit(text.charAt(end))) {
+			end++;
+		}
+		return end == fraction ? -1 : end;
+	}
+
+	private static LocalTime time(String text, int start, int end) {
+		int hour = digits(text, start, start + 2);
+		int minute = digits(text, start + 3, start + 5);
+		int second = 0;
+		int nano = 0;
+		if (end > start + 5) {
+			second = digits(text, start + 6, start + 8);
+		}
+		if (end > start + 8) {
+			nano = digits(text, start + 9, end);
+			for (int i = end - start - 9; i < 9; i++) {
+				nano *= 10;
+			}
+		}
+		return LocalTime.of(hour, minute, second, nano);
+	}
+
+	/**
+	 * @return the end of the offset starting at <tt>start</tt>, -1 if there is no offset.
+	 */
+	private static int offsetEnd(String text, int start) {
+		if (charAt(text, start, 'Z')) {
+			return start + 1;
+		}
+		if (!charAt(text, start, '+') && !charAt(text, start, '-')) {
+			return -1;
+		}
+		if (!digitsAt(text, start + 1, 2)) {
+			return -1;
+		}
+		if (charAt(text, start + 3, ':')) {
+			return digitsAt(text, start + 4, 2) ? start + 6 : -1;
+		}
+		return digitsAt(text, start + 3, 2) ? start + 5 : start + 3;
+	}
+
+	private static ZoneOffset offset(String text, int start, int end) {
+		if (text.charAt(start) == 'Z') {
+			return ZoneOffset.UTC;
+		}
+		int sign = text.charAt(start) == '-' ? -1 : 1;
+		int hours = digits(text, start + 1, start + 3);
+		int minutes = end - start > 3 ? digits(text, end - 2, end) : 0;
+		return ZoneOffset.ofHoursMinutes(sign * hours, sign * minutes);
+	}
+
+	private static boolean charAt(String text, int index, char c) {
+		return index < text.length() && text.charAt(index) == c;
+	}
+
+	private static boolean digitsAt(String text, int start, int count) {
+		return start + count <= text.length() && digits(text, start, start + count) >= 0;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * @return the value of the digits between <tt>start</tt> and <tt>end</tt>, -1 if one is not a digit.
+	 */
+	private static int digits(String text, int start, int end) {
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (!isDigit(c)) {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+}
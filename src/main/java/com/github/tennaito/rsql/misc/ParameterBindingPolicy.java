@@ -0,0 +1,59 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.misc;
+
+/**
+ * Decides which comparison arguments stay inlined as literals when the
+ * arguments of a query are bound as parameters.
+ *
+ * Inlining a low-cardinality value (an enum, a flag) lets the database pick a
+ * plan or a partial index for that value, at the price of one more distinct
+ * query string per value.
+ *
+ * @author AntonioRabelo
+ */
+public interface ParameterBindingPolicy {
+
+	/**
+	 * Policy that binds every argument as a parameter.
+	 */
+	ParameterBindingPolicy BIND_ALL = (selector, entityClass, type) -> false;
+
+	/**
+	 * Policy that inlines the arguments of enum and boolean properties, as a
+	 * new {@link SimpleParameterBindingPolicy} does.
+	 */
+	ParameterBindingPolicy INLINE_ENUMS_AND_BOOLEANS = (selector, entityClass, type) ->
+			Enum.class.isAssignableFrom(type) || type == Boolean.class || type == boolean.class;
+
+	/**
+	 * Verify if the arguments of a selector must be inlined as literals.
+	 *
+	 * @param selector    Selector that identifies some element of an entry's content.
+	 * @param entityClass entity class
+	 * @param type        Java type of the compared property.
+	 * @return <tt>true</tt> to inline the arguments, <tt>false</tt> to bind them as parameters.
+	 */
+	boolean isInlined(String selector, Class<?> entityClass, Class<?> type);
+}
@@ -25,8 +25,6 @@ package com.github.tennaito.rsql.misc;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * Simple implementation of the {@link Mapper}.
@@ -35,8 +33,6 @@ import java.util.logging.Logger;
  */
 public class SimpleMapper implements Mapper {
 
-	private static final Logger LOG = Logger.getLogger(SimpleMapper.class.getName());
-
     private Map<Class<?>, Map<String, String>> mapping;
 
 
@@ -57,6 +53,19 @@ public class SimpleMapper implements Mapper {
         mapping = new HashMap<>(initialCapacity);
     }
 
+    /**
+     * Construct new <tt>SimpleMapper</tt> with a copy of the mapping of
+     * another one.
+     *
+     * @param mapper mapper to copy
+     */
+    public SimpleMapper(SimpleMapper mapper) {
+        this(mapper.mapping.size());
+        for (Map.Entry<Class<?>, Map<String, String>> entry : mapper.mapping.entrySet()) {
+            mapping.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        }
+    }
+
     public String translate(String selector, Class<?> entityClass) {
         if (mapping.isEmpty()) return selector;
 
@@ -64,7 +73,6 @@ public class SimpleMapper implements Mapper {
         String property = (map == null) ? null : map.get(selector);
 
         if (property != null) {
-        	LOG.log(Level.INFO, "Found mapping {0} -> {1}" , new Object[] {selector, property});
             return property;
         }
 
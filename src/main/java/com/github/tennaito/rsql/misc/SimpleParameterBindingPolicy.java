@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.misc;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Simple implementation of the {@link ParameterBindingPolicy}.
+ *
+ * Inlines the arguments of enum and boolean properties by default; other
+ * types can be added, and single selectors can be forced either way.
+ *
+ * @author AntonioRabelo
+ */
+public class SimpleParameterBindingPolicy implements ParameterBindingPolicy {
+
+	private final Set<Class<?>> inlinedTypes = new LinkedHashSet<>();
+
+	private final Map<Class<?>, Map<String, Boolean>> selectors = new HashMap<>();
+
+	/**
+	 * Construct a new <tt>SimpleParameterBindingPolicy</tt> inlining enums and booleans.
+	 */
+	public SimpleParameterBindingPolicy() {
+		inlinedTypes.add(Enum.class);
+		inlinedTypes.add(Boolean.class);
+		inlinedTypes.add(boolean.class);
+	}
+
+	/**
+	 * Construct a new <tt>SimpleParameterBindingPolicy</tt> with a copy of the
+	 * types and selectors of another one.
+	 *
+	 * @param policy policy to copy
+	 */
+	public SimpleParameterBindingPolicy(SimpleParameterBindingPolicy policy) {
+		inlinedTypes.addAll(policy.inlinedTypes);
+		for (Map.Entry<Class<?>, Map<String, Boolean>> entry : policy.selectors.entrySet()) {
+			selectors.put(entry.getKey(), new HashMap<>(entry.getValue()));
+		}
+	}
+
+	public boolean isInlined(String selector, Class<?> entityClass, Class<?> type) {
+		Map<String, Boolean> map = selectors.get(entityClass);
+		Boolean inlined = (map == null) ? null : map.get(selector);
+		if (inlined != null) {
+			return inlined;
+		}
+		for (Class<?> inlinedType : inlinedTypes) {
+			if (inlinedType.isAssignableFrom(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Inline the arguments of every property of the given type or of its subtypes.
+	 *
+	 * @param type Java type of the properties.
+	 */
+	public void addInlinedType(Class<?> type) {
+		inlinedTypes.add(type);
+	}
+
+	/**
+	 * @return The types whose arguments are inlined, can be modified.
+	 */
+	public Set<Class<?>> getInlinedTypes() {
+		return inlinedTypes;
+	}
+
+	/**
+	 * Force the arguments of one selector to be inlined or bound, whatever its type.
+	 *
+	 * @param entityClass entity class
+	 * @param selector    Selector that identifies some element of an entry's content.
+	 * @param inlined     <tt>true</tt> to inline the arguments, <tt>false</tt> to bind them.
+	 */
+	public void setInlined(Class<?> entityClass, String selector, boolean inlined) {
+		Map<String, Boolean> map = selectors.get(entityClass);
+		if (map == null) {
+			map = new HashMap<>();
+			selectors.put(entityClass, map);
+		}
+		map.put(selector, inlined);
+	}
+}
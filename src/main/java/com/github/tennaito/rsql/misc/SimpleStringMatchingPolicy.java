@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.misc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Simple implementation of the {@link StringMatchingPolicy}.
+ *
+ * Matches every property with a default matching, case insensitive unless
+ * changed; single selectors can be given their own matching.
+ *
+ * @author AntonioRabelo
+ */
+public class SimpleStringMatchingPolicy implements StringMatchingPolicy {
+
+	private StringMatching defaultMatching = StringMatching.CASE_INSENSITIVE;
+
+	private final Map<Class<?>, Map<String, StringMatching>> selectors = new HashMap<>();
+
+	/**
+	 * Construct a new <tt>SimpleStringMatchingPolicy</tt>, case insensitive.
+	 */
+	public SimpleStringMatchingPolicy() {
+	}
+
+	/**
+	 * Construct a new <tt>SimpleStringMatchingPolicy</tt> with a copy of the
+	 * matchings of another one.
+	 *
+	 * @param policy policy to copy
+	 */
+	public SimpleStringMatchingPolicy(SimpleStringMatchingPolicy policy) {
+		this.defaultMatching = policy.defaultMatching;
+		for (Map.Entry<Class<?>, Map<String, StringMatching>> entry : policy.selectors.entrySet()) {
+			selectors.put(entry.getKey(), new HashMap<>(entry.getValue()));
+		}
+	}
+
+	public StringMatching getMatching(String selector, Class<?> entityClass) {
+		Map<String, StringMatching> map = selectors.get(entityClass);
+		StringMatching matching = (map == null) ? null : map.get(selector);
+		return (matching != null) ? matching : defaultMatching;
+	}
+
+	/**
+	 * @return The matching of the selectors without one of their own.
+	 */
+	public StringMatching getDefaultMatching() {
+		return defaultMatching;
+	}
+
+	/**
+	 * Set the matching of the selectors without one of their own.
+	 *
+	 * @param matching StringMatching
+	 */
+	public void setDefaultMatching(StringMatching matching) {
+		if (matching == null) {
+			throw new IllegalArgumentException("Matching was undefined.");
+		}
+		this.defaultMatching = matching;
+	}
+
+	/**
+	 * Set the matching of one selector.
+	 *
+	 * @param entityClass entity class
+	 * @param selector    Selector that identifies some element of an entry's content.
+	 * @param matching    StringMatching, <tt>null</tt> for the default one.
+	 */
+	public void setMatching(Class<?> entityClass, String selector, StringMatching matching) {
+		Map<String, StringMatching> map = selectors.get(entityClass);
+		if (map == null) {
+			map = new HashMap<>();
+			selectors.put(entityClass, map);
+		}
+		map.put(selector, matching);
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.misc;
+
+/**
+ * How the arguments of <tt>==</tt> and <tt>!=</tt> comparisons are matched
+ * against a String property.
+ * <p>
+ * An argument that is not a pattern for the matching is compared with
+ * <tt>=</tt> or <tt>&lt;&gt;</tt>, which an index on the column can serve;
+ * a pattern is compared with <tt>LIKE</tt>, which an index only serves when
+ * the pattern is a prefix and the column is not wrapped in a function.
+ *
+ * @author AntonioRabelo
+ */
+public final class StringMatching {
+
+	/**
+	 * Escape character of the patterns of {@link #PREFIX} matching.
+	 */
+	public static final char ESCAPE = '\\';
+
+	/**
+	 * Case sensitive equality, the argument is taken literally.
+	 */
+	public static final StringMatching EXACT = new StringMatching(Mode.EXACT, null);
+
+	/**
+	 * Case sensitive, an argument ending with <tt>*</tt> matches the values
+	 * starting with the rest of it. Any other character is taken literally.
+	 */
+	public static final StringMatching PREFIX = new StringMatching(Mode.PREFIX, null);
+
+	/**
+	 * Case sensitive, <tt>*</tt> and <tt>_</tt> are wildcards anywhere in
+	 * the argument.
+	 */
+	public static final StringMatching WILDCARD = new StringMatching(Mode.WILDCARD, null);
+
+	/**
+	 * Case insensitive, <tt>*</tt> and <tt>_</tt> are wildcards anywhere in
+	 * the argument. The column is compared in lower case.
+	 */
+	public static final StringMatching CASE_INSENSITIVE = new StringMatching(Mode.CASE_INSENSITIVE, null);
+
+	private final Mode mode;
+
+	private final String shadowAttribute;
+
+	private StringMatching(Mode mode, String shadowAttribute) {
+		this.mode = mode;
+		this.shadowAttribute = shadowAttribute;
+	}
+
+	/**
+	 * Case insensitive matching against a shadow attribute, sibling of the
+	 * compared property, holding its value in lower case. The shadow column
+	 * is compared as is, so that an index on it can be used.
+	 *
+	 * @param shadowAttribute name of the lower case attribute.
+	 * @return                the matching.
+	 */
+	public static StringMatching caseInsensitive(String shadowAttribute) {
+		if (shadowAttribute == null || shadowAttribute.isEmpty()) {
+			throw new IllegalArgumentException("Shadow attribute was undefined.");
+		}
+		return new StringMatching(Mode.CASE_INSENSITIVE, shadowAttribute);
+	}
+
+	/**
+	 * @return <tt>true</tt> if the values are compared in lower case.
+	 */
+	public boolean isCaseInsensitive() {
+		return mode == Mode.CASE_INSENSITIVE;
+	}
+
+	/**
+	 * @return the name of the lower case attribute compared instead of the
+	 *         property, <tt>null</tt> to compare the property in lower case.
+	 */
+	public String getShadowAttribute() {
+		return shadowAttribute;
+	}
+
+	/**
+	 * @return the escape character of the patterns, <tt>null</tt> if they are not escaped.
+	 */
+	public Character getEscapeChar() {
+		return mode == Mode.PREFIX ? ESCAPE : null;
+	}
+
+	/**
+	 * Verify if an argument is a pattern, compared with <tt>LIKE</tt>.
+	 *
+	 * @param argument the argument.
+	 * @return         <tt>true</tt> for a pattern, <tt>false</tt> for a value compared with <tt>=</tt>.
+	 */
+	public boolean isPattern(String argument) {
+		switch (mode) {
+			case EXACT: return false;
+			case PREFIX: return argument.endsWith("*");
+			default: return hasWildcard(argument);
+		}
+	}
+
+	/**
+	 * Convert a pattern argument into a JPQL <tt>LIKE</tt> pattern.
+	 *
+	 * @param argument the argument, a pattern.
+	 * @return         the <tt>LIKE</tt> pattern.
+	 */
+	public String toPattern(String argument) {
+		switch (mode) {
+			case PREFIX: {
+				StringBuilder pattern = new StringBuilder(argument.length() + 4);
+				for (int i = 0; i < argument.length() - 1; i++) {
+					char c = argument.charAt(i);
+					if (c == '%' || c == '_' || c == ESCAPE) {
+						pattern.append(ESCAPE);
+					}
+					pattern.append(c);
+				}
+				return pattern.append('%').toString();
+			}
+			case CASE_INSENSITIVE: return argument.replace('*', '%').toLowerCase();
+			default: return argument.replace('*', '%');
+		}
+	}
+
+	/**
+	 * Convert an argument that is not a pattern into the compared value.
+	 *
+	 * @param argument the argument.
+	 * @return         the value.
+	 */
+	public String toValue(String argument) {
+		return mode == Mode.CASE_INSENSITIVE ? argument.toLowerCase() : argument;
+	}
+
+	/**
+	 * Verify if an argument holds a wildcard of <tt>LIKE</tt> patterns: <tt>*</tt>,
+	 * <tt>_</tt> or <tt>%</tt>.
+	 *
+	 * @param argument the argument.
+	 * @return         <tt>true</tt> if it holds a wildcard.
+	 */
+	public static boolean hasWildcard(String argument) {
+		for (int i = 0; i < argument.length(); i++) {
+			char c = argument.charAt(i);
+			if (c == '*' || c == '_' || c == '%') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return shadowAttribute == null ? mode.name() : mode.name() + "(" + shadowAttribute + ")";
+	}
+
+	private enum Mode {
+		EXACT, PREFIX, WILDCARD, CASE_INSENSITIVE
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.misc;
+
+/**
+ * Decides how the arguments of <tt>==</tt> and <tt>!=</tt> comparisons are
+ * matched against each String property.
+ *
+ * @author AntonioRabelo
+ */
+public interface StringMatchingPolicy {
+
+	/**
+	 * Policy matching every property case insensitively, with wildcards.
+	 */
+	StringMatchingPolicy CASE_INSENSITIVE = (selector, entityClass) -> StringMatching.CASE_INSENSITIVE;
+
+	/**
+	 * Get the matching of a selector.
+	 *
+	 * @param selector    Selector that identifies some element of an entry's content.
+	 * @param entityClass entity class
+	 * @return the matching of the String property.
+	 */
+	StringMatching getMatching(String selector, Class<?> entityClass);
+}
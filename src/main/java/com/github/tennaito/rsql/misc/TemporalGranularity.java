@@ -0,0 +1,48 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.misc;
+
+/**
+ * How the arguments of range comparisons (<tt>=gt=</tt>, <tt>=ge=</tt>,
+ * <tt>=lt=</tt>, <tt>=le=</tt>) are compared against a date or time property.
+ *
+ * @author AntonioRabelo
+ */
+public enum TemporalGranularity {
+
+	/**
+	 * The argument is compared as is, with the precision it was given with.
+	 */
+	EXACT,
+
+	/**
+	 * The argument stands for the whole day it falls in: <tt>=gt=</tt> matches
+	 * from the start of the next day, <tt>=ge=</tt> from the start of the day,
+	 * <tt>=lt=</tt> before the start of the day and <tt>=le=</tt> before the
+	 * start of the next day. The days of {@link java.util.Date} arguments are
+	 * those of the default time zone, the days of {@link java.time.Instant}
+	 * ones those of UTC.
+	 */
+	DAY
+}
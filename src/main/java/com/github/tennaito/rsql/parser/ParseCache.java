@@ -0,0 +1,300 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.parser;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.tennaito.rsql.metrics.QueryListener;
+import com.github.tennaito.rsql.metrics.QueryPhase;
+import com.github.tennaito.rsql.misc.BoundedCache;
+
+import cz.jirutka.rsql.parser.RSQLParser;
+import cz.jirutka.rsql.parser.RSQLParserException;
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * ParseCache
+ *
+ * Bounded cache of the nodes parsed from RSQL queries, in front of a
+ * {@link RSQLParser}. The nodes are immutable, so the node of a query can be
+ * given to any visitor or compiler, by any thread, as many times as needed:
+ * <pre>
+ * static final ParseCache PARSER = new ParseCache();
+ *
+ * List&lt;Course&gt; courses = COURSES.createQuery(PARSER.parse(search), manager).getResultList();
+ * </pre>
+ * Queries are looked up by their normalized form, so that queries differing
+ * only by insignificant spaces or by the quoting of their arguments share a
+ * node. The cache holds at most a number of queries, of at most a total
+ * number of characters, evicting the least recently used ones.
+ *
+ * @author AntonioRabelo
+ */
+public class ParseCache {
+
+	/**
+	 * Default maximum number of cached queries.
+	 */
+	public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+	/**
+	 * Default maximum number of characters of the cached queries.
+	 */
+	public static final long DEFAULT_MAXIMUM_CHARACTERS = 1024 * 1024;
+
+	/**
+	 * Characters that end an unquoted argument or selector.
+	 */
+	private static final String RESERVED = "\"'();,=!~<> ";
+
+	/**
+	 * Characters of the comparison operators.
+	 */
+	private static final String OPERATOR = "=!~<>";
+
+	private final RSQLParser parser;
+
+	private final BoundedCache<String, Node> nodes;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private volatile QueryListener queryListener = QueryListener.NONE;
+
+	/**
+	 * Construct a cache in front of a parser of the default operators.
+	 */
+	public ParseCache() {
+		this(new RSQLParser());
+	}
+
+	/**
+	 * Construct a cache in front of a parser, with the default bounds.
+	 *
+	 * @param parser RSQL parser, knowing of the operators of the queries.
+	 */
+	public ParseCache(RSQLParser parser) {
+		this(parser, DEFAULT_MAXIMUM_SIZE, DEFAULT_MAXIMUM_CHARACTERS);
+	}
+
+	/**
+	 * Construct a cache in front of a parser.
+	 *
+	 * @param parser            RSQL parser, knowing of the operators of the queries.
+	 * @param maximumSize       maximum number of cached queries, must be positive.
+	 * @param maximumCharacters maximum number of characters of the cached queries, must be positive.
+	 */
+	public ParseCache(RSQLParser parser, int maximumSize, long maximumCharacters) {
+		if (parser == null) {
+			throw new IllegalArgumentException("Parser was undefined.");
+		}
+		this.parser = parser;
+		this.nodes = new BoundedCache<>(maximumSize, maximumCharacters, (query, node) -> query.length());
+	}
+
+	/**
+	 * Parse a query, or get the node it was already parsed into.
+	 *
+	 * @param query RSQL query.
+	 * @return      the node of the query.
+	 * @throws RSQLParserException if the query is not valid, such queries are not cached.
+	 */
+	public Node parse(String query) throws RSQLParserException {
+		if (query == null) {
+			throw new IllegalArgumentException("Query was undefined.");
+		}
+		String key = normalize(query);
+		Node node = nodes.get(key);
+		if (node != null) {
+			hits.increment();
+			return node;
+		}
+		misses.increment();
+		QueryListener listener = queryListener;
+		long begin = listener.begin(QueryPhase.PARSE);
+		Node parsed = parser.parse(query);
+		listener.end(QueryPhase.PARSE, begin);
+		return nodes.putIfAbsent(key, parsed);
+	}
+
+	/**
+	 * Get the listener of the parsing of the missed queries.
+	 *
+	 * @return QueryListener
+	 */
+	public QueryListener getQueryListener() {
+		return queryListener;
+	}
+
+	/**
+	 * Set a specific QueryListener, to which the {@link QueryPhase#PARSE}
+	 * phase of every missed query is reported.
+	 *
+	 * @param queryListener QueryListener, <tt>null</tt> for none.
+	 */
+	public void setQueryListener(QueryListener queryListener) {
+		this.queryListener = queryListener == null ? QueryListener.NONE : queryListener;
+	}
+
+	/**
+	 * Normalize a query: the spaces around operators, parentheses and
+	 * separators are removed, the other runs of spaces, those inside
+	 * operators included, are reduced to one,
+	 * and the arguments are quoted only when they must be, with single quotes.
+	 * Only spaces are insignificant to the parser; tabs and line breaks belong
+	 * to the arguments.
+	 *
+	 * @param query RSQL query.
+	 * @return      the normalized query, parsed into the same node.
+	 */
+	static String normalize(String query) {
+		StringBuilder normalized = new StringBuilder(query.length());
+		boolean space = false;
+		int i = 0;
+		while (i < query.length()) {
+			char c = query.charAt(i);
+			if (c == ' ') {
+				space = true;
+				i++;
+				continue;
+			}
+			if (space && normalized.length() > 0 && keepsSpace(normalized.charAt(normalized.length() - 1), c)) {
+				normalized.append(' ');
+			}
+			space = false;
+			if (c == '\'' || c == '"') {
+				i = appendQuoted(query, i, normalized);
+			} else {
+				normalized.append(c);
+				i++;
+			}
+		}
+		return normalized.toString();
+	}
+
+	/**
+	 * Append the argument quoted from <tt>start</tt>, requoted if needed.
+	 *
+	 * @return the index following the closing quote.
+	 */
+	private static int appendQuoted(String query, int start, StringBuilder normalized) {
+		char quote = query.charAt(start);
+		StringBuilder value = new StringBuilder();
+		int i = start + 1;
+		while (i < query.length() && query.charAt(i) != quote) {
+			if (query.charAt(i) == '\\' && i + 1 < query.length()) {
+				i++;
+			}
+			value.append(query.charAt(i++));
+		}
+		if (i >= query.length()) {
+			// unterminated, left for the parser to reject
+			normalized.append(query, start, query.length());
+			return query.length();
+		}
+		// an unquoted argument must not run into the next token
+		boolean apart = i + 1 == query.length() || query.charAt(i + 1) == ' ' || isSeparator(query.charAt(i + 1));
+		if (apart && value.length() > 0 && !needsQuotes(value)) {
+			normalized.append(value);
+		} else {
+			normalized.append('\'');
+			for (int j = 0; j < value.length(); j++) {
+				char c = value.charAt(j);
+				if (c == '\'' || c == '\\') {
+					normalized.append('\\');
+				}
+				normalized.append(c);
+			}
+			normalized.append('\'');
+		}
+		return i + 1;
+	}
+
+	private static boolean needsQuotes(CharSequence value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (RESERVED.indexOf(value.charAt(i)) >= 0 || value.charAt(i) == '\\') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Verify if the spaces between two characters are significant: between
+	 * two characters that are not separators, or inside an operator, where
+	 * they make the query invalid.
+	 */
+	private static boolean keepsSpace(char previous, char next) {
+		return (!isSeparator(previous) && !isSeparator(next)) || (isOperator(previous) && isOperator(next));
+	}
+
+	private static boolean isOperator(char c) {
+		return OPERATOR.indexOf(c) >= 0;
+	}
+
+	/**
+	 * Verify if the spaces next to a character are insignificant: quotes and
+	 * the characters of unquoted arguments must stay apart from the
+	 * <tt>and</tt> and <tt>or</tt> keywords.
+	 */
+	private static boolean isSeparator(char c) {
+		return c != '\'' && c != '"' && RESERVED.indexOf(c) >= 0;
+	}
+
+	/**
+	 * @return the number of queries whose node was cached.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of queries parsed.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of nodes evicted to stay within the bounds.
+	 */
+	public long getEvictionCount() {
+		return nodes.getEvictionCount();
+	}
+
+	/**
+	 * @return the number of cached nodes.
+	 */
+	public int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * Discard all cached nodes.
+	 */
+	public void clear() {
+		nodes.clear();
+	}
+}
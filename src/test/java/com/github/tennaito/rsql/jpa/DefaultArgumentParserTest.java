@@ -23,12 +23,24 @@
  */
 package com.github.tennaito.rsql.jpa;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 
 import org.junit.Test;
 
@@ -181,6 +193,81 @@ public class DefaultArgumentParserTest {
         }
     }    
     
+    @Test
+    public void testParseConverters() {
+        UUID uuid = UUID.randomUUID();
+        assertEquals(uuid, instance.parse(uuid.toString(), UUID.class));
+        assertEquals(Instant.parse("2011-08-26T14:15:30Z"), instance.parse("2011-08-26T14:15:30Z", Instant.class));
+        assertEquals(OffsetDateTime.parse("2011-08-26T14:15:30+02:00"), instance.parse("2011-08-26T14:15:30+02:00", OffsetDateTime.class));
+        assertEquals(new BigInteger("123456789123456789123"), instance.parse("123456789123456789123", BigInteger.class));
+        // public String constructor
+        assertEquals("foo", instance.parse("foo", StringBuilder.class).toString());
+        // unsupported types still accept null
+        assertNull(instance.parse("null", Course.class));
+
+        assertEquals(Arrays.asList(1L, null, 3L), instance.parse(Arrays.asList("1", "null", "3"), Long.class));
+        try {
+            instance.parse(Arrays.asList("1", "x"), Long.class);
+            fail();
+        } catch (ArgumentFormatException e) {
+            assertEquals("x", e.getArgument());
+            assertTrue(e.getCause() instanceof NumberFormatException);
+        }
+        try {
+            instance.parse("not-a-date", Instant.class);
+            fail();
+        } catch (ArgumentFormatException e) {
+            assertEquals(Instant.class, e.getPropertyType());
+        }
+
+        DefaultArgumentParser parser = new DefaultArgumentParser();
+        assertEquals("foo", parser.parse("foo", String.class));
+        parser.registerConverter(String.class, argument -> argument.toUpperCase());
+        assertEquals("FOO", parser.parse("foo", String.class));
+        parser.registerConverter(Course.class, argument -> {
+            Course course = new Course();
+            course.setCode(argument);
+            return course;
+        });
+        assertEquals("MI-MDW", parser.parse("MI-MDW", Course.class).getCode());
+    }
+
+    @Test
+    public void testParseDates() {
+        assertEquals(new GregorianCalendar(2011, 7, 26, 14, 15).getTime(), instance.parse("2011-08-26T14:15", Date.class));
+        assertEquals(new GregorianCalendar(2011, 7, 26, 14, 15, 30).getTime().getTime() + 120, instance.parse("2011-08-26T14:15:30.12", Date.class).getTime());
+        assertEquals(Date.from(Instant.parse("2011-08-26T12:15:30Z")), instance.parse("2011-08-26T14:15:30+02:00", Date.class));
+        assertEquals(Instant.parse("2011-08-26T12:15:30Z"), instance.parse("2011-08-26T14:15:30+0200", Instant.class));
+        assertEquals(LocalDate.of(2011, 8, 26), instance.parse("2011-08-26", LocalDate.class));
+        assertEquals(LocalDateTime.of(2011, 8, 26, 14, 15, 30, 123456789), instance.parse("2011-08-26T14:15:30.123456789", LocalDateTime.class));
+        assertEquals(LocalTime.of(14, 15), instance.parse("14:15", LocalTime.class));
+        assertEquals(ZonedDateTime.parse("2011-08-26T14:15:30+02:00[Europe/Paris]"), instance.parse("2011-08-26T14:15:30+02:00[Europe/Paris]", ZonedDateTime.class));
+        assertEquals(java.sql.Date.valueOf("2011-08-26"), instance.parse("2011-08-26", java.sql.Date.class));
+        assertEquals(java.sql.Time.valueOf("14:15:30"), instance.parse("14:15:30", java.sql.Time.class));
+        assertEquals(java.sql.Timestamp.valueOf("2011-08-26 14:15:30.5"), instance.parse("2011-08-26T14:15:30.5", java.sql.Timestamp.class));
+
+        String[][] malformed = {
+            {"2011-08-26T", "Date"}, {"2011-08-26 14:15", "Date"}, {"2011-13-26", "Date"}, {"2011-08-26T14:15:30+2", "Date"},
+            {"2011-08-26T14:15", "LocalDate"}, {"2011-08-26", "LocalDateTime"}, {"2011-08-26T14:15:30", "OffsetDateTime"},
+            {"2011-08-26T14:15:30Z[Europe/Paris", "ZonedDateTime"}, {"14:15:", "LocalTime"}, {"2011-08-26T14:15:30.", "LocalDateTime"}
+        };
+        Map<String, Class<?>> types = new HashMap<>();
+        types.put("Date", Date.class);
+        types.put("LocalDate", LocalDate.class);
+        types.put("LocalDateTime", LocalDateTime.class);
+        types.put("OffsetDateTime", OffsetDateTime.class);
+        types.put("ZonedDateTime", ZonedDateTime.class);
+        types.put("LocalTime", LocalTime.class);
+        for (String[] argument : malformed) {
+            try {
+                instance.parse(argument[0], types.get(argument[1]));
+                fail(argument[0]);
+            } catch (ArgumentFormatException e) {
+                assertEquals(argument[0], e.getArgument());
+            }
+        }
+    }
+
     ////////////////////////// Mocks //////////////////////////
     
     protected enum MockEnum {
@@ -24,10 +24,23 @@
 package com.github.tennaito.rsql.jpa;
 
 import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.builder.SimpleBuilderTools;
 import com.github.tennaito.rsql.jpa.entity.*;
+import com.github.tennaito.rsql.metrics.QueryListener;
+import com.github.tennaito.rsql.metrics.QueryMetrics;
+import com.github.tennaito.rsql.metrics.QueryPhase;
+import com.github.tennaito.rsql.misc.ArgumentParser;
+import com.github.tennaito.rsql.misc.Mapper;
+import com.github.tennaito.rsql.misc.ParameterBindingPolicy;
 import com.github.tennaito.rsql.misc.SimpleMapper;
+import com.github.tennaito.rsql.misc.SimpleParameterBindingPolicy;
+import com.github.tennaito.rsql.misc.SimpleStringMatchingPolicy;
+import com.github.tennaito.rsql.misc.StringMatching;
+import com.github.tennaito.rsql.misc.TemporalGranularityPolicy;
+import com.github.tennaito.rsql.parser.ParseCache;
 import com.github.tennaito.rsql.parser.ast.ComparisonOperatorProxy;
 import cz.jirutka.rsql.parser.RSQLParser;
+import cz.jirutka.rsql.parser.RSQLParserException;
 import cz.jirutka.rsql.parser.ast.*;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -35,9 +48,20 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.Tuple;
 import javax.persistence.criteria.*;
 import java.lang.reflect.Constructor;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static junit.framework.Assert.*;
 
@@ -492,6 +516,33 @@ public class JpaVisitorTest {
     	visitor.getBuilderTools().setPredicateBuilder(predicateStrategy);
 	}
 
+    @Test
+    public void testOperatorRegistry() {
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<>(Course.class);
+    	OperatorRegistry registry = ExtendedOperators.registerAll(visitor.getBuilderTools().getOperatorRegistry());
+    	RSQLParser parser = new RSQLParser(registry.getOperators());
+    	String[][] matches = {{"credits=between=(5,10)", "1"}, {"credits=between=(11,20)", "0"},
+    			{"name=isnull=false", "1"}, {"name=isnull=true", "0"},
+    			{"name=like=Testing*", "1"}, {"name=like=testing*", "0"}, {"name=ilike=testing*", "1"},
+    			{"department.head.titles.name=ilike=PHD;code==MI-MDW", "1"}};
+    	for (String[] match : matches) {
+    		assertEquals(match[0], Integer.parseInt(match[1]), entityManager.createQuery(parser.parse(match[0]).accept(visitor, entityManager)).getResultList().size());
+    	}
+
+    	try {
+    		parser.parse("credits=between=(5)").accept(visitor, entityManager);
+    		fail();
+    	} catch (IllegalArgumentException e) {
+    		assertEquals("Operator =between= takes two comparable arguments: credits=between='5'", e.getMessage());
+    	}
+    	try {
+    		registry.register(ComparisonOperatorProxy.EQUAL.getOperator(), ExtendedOperators.LIKE_HANDLER);
+    		fail();
+    	} catch (IllegalArgumentException e) {
+    		assertEquals("Built-in operator cannot be replaced: ==", e.getMessage());
+    	}
+    }
+
     @Test
     public void testAssociationSelection() {
     	Node rootNode = new RSQLParser().parse("department.id==1");
@@ -515,6 +566,20 @@ public class JpaVisitorTest {
         assertEquals(1,joinCount);
     }
 
+	@Test
+	public void testMappedSelectorsShareJoins() {
+		Node rootNode = new RSQLParser().parse("dep.code==MI-MDW;department.name==Testing;dep.head.surname==One");
+		JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<>(Course.class);
+		SimpleMapper mapper = new SimpleMapper();
+		mapper.addMapping(Course.class, new HashMap<>());
+		mapper.addMapping(Course.class, "dep", "department");
+		visitor.getBuilderTools().setPropertiesMapper(mapper);
+
+		CriteriaQuery<Course> query = rootNode.accept(visitor, entityManager);
+		assertEquals("Testing Course", entityManager.createQuery(query).getResultList().get(0).getName());
+		assertEquals(2, visitor.getPredicateVisitor().getPredicateBuilder().getJoinCount());
+	}
+
 	@Test
 	public void testAssociationAliasSelection() {
 		Node rootNode = new RSQLParser().parse("dept.id==1");
@@ -641,6 +706,842 @@ public class JpaVisitorTest {
     	assertEquals("Testing Course", courses.get(0).getName());
     }
 
+    @Test
+    public void testCachingVisitorReusesPlanForSameShape() {
+    	JpaCachingQueryVisitor<Course> visitor = new JpaCachingQueryVisitor<>(Course.class);
+
+    	List<Course> courses = new RSQLParser().parse("department.id==1;name==*Course").accept(visitor, entityManager).getResultList();
+    	assertEquals("Testing Course", courses.get(0).getName());
+    	assertEquals(1, visitor.getPlanCount());
+
+    	courses = new RSQLParser().parse("department.id==2;name==*Course").accept(visitor, entityManager).getResultList();
+    	assertEquals(0, courses.size());
+    	courses = new RSQLParser().parse("department.id==1;name==Testing*").accept(visitor, entityManager).getResultList();
+    	assertEquals(1, courses.size());
+    	assertEquals(1, visitor.getPlanCount());
+    }
+
+    @Test
+    public void testCachingVisitorRebindsEveryOperator() {
+    	JpaCachingQueryVisitor<Course> visitor = new JpaCachingQueryVisitor<>(Course.class);
+
+    	String[] matching = {"id=in=(1,2)", "startDate=gt='2001-01-01'", "startDate=lt='2222-02-02'", "code=ge='MI-MDW'", "credits=le=10", "id=out=(3,4)"};
+    	String[] notMatching = {"id=in=(3,4)", "startDate=gt='2222-02-02'", "startDate=lt='2001-01-01'", "code=ge='MI-MDZ'", "credits=le=9", "id=out=(1,4)"};
+    	for (int i = 0; i < matching.length; i++) {
+    		assertEquals(matching[i], 1, new RSQLParser().parse(matching[i]).accept(visitor, entityManager).getResultList().size());
+    		assertEquals(notMatching[i], 0, new RSQLParser().parse(notMatching[i]).accept(visitor, entityManager).getResultList().size());
+    	}
+    	assertEquals(matching.length, visitor.getPlanCount());
+    }
+
+    @Test
+    public void testCachingVisitorSeparatesNullArguments() {
+    	JpaCachingQueryVisitor<Course> visitor = new JpaCachingQueryVisitor<>(Course.class);
+
+    	assertEquals(0, new RSQLParser().parse("name==null").accept(visitor, entityManager).getResultList().size());
+    	assertEquals(1, new RSQLParser().parse("name=='Testing Course'").accept(visitor, entityManager).getResultList().size());
+    	assertEquals(2, visitor.getPlanCount());
+
+    	visitor.clearPlans();
+    	assertEquals(0, visitor.getPlanCount());
+    }
+
+    @Test
+    public void testStringMatchingPolicy() {
+    	SimpleStringMatchingPolicy policy = new SimpleStringMatchingPolicy();
+    	policy.setMatching(Course.class, "code", StringMatching.EXACT);
+    	policy.setMatching(Course.class, "name", StringMatching.PREFIX);
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<>(Course.class);
+    	simpleTools(visitor).setStringMatchingPolicy(policy);
+
+    	String[] matching = {"code==MI-MDW", "code!=mi-mdw", "name=='Testing*'", "name!='Test_*'", "department.code==mi-mdw", "department.code=='mi-*'"};
+    	String[] notMatching = {"code==mi-mdw", "code==MI-*", "name=='testing*'", "name=='*Course'", "department.code!=mi-mdw", "name=='Testing_*'"};
+    	for (int i = 0; i < matching.length; i++) {
+    		assertEquals(matching[i], 1, entityManager.createQuery(new RSQLParser().parse(matching[i]).accept(visitor, entityManager)).getResultList().size());
+    		assertEquals(notMatching[i], 0, entityManager.createQuery(new RSQLParser().parse(notMatching[i]).accept(visitor, entityManager)).getResultList().size());
+    	}
+
+    	// a plan compiled for a pattern is not reused for a value of the same shape
+    	JpaCachingQueryVisitor<Course> caching = new JpaCachingQueryVisitor<>(Course.class);
+    	simpleTools(caching).setStringMatchingPolicy(policy);
+    	final Map<QueryPhase, Integer> open = new EnumMap<>(QueryPhase.class);
+    	simpleTools(caching).setQueryListener(new QueryListener() {
+    		public long begin(QueryPhase phase) {
+    			open.merge(phase, 1, Integer::sum);
+    			return 0L;
+    		}
+    		public void end(QueryPhase phase, long begin) {
+    			open.merge(phase, -1, Integer::sum);
+    		}
+    	});
+    	assertEquals(1, new RSQLParser().parse("name=='Testing*'").accept(caching, entityManager).getResultList().size());
+    	assertEquals(0, new RSQLParser().parse("name=='*Testing'").accept(caching, entityManager).getResultList().size());
+    	assertEquals(1, new RSQLParser().parse("name=='Testing Course'").accept(caching, entityManager).getResultList().size());
+    	assertEquals(2, caching.getPlanCount());
+    	// the phase of a plan not fitting the arguments ends too
+    	assertEquals(Integer.valueOf(0), open.get(QueryPhase.ARGUMENT_CONVERSION));
+    }
+
+    @Test
+    public void testCachingVisitorDoesNotCacheUndefinedOperators() {
+		Set<ComparisonOperator> operators = new HashSet<>(RSQLOperators.defaultOperators());
+		operators.add(new ComparisonOperator("=def="));
+
+    	JpaCachingQueryVisitor<Course> visitor = new JpaCachingQueryVisitor<>(Course.class);
+    	visitor.getBuilderTools().setPredicateBuilder(new PredicateBuilderStrategy() {
+			public <T> Predicate createPredicate(Node node, From root, Class<T> entity,
+					EntityManager manager, BuilderTools tools) throws IllegalArgumentException {
+				ComparisonNode comp = ((ComparisonNode)node);
+				ComparisonNode def = new ComparisonNode(ComparisonOperatorProxy.EQUAL.getOperator(), comp.getSelector(), comp.getArguments());
+				return new PredicateBuilder().createPredicate(def, root, entity, manager, tools);
+			}
+		});
+
+    	assertEquals(1, new RSQLParser(operators).parse("id=def=1;code==MI-MDW").accept(visitor, entityManager).getResultList().size());
+    	assertEquals(0, new RSQLParser(operators).parse("id=def=2;code==MI-MDW").accept(visitor, entityManager).getResultList().size());
+    	assertEquals(0, visitor.getPlanCount());
+    }
+
+    @Test
+    public void testParametersBindArguments() {
+    	QueryParameters parameters = new QueryParameters();
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<>(Course.class).defineParameters(parameters);
+
+    	CriteriaQuery<Course> query = new RSQLParser().parse("name=='Testing Course';credits=ge=10;id=in=(1,2);active==true").accept(visitor, entityManager);
+    	// booleans are inlined by default
+    	assertEquals(4, parameters.size());
+    	assertEquals(Arrays.asList("testing course", 10, 1L, 2L), new ArrayList<>(parameters.asMap().values()));
+    	assertEquals(1, parameters.apply(entityManager.createQuery(query)).getResultList().size());
+    }
+
+    @Test
+    public void testParameterBindingPolicy() {
+    	SimpleParameterBindingPolicy policy = new SimpleParameterBindingPolicy();
+    	policy.setInlined(Course.class, "name", true);
+    	policy.setInlined(Course.class, "active", false);
+    	QueryParameters parameters = new QueryParameters();
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<>(Course.class).defineParameters(parameters);
+    	simpleTools(visitor).setParameterBindingPolicy(policy);
+
+    	CriteriaQuery<Course> query = new RSQLParser().parse("name=='Testing Course';active==true").accept(visitor, entityManager);
+    	assertEquals(Collections.<Object>singletonList(true), new ArrayList<>(parameters.asMap().values()));
+    	assertEquals(1, parameters.apply(entityManager.createQuery(query)).getResultList().size());
+
+    	parameters = new QueryParameters();
+    	simpleTools(visitor.defineParameters(parameters)).setParameterBindingPolicy(ParameterBindingPolicy.BIND_ALL);
+    	query = new RSQLParser().parse("name=='Testing Course';active==false").accept(visitor, entityManager);
+    	assertEquals(2, parameters.size());
+    	assertEquals(0, parameters.apply(entityManager.createQuery(query)).getResultList().size());
+    }
+
+    @Test
+    public void testQueryMetrics() {
+    	QueryMetrics metrics = new QueryMetrics();
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<>(Course.class);
+    	simpleTools(visitor).setQueryListener(metrics);
+
+    	CriteriaQuery<Course> query = new RSQLParser().parse("department.head.surname==One;name==*Course;department.code==MI-MDW").accept(visitor, entityManager);
+    	assertEquals(1, entityManager.createQuery(query).getResultList().size());
+    	assertEquals(3, metrics.getCount(QueryPhase.PATH_RESOLUTION));
+    	assertEquals(3, metrics.getCount(QueryPhase.ARGUMENT_CONVERSION));
+    	assertEquals(3, metrics.getCount(QueryPhase.PREDICATE_BUILD));
+    	assertEquals(2, metrics.getCount(QueryPhase.JOIN_CREATION));
+    	assertEquals(0, metrics.getCount(QueryPhase.PARSE));
+    	assertTrue(metrics.getPercentileNanos(QueryPhase.PATH_RESOLUTION, 99) >= metrics.getPercentileNanos(QueryPhase.PATH_RESOLUTION, 50));
+    	assertTrue(metrics.getPercentileNanos(QueryPhase.PATH_RESOLUTION, 50) > 0);
+
+    	metrics.reset();
+    	assertEquals(0, metrics.getCount(QueryPhase.PATH_RESOLUTION));
+    	assertEquals(0, metrics.getPercentileNanos(QueryPhase.PATH_RESOLUTION, 50));
+    }
+
+    @Test
+    public void testNullRejectingPredicatesUseInnerJoins() {
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<>(Course.class);
+    	String[] inner = {"department.name==Testing;name==*Course", "department.code==MI-MDW,department.name!=Other", "department.id=in=(1,2);department.code==null"};
+    	String[] left = {"department.name==Testing,name==*Course", "department.code==null", "department.code==null;credits=ge=10"};
+    	for (String rsql : inner) {
+    		CriteriaQuery<Course> query = new RSQLParser().parse(rsql).accept(visitor, entityManager);
+    		assertEquals(rsql, JoinType.INNER, query.getRoots().iterator().next().getJoins().iterator().next().getJoinType());
+    	}
+    	for (String rsql : left) {
+    		CriteriaQuery<Course> query = new RSQLParser().parse(rsql).accept(visitor, entityManager);
+    		assertEquals(rsql, JoinType.LEFT, query.getRoots().iterator().next().getJoins().iterator().next().getJoinType());
+    	}
+
+    	// every join leading to a null-rejected property
+    	CriteriaQuery<Course> query = new RSQLParser().parse("department.head.surname==One").accept(visitor, entityManager);
+    	Join<?, ?> department = query.getRoots().iterator().next().getJoins().iterator().next();
+    	assertEquals(JoinType.INNER, department.getJoinType());
+    	assertEquals(JoinType.INNER, department.getJoins().iterator().next().getJoinType());
+    	assertEquals(1, entityManager.createQuery(query).getResultList().size());
+
+    	// a predicate alone may be combined with others, so it keeps LEFT joins
+    	CriteriaQuery<Course> criteria = entityManager.getCriteriaBuilder().createQuery(Course.class);
+    	Root<Course> root = criteria.from(Course.class);
+    	new RSQLParser().parse("department.name==Testing").accept(new JpaPredicateVisitor<>(Course.class).defineRoot(root), entityManager);
+    	assertEquals(JoinType.LEFT, root.getJoins().iterator().next().getJoinType());
+    }
+
+    @Test
+    public void testForeignKeyIdentifiersAreNotJoined() {
+    	JpaCriteriaQueryVisitor<Department> visitor = new JpaCriteriaQueryVisitor<>(Department.class);
+    	String[] rsqls = {"head.id==1", "head.id=in=(1,2);code==MI-MDW", "head.id==null,head.id!=2"};
+    	for (String rsql : rsqls) {
+    		CriteriaQuery<Department> query = new RSQLParser().parse(rsql).accept(visitor, entityManager);
+    		assertEquals(rsql, 0, visitor.getPredicateVisitor().getPredicateBuilder().getJoinCount());
+    		assertEquals(rsql, 1, entityManager.createQuery(query).getResultList().size());
+    	}
+    	assertEquals(0, entityManager.createQuery(new RSQLParser().parse("head.id==2").accept(visitor, entityManager)).getResultList().size());
+
+    	// an association joined for another property is compared through its join
+    	CriteriaQuery<Department> query = new RSQLParser().parse("head.surname==One;head.id==1").accept(visitor, entityManager);
+    	assertEquals(1, visitor.getPredicateVisitor().getPredicateBuilder().getJoinCount());
+    	assertEquals(1, entityManager.createQuery(query).getResultList().size());
+
+    	// the join columns of Course.department do not reference the primary key only
+    	JpaCriteriaQueryVisitor<Course> courses = new JpaCriteriaQueryVisitor<>(Course.class);
+    	CriteriaQuery<Course> criteria = new RSQLParser().parse("department.head.id==1").accept(courses, entityManager);
+    	assertEquals(1, courses.getPredicateVisitor().getPredicateBuilder().getJoinCount());
+    	assertEquals(1, entityManager.createQuery(criteria).getResultList().size());
+    }
+
+    @Test
+    public void testPluralPathsAsExistsSubqueries() {
+    	JpaCriteriaQueryVisitor<Person> visitor = new JpaCriteriaQueryVisitor<>(Person.class);
+    	String rsql = "titles.name=in=(Phd,Consultant)";
+    	assertEquals(2, entityManager.createQuery(new RSQLParser().parse(rsql).accept(visitor, entityManager)).getResultList().size());
+
+    	simpleTools(visitor).setPluralPathStrategy(PluralPathStrategy.EXISTS);
+    	CriteriaQuery<Person> query = new RSQLParser().parse(rsql).accept(visitor, entityManager);
+    	assertTrue(query.getRoots().iterator().next().getJoins().isEmpty());
+    	assertEquals(1, entityManager.createQuery(query).getResultList().size());
+
+    	// comparisons on the same collection hold for the same element
+    	String[] matching = {"titles.name==Phd;titles.id==1", "titles.name==Phd,titles.id==2", "courses==MI-MDW;name==Some", "titles.name==Phd;courses==MI-MDW"};
+    	String[] notMatching = {"titles.name==Phd;titles.id==2", "courses=='DE-MDW'", "titles.name==Phd;courses=='DE-MDW'"};
+    	for (String matches : matching) {
+    		assertEquals(matches, 1, entityManager.createQuery(new RSQLParser().parse(matches).accept(visitor, entityManager)).getResultList().size());
+    	}
+    	for (String misses : notMatching) {
+    		assertEquals(misses, 0, entityManager.createQuery(new RSQLParser().parse(misses).accept(visitor, entityManager)).getResultList().size());
+    	}
+
+    	// collections reached through to-one associations, with bound arguments
+    	JpaCachingQueryVisitor<Course> courses = new JpaCachingQueryVisitor<>(Course.class);
+    	simpleTools(courses).setPluralPathStrategy(PluralPathStrategy.EXISTS);
+    	assertEquals(1, new RSQLParser().parse("department.head.titles.name==Phd;code==MI-MDW").accept(courses, entityManager).getResultList().size());
+    	assertEquals(0, new RSQLParser().parse("department.head.titles.name==Student;code==MI-MDW").accept(courses, entityManager).getResultList().size());
+    	assertEquals(1, courses.getPlanCount());
+    }
+
+    @Test
+    public void testCountStrategies() {
+    	JpaCriteriaCountQueryVisitor<Course> courses = new JpaCriteriaCountQueryVisitor<>(Course.class);
+    	CriteriaQuery<Long> query = new RSQLParser().parse("name==Other,code==MI-MDW").accept(courses, entityManager);
+    	assertEquals(1, query.getRoots().size());
+    	assertEquals(Long.valueOf(1), entityManager.createQuery(query).getSingleResult());
+
+    	JpaCriteriaCountQueryVisitor<Person> persons = new JpaCriteriaCountQueryVisitor<>(Person.class);
+    	Node titles = new RSQLParser().parse("titles.name=in=(Phd,Consultant)");
+    	for (CountStrategy strategy : CountStrategy.values()) {
+    		simpleTools(persons).setCountStrategy(strategy);
+    		query = titles.accept(persons, entityManager);
+    		assertEquals(strategy.name(), Long.valueOf(1), entityManager.createQuery(query).getSingleResult());
+    		assertEquals(strategy.name(), strategy == CountStrategy.EXISTS, persons.getRoot().getJoins().isEmpty());
+    	}
+
+    	JpaQueryCompiler<Person> compiler = new JpaQueryCompiler<>(Person.class, persons.getBuilderTools());
+    	assertEquals(Long.valueOf(1), entityManager.createQuery(compiler.createCountQuery(titles, entityManager)).getSingleResult());
+    }
+
+    @Test
+    public void testNodeOptimizer() {
+    	SimpleBuilderTools tools = simpleTools(new JpaCriteriaQueryVisitor<>(Course.class));
+    	String[][] rewrites = {
+    			{"id==1,id==2,id=in=(3,1)", "id=in=(1,2,3)"},
+    			{"id==1;(name==A;(code==B;id==1))", "id==1;name==A;code==B"},
+    			{"credits=ge=5;credits=gt=3;credits=le=10;credits=lt=20", "credits=ge=5;credits=le=10"},
+    			{"id=in=(1,2,3);id!=2;id=le=2", "id==1"},
+    			{"startDate=gt='2001-01-01';startDate=ge='2001-01-02'", "startDate=ge='2001-01-02'"},
+    			{"(id==1;id==2),code==MI-MDW", "code==MI-MDW"},
+    			{"name==A,name==B", "name==A,name==B"},
+    			{"name==A;name==B", "name==A;name==B"}
+    	};
+    	for (String[] rewrite : rewrites) {
+    		OptimizedNode optimized = NodeOptimizer.optimize(new RSQLParser().parse(rewrite[0]), Course.class, entityManager, tools);
+    		assertEquals(rewrite[0], new RSQLParser().parse(rewrite[1]), optimized.getNode());
+    	}
+
+    	String[] unsatisfiable = {"id==1;id==2", "credits=gt=5;credits=lt=3", "credits=gt=5;credits=le=5", "active==true;(active==false,id==1;id==3)", "name==null;name==Z"};
+    	for (String rsql : unsatisfiable) {
+    		assertTrue(rsql, NodeOptimizer.optimize(new RSQLParser().parse(rsql), Course.class, entityManager, tools).isUnsatisfiable());
+    		assertEquals(rsql, 0, entityManager.createQuery(new RSQLParser().parse(rsql).accept(new JpaCriteriaQueryVisitor<>(Course.class), entityManager)).getResultList().size());
+    	}
+    	assertTrue(NodeOptimizer.optimize(new RSQLParser().parse("name==null,code==X,name!=null"), Course.class, entityManager, tools).isTautology());
+    	// through a collection, a person without titles has neither a null nor a non-null title name
+    	assertNotNull(NodeOptimizer.optimize(new RSQLParser().parse("titles.name==null,titles.name!=null"), Person.class, entityManager, tools).getNode());
+
+    	// case sensitive equalities on strings are merged
+    	SimpleStringMatchingPolicy policy = new SimpleStringMatchingPolicy();
+    	policy.setMatching(Course.class, "code", StringMatching.EXACT);
+    	tools.setStringMatchingPolicy(policy);
+    	Node merged = NodeOptimizer.optimize(new RSQLParser().parse("code==MI-MDW,code==X"), Course.class, entityManager, tools).getNode();
+    	assertEquals(new RSQLParser().parse("code=in=(MI-MDW,X)"), merged);
+    	assertEquals(1, entityManager.createQuery(merged.accept(new JpaCriteriaQueryVisitor<>(Course.class), entityManager)).getResultList().size());
+
+    	// bounds of whole days
+    	Node days = new RSQLParser().parse("startDate=gt='2001-01-01';startDate=lt='2001-01-02'");
+    	assertNotNull(NodeOptimizer.optimize(days, Course.class, entityManager, tools).getNode());
+    	tools.setTemporalGranularityPolicy(TemporalGranularityPolicy.DAY);
+    	assertTrue(NodeOptimizer.optimize(days, Course.class, entityManager, tools).isUnsatisfiable());
+    	assertEquals(new RSQLParser().parse("startDate=gt='2001-01-01'"),
+    			NodeOptimizer.optimize(new RSQLParser().parse("startDate=gt='2001-01-01';startDate=ge='2001-01-02'"), Course.class, entityManager, tools).getNode());
+
+    	// the compiler runs no query for an unsatisfiable filter, and drops tautologies
+    	JpaQueryCompiler<Course> compiler = new JpaQueryCompiler<>(Course.class);
+    	EntityManager noQueries = (EntityManager) java.lang.reflect.Proxy.newProxyInstance(EntityManager.class.getClassLoader(), new Class<?>[] {EntityManager.class}, (proxy, method, args) -> {
+    		if (method.getName().startsWith("create")) {
+    			throw new AssertionError(method.getName());
+    		}
+    		return method.invoke(entityManager, args);
+    	});
+    	assertTrue(compiler.getOptimizedResultList(new RSQLParser().parse("id==1;id==2"), Collections.<SortKey>emptyList(), noQueries).isEmpty());
+    	assertEquals(entityManager.createQuery("select c from Course c", Course.class).getResultList(),
+    			compiler.getOptimizedResultList(new RSQLParser().parse("name==null,name!=null"), SortKey.parse("id"), entityManager));
+    	assertEquals(1, compiler.getOptimizedResultList(new RSQLParser().parse("id==1,id==1"), Collections.<SortKey>emptyList(), entityManager).size());
+    }
+
+    @Test
+    public void testTemporalGranularity() {
+    	// the course starts today, at the time it was persisted
+    	String today = LocalDate.now().toString();
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<>(Course.class);
+    	String[][] matches = {{"startDate=gt=" + today, "1", "0"}, {"startDate=ge=" + today, "1", "1"},
+    			{"startDate=lt=" + today, "0", "0"}, {"startDate=le=" + today, "0", "1"}};
+    	for (String[] match : matches) {
+    		simpleTools(visitor).setTemporalGranularityPolicy(TemporalGranularityPolicy.EXACT);
+    		assertEquals(match[0], Integer.parseInt(match[1]), entityManager.createQuery(new RSQLParser().parse(match[0]).accept(visitor, entityManager)).getResultList().size());
+    		simpleTools(visitor).setTemporalGranularityPolicy(TemporalGranularityPolicy.DAY);
+    		assertEquals(match[0], Integer.parseInt(match[2]), entityManager.createQuery(new RSQLParser().parse(match[0]).accept(visitor, entityManager)).getResultList().size());
+    	}
+
+    	assertEquals(LocalDate.of(2011, 8, 27), PredicateBuilder.startOfDay(LocalDate.of(2011, 8, 26), 1));
+    	assertEquals(LocalDateTime.of(2011, 8, 26, 0, 0), PredicateBuilder.startOfDay(LocalDateTime.of(2011, 8, 26, 14, 15), 0));
+    	assertEquals(Instant.parse("2011-08-27T00:00:00Z"), PredicateBuilder.startOfDay(Instant.parse("2011-08-26T14:15:30Z"), 1));
+    	assertEquals(OffsetDateTime.parse("2011-08-26T00:00+02:00"), PredicateBuilder.startOfDay(OffsetDateTime.parse("2011-08-26T01:15+02:00"), 0));
+    	assertEquals(new GregorianCalendar(2011, 7, 27).getTime(), PredicateBuilder.startOfDay(new GregorianCalendar(2011, 7, 26, 14, 15).getTime(), 1));
+    	assertFalse(PredicateBuilder.isDayComparable(java.sql.Time.class));
+    }
+
+    @Test
+    public void testQueryBudget() {
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<>(Course.class);
+    	Node node = new RSQLParser().parse("department.head.titles.name==*hd;code==MI-MDW;id=in=(1,2,3);name==X");
+    	QueryCost cost = QueryCost.estimate(node, Course.class, entityManager, visitor.getBuilderTools());
+    	assertEquals(4, cost.getComparisons());
+    	assertEquals(3, cost.getJoins());
+    	assertEquals(1, cost.getPluralJoins());
+    	assertEquals(1, cost.getPluralDepth());
+    	assertEquals(3, cost.getMaxInSize());
+    	assertEquals(1, cost.getLeadingWildcards());
+    	// titles.name and name, code being indexed by the mapping
+    	assertEquals(2, cost.getUnindexedComparisons());
+
+    	QueryBudget budget = new QueryBudget();
+    	budget.setMaxLeadingWildcards(0);
+    	budget.setMaxInSize(2);
+    	simpleTools(visitor).setQueryBudget(budget);
+    	assertEquals(1, entityManager.createQuery(new RSQLParser().parse("name==Testing*;id=in=(1,2)").accept(visitor, entityManager)).getResultList().size());
+    	for (String rsql : new String[] {"name==*Course", "id=in=(1,2,3)"}) {
+    		try {
+    			new RSQLParser().parse(rsql).accept(visitor, entityManager);
+    			fail(rsql);
+    		} catch (QueryBudgetExceededException e) {
+    			assertEquals(rsql, 1, e.getViolations().size());
+    		}
+    	}
+
+    	// plans admitted for a prefix are not reused for a leading wildcard
+    	JpaCachingQueryVisitor<Course> caching = new JpaCachingQueryVisitor<>(Course.class);
+    	simpleTools(caching).setQueryBudget(budget);
+    	assertEquals(1, new RSQLParser().parse("name==Testing*").accept(caching, entityManager).getResultList().size());
+    	try {
+    		new RSQLParser().parse("name==*Course").accept(caching, entityManager);
+    		fail();
+    	} catch (QueryBudgetExceededException e) {
+    		assertEquals(1, caching.getPlanCount());
+    	}
+
+    	// cached plans are checked against every rule, the score included
+    	budget = new QueryBudget();
+    	budget.setMaxScore(1);
+    	caching = new JpaCachingQueryVisitor<>(Course.class);
+    	caching.getBuilderTools().getInListStrategy().setCollectionThreshold(2);
+    	simpleTools(caching).setQueryBudget(budget);
+    	assertEquals(1, new ComparisonNode(RSQLOperators.IN, "id", Collections.nCopies(99, "1")).accept(caching, entityManager).getResultList().size());
+    	try {
+    		new ComparisonNode(RSQLOperators.IN, "id", Collections.nCopies(100, "1")).accept(caching, entityManager);
+    		fail();
+    	} catch (QueryBudgetExceededException e) {
+    		assertEquals(Collections.singletonList("score 2 > 1"), e.getViolations());
+    	}
+    	assertEquals(1, caching.getPlanCount());
+
+    	// joins of collections degrade into EXISTS subqueries
+    	budget = new QueryBudget();
+    	budget.setMaxPluralJoins(0);
+    	JpaCriteriaQueryVisitor<Person> persons = new JpaCriteriaQueryVisitor<>(Person.class);
+    	simpleTools(persons).setQueryBudget(budget);
+    	Node titles = new RSQLParser().parse("titles.name==Phd");
+    	try {
+    		titles.accept(persons, entityManager);
+    		fail();
+    	} catch (QueryBudgetExceededException e) {
+    		assertEquals(1, e.getCost().getPluralJoins());
+    	}
+    	budget.setDegradingPluralJoins(true);
+    	CriteriaQuery<Person> query = titles.accept(persons, entityManager);
+    	assertEquals(0, persons.getPredicateVisitor().getPredicateBuilder().getJoinCount());
+    	assertEquals(1, entityManager.createQuery(query).getResultList().size());
+    	assertEquals(PluralPathStrategy.JOIN, persons.getBuilderTools().getPluralPathStrategy());
+    }
+
+    @Test
+    public void testInListStrategy() {
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<>(Course.class);
+    	visitor.getBuilderTools().getInListStrategy().setChunkSize(2);
+    	assertEquals(1, entityManager.createQuery(new RSQLParser().parse("id=in=(3,2,1)").accept(visitor, entityManager)).getResultList().size());
+    	assertEquals(0, entityManager.createQuery(new RSQLParser().parse("id=out=(3,2,1)").accept(visitor, entityManager)).getResultList().size());
+
+    	InListStrategy strategy = new InListStrategy();
+    	strategy.setPadding(true);
+    	assertEquals(1, strategy.paddedSize(1));
+    	assertEquals(4, strategy.paddedSize(3));
+    	assertEquals(8, strategy.paddedSize(5));
+    	strategy.setChunkSize(6);
+    	assertEquals(6, strategy.paddedSize(5));
+    	assertEquals(12, strategy.paddedSize(7));
+
+    	// lists of 3 and 4 arguments share the plan of 4 parameters
+    	JpaCachingQueryVisitor<Course> caching = new JpaCachingQueryVisitor<>(Course.class);
+    	caching.getBuilderTools().getInListStrategy().setPadding(true);
+    	assertEquals(1, new RSQLParser().parse("id=in=(1,2,3)").accept(caching, entityManager).getResultList().size());
+    	assertEquals(0, new RSQLParser().parse("id=in=(2,3,4,5)").accept(caching, entityManager).getResultList().size());
+    	assertEquals(1, new RSQLParser().parse("id=out=(4,5,6)").accept(caching, entityManager).getResultList().size());
+    	assertEquals(2, caching.getPlanCount());
+
+    	// a shared plan does not admit a list longer than the budget
+    	caching = new JpaCachingQueryVisitor<>(Course.class);
+    	caching.getBuilderTools().getInListStrategy().setPadding(true);
+    	QueryBudget budget = new QueryBudget();
+    	budget.setMaxInSize(10);
+    	simpleTools(caching).setQueryBudget(budget);
+    	assertEquals(1, new RSQLParser().parse("id=in=(1,2,3,4,5,6,7,8,9)").accept(caching, entityManager).getResultList().size());
+    	try {
+    		new RSQLParser().parse("id=in=(1,2,3,4,5,6,7,8,9,10,11,12,13,14,15)").accept(caching, entityManager);
+    		fail();
+    	} catch (QueryBudgetExceededException e) {
+    		assertEquals(Collections.singletonList("in size 15 > 10"), e.getViolations());
+    	}
+    	assertEquals(1, caching.getPlanCount());
+
+    	// lists of any length share the plan of one collection parameter
+    	caching = new JpaCachingQueryVisitor<>(Course.class);
+    	caching.getBuilderTools().getInListStrategy().setCollectionThreshold(2);
+    	assertEquals(1, new RSQLParser().parse("id=in=(2,1)").accept(caching, entityManager).getResultList().size());
+    	assertEquals(0, new RSQLParser().parse("id=in=(2,3,4,5,6)").accept(caching, entityManager).getResultList().size());
+    	assertEquals(1, new RSQLParser().parse("id=in=(7,6,5,4,3,2,1)").accept(caching, entityManager).getResultList().size());
+    	assertEquals(1, caching.getPlanCount());
+    	assertEquals(1, new RSQLParser().parse("id=in=(1)").accept(caching, entityManager).getResultList().size());
+    	assertEquals(2, caching.getPlanCount());
+
+    	// collections are chunked as well, lists of as many chunks share a plan
+    	caching = new JpaCachingQueryVisitor<>(Course.class);
+    	caching.getBuilderTools().getInListStrategy().setCollectionThreshold(2);
+    	caching.getBuilderTools().getInListStrategy().setChunkSize(3);
+    	assertEquals(1, new RSQLParser().parse("id=in=(7,6,5,4,3,2,1)").accept(caching, entityManager).getResultList().size());
+    	assertEquals(0, new RSQLParser().parse("id=in=(2,3,4,5,6,7,8)").accept(caching, entityManager).getResultList().size());
+    	assertEquals(1, new RSQLParser().parse("id=in=(2,3,4,5,6,1)").accept(caching, entityManager).getResultList().size());
+    	assertEquals(2, caching.getPlanCount());
+    	QueryParameters parameters = new QueryParameters();
+    	JpaCriteriaQueryVisitor<Course> chunked = new JpaCriteriaQueryVisitor<>(Course.class).defineParameters(parameters);
+    	chunked.getBuilderTools().getInListStrategy().setCollectionThreshold(2);
+    	chunked.getBuilderTools().getInListStrategy().setChunkSize(3);
+    	assertEquals(1, parameters.apply(entityManager.createQuery(new RSQLParser().parse("id=in=(7,6,5,4,3,2,1)").accept(chunked, entityManager))).getResultList().size());
+    	assertEquals(Arrays.asList(Arrays.asList(7L, 6L, 5L), Arrays.asList(4L, 3L, 2L), Arrays.asList(1L)), new ArrayList<>(parameters.asMap().values()));
+    	assertEquals(3, strategy.chunkCount(13));
+
+    	try {
+    		strategy.setChunkSize(0);
+    		fail();
+    	} catch (IllegalArgumentException e) {
+    		assertEquals("Chunk size must be positive: 0", e.getMessage());
+    	}
+    }
+
+    @Test
+    public void testPreparedQuery() {
+    	JpaQueryCompiler<Course> compiler = new JpaQueryCompiler<>(Course.class);
+    	PreparedQuery<Course> prepared = compiler.prepare(new RSQLParser().parse("department.id==$department;code=in=$codes;credits=ge=$credits;(name==$name,id==$department)"), entityManager);
+    	assertEquals(new HashSet<>(Arrays.asList("department", "codes", "credits", "name")), prepared.getPlaceholders());
+    	assertEquals(Long.class, prepared.getType("department"));
+    	assertEquals(Integer.class, prepared.getType("credits"));
+    	assertTrue(prepared.isCollection("codes"));
+
+    	Map<String, Object> values = new HashMap<>();
+    	values.put("department", 1L);
+    	values.put("codes", Arrays.asList("MI-MDW", "MI-PAA"));
+    	values.put("credits", 10);
+    	values.put("name", "TESTING COURSE");
+    	assertEquals(1, prepared.createQuery(entityManager, values).getResultList().size());
+    	values.put("credits", 11);
+    	assertEquals(0, prepared.createQuery(entityManager, values).getResultList().size());
+    	// bound values are never patterns
+    	PreparedQuery<Course> named = compiler.prepare(new RSQLParser().parse("name==$name"), entityManager);
+    	assertEquals(0, named.createQuery(entityManager, Collections.singletonMap("name", "Testing*")).getResultList().size());
+    	assertEquals(1, named.createQuery(entityManager, Collections.singletonMap("name", "testing course")).getResultList().size());
+
+    	Map<String, Object> missing = new HashMap<>(values);
+    	missing.remove("codes");
+    	Map<String, Object> unknown = new HashMap<>(values);
+    	unknown.put("code", "MI-MDW");
+    	Map<String, Object> mistyped = new HashMap<>(values);
+    	mistyped.put("credits", 10L);
+    	Map<String, Object> empty = new HashMap<>(values);
+    	empty.put("codes", Collections.emptyList());
+    	String[][] failures = {{"Placeholder $codes was not bound."}, {"Unknown placeholder: $code"},
+    			{"Placeholder $credits takes a Integer, not 10."}, {"Placeholder $codes takes a non empty collection of String, not []."}};
+    	List<Map<String, Object>> invalid = Arrays.asList(missing, unknown, mistyped, empty);
+    	for (int i = 0; i < failures.length; i++) {
+    		try {
+    			prepared.createQuery(entityManager, invalid.get(i));
+    			fail(failures[i][0]);
+    		} catch (IllegalArgumentException e) {
+    			assertEquals(failures[i][0], e.getMessage());
+    		}
+    	}
+
+    	// any RSQL name is a placeholder name, whatever the persistence provider accepts as parameter name
+    	PreparedQuery<Course> dashed = compiler.prepare(new RSQLParser().parse("code==$course-code,code==$course.code"), entityManager);
+    	Map<String, Object> codes = new HashMap<>();
+    	codes.put("course-code", "MI-MDW");
+    	codes.put("course.code", "MI-PAA");
+    	assertEquals(1, dashed.createQuery(entityManager, codes).getResultList().size());
+
+    	// a placeholder is never null, so its comparison inner joins
+    	PreparedQuery<Course> joined = compiler.prepare(new RSQLParser().parse("department.id==$department"), entityManager);
+    	assertEquals(JoinType.INNER, joined.getCriteria().getRoots().iterator().next().getJoins().iterator().next().getJoinType());
+    	assertEquals(1, joined.createQuery(entityManager, Collections.singletonMap("department", 1L)).getResultList().size());
+    	try {
+    		joined.createQuery(entityManager, Collections.singletonMap("department", null));
+    		fail();
+    	} catch (IllegalArgumentException e) {
+    		assertEquals("Placeholder $department takes a Long, not null.", e.getMessage());
+    	}
+
+    	String[] misplaced = {"id=in=($ids,1)", "id==$value;name==$value", "unknown==$value"};
+    	for (String rsql : misplaced) {
+    		try {
+    			compiler.prepare(new RSQLParser().parse(rsql), entityManager);
+    			fail(rsql);
+    		} catch (IllegalArgumentException e) {
+    			// rejected when prepared
+    		}
+    	}
+    }
+
+    @Test
+    public void testParseCache() {
+    	ParseCache cache = new ParseCache(new RSQLParser(), 3, 1000);
+    	QueryMetrics metrics = new QueryMetrics();
+    	cache.setQueryListener(metrics);
+    	Node node = cache.parse("name=='Testing Course' and code=in=(MI-MDW,'X')");
+    	assertSame(node, cache.parse(" name == 'Testing Course'  and code=in=( \"MI-MDW\" , X )"));
+    	assertEquals(1, cache.getHitCount());
+    	assertEquals(1, cache.getMissCount());
+    	assertEquals(1, metrics.getCount(QueryPhase.PARSE));
+    	assertEquals(1, entityManager.createQuery(node.accept(new JpaCriteriaQueryVisitor<>(Course.class), entityManager)).getResultList().size());
+    	// tabs belong to the arguments
+    	assertFalse(node.equals(cache.parse("name=='Testing Course' and code=in=(MI-MDW,'X\t')")));
+
+    	try {
+    		cache.parse("name=='Testing");
+    		fail();
+    	} catch (RSQLParserException e) {
+    		assertEquals(2, cache.size());
+    	}
+    	// a space inside an operator is not insignificant, even when the query without it is cached
+    	cache.parse("name==foo");
+    	try {
+    		cache.parse("name= =foo");
+    		fail();
+    	} catch (RSQLParserException e) {
+    		assertEquals(1, cache.getHitCount());
+    		assertEquals(3, cache.size());
+    	}
+    	for (int i = 0; i < 3; i++) {
+    		cache.parse("id==" + i);
+    	}
+    	assertTrue(cache.size() <= 3);
+    	assertTrue(cache.getEvictionCount() > 0);
+
+    	// bounded by the number of characters as well
+    	cache = new ParseCache(new RSQLParser(), 100, 20);
+    	cache.parse("name==Testing*");
+    	cache.parse("code==MI-MDW*");
+    	assertEquals(1, cache.size());
+    	assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testKeysetPagination() {
+    	JpaQueryCompiler<Title> titles = new JpaQueryCompiler<>(Title.class);
+    	List<SortKey> byName = Collections.singletonList(SortKey.desc("name"));
+    	KeysetPage<Title> first = titles.fetchPage(null, byName, null, 1, entityManager);
+    	assertEquals("Phd", first.getItems().get(0).getName());
+    	assertTrue(first.hasNext());
+    	KeysetPage<Title> second = titles.fetchPage(null, byName, first.getContinuation(), 1, entityManager);
+    	assertEquals("Consultant", second.getItems().get(0).getName());
+    	assertFalse(second.hasNext());
+    	// the identifier alone orders the entities
+    	KeysetPage<Title> all = titles.fetchPage(new RSQLParser().parse("id=ge=1"), Collections.<SortKey>emptyList(), null, 2, entityManager);
+    	assertEquals(Arrays.asList(1L, 2L), Arrays.asList(all.getItems().get(0).getId(), all.getItems().get(1).getId()));
+    	assertFalse(all.hasNext());
+
+    	// the sort keys share the joins of the filter, and collections are filtered without repeating the course
+    	JpaQueryCompiler<Course> courses = new JpaQueryCompiler<>(Course.class);
+    	Node filter = new RSQLParser().parse("department.name==Testing;department.head.titles.name=in=(Phd,Consultant)");
+    	List<SortKey> sort = Arrays.asList(SortKey.asc("department.name"), SortKey.desc("startDate"));
+    	KeysetPage<Course> page = courses.fetchPage(filter, sort, null, 1, entityManager);
+    	assertEquals(1, page.getItems().size());
+    	assertFalse(page.hasNext());
+    	// keys after the ones of the course: it starts before 2100, and after 2000
+    	String specification = "department.name,-startDate,id";
+    	String later = specification.length() + ":" + specification + "7:Testing20:2100-01-01T00:00:00Z1:0";
+    	String earlier = specification.length() + ":" + specification + "7:Testing20:2000-01-01T00:00:00Z1:0";
+    	assertEquals(1, courses.fetchPage(filter, sort, Base64.getUrlEncoder().encodeToString(later.getBytes()), 1, entityManager).getItems().size());
+    	assertEquals(0, courses.fetchPage(filter, sort, Base64.getUrlEncoder().encodeToString(earlier.getBytes()), 1, entityManager).getItems().size());
+
+    	String[] unsortable = {"department.head.titles.name", "department", "unknown"};
+    	for (String selector : unsortable) {
+    		try {
+    			courses.fetchPage(null, Collections.singletonList(SortKey.asc(selector)), null, 1, entityManager);
+    			fail(selector);
+    		} catch (IllegalArgumentException e) {
+    			// rejected before querying
+    		}
+    	}
+    	String[] invalid = {first.getContinuation(), "garbage", ""};
+    	for (String token : invalid) {
+    		try {
+    			titles.fetchPage(null, Collections.singletonList(SortKey.asc("name")), token, 1, entityManager);
+    			fail(token);
+    		} catch (IllegalArgumentException e) {
+    			// issued for another sort, or not a token
+    		}
+    	}
+    }
+
+    @Test
+    public void testSort() {
+    	assertEquals(Arrays.asList(SortKey.asc("department.name"), SortKey.desc("startDate"), SortKey.asc("id")), SortKey.parse("department.name, -startDate,+id"));
+    	assertTrue(SortKey.parse(" ").isEmpty());
+
+    	JpaCriteriaQueryVisitor<Title> titles = new JpaCriteriaQueryVisitor<>(Title.class);
+    	List<Title> ordered = entityManager.createQuery(new RSQLParser().parse("id=ge=1").accept(titles.defineSort(SortKey.parse("-name")), entityManager)).getResultList();
+    	assertEquals("Phd", ordered.get(0).getName());
+    	assertEquals("Consultant", ordered.get(1).getName());
+
+    	// the mapped sort selector reuses the join of the filter
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<>(Course.class);
+    	SimpleMapper mapper = new SimpleMapper();
+    	mapper.addMapping(Course.class, new HashMap<>());
+    	mapper.addMapping(Course.class, "dep", "department");
+    	visitor.getBuilderTools().setPropertiesMapper(mapper);
+    	CriteriaQuery<Course> query = new RSQLParser().parse("department.name==Testing").accept(visitor.defineSort(SortKey.parse("dep.name,-startDate")), entityManager);
+    	assertEquals(1, visitor.getPredicateVisitor().getPredicateBuilder().getJoinCount());
+    	assertEquals(2, query.getOrderList().size());
+    	assertEquals(1, entityManager.createQuery(query).getResultList().size());
+
+    	JpaQueryCompiler<Course> compiler = new JpaQueryCompiler<>(Course.class, visitor.getBuilderTools());
+    	assertEquals(1, compiler.createQuery(new RSQLParser().parse("dep.code==MI-MDW"), SortKey.parse("dep.name"), entityManager).getResultList().size());
+
+    	String[] invalid = {"department.head.titles.name", "details", "unknown", "name,,id", "-"};
+    	for (String sort : invalid) {
+    		try {
+    			compiler.createCriteriaQuery(new RSQLParser().parse("id==1"), SortKey.parse(sort), entityManager, null);
+    			fail(sort);
+    		} catch (IllegalArgumentException e) {
+    			// rejected against the metamodel
+    		}
+    	}
+    }
+
+    @Test
+    public void testStreamingExecutor() {
+    	StreamingExecutor executor = new StreamingExecutor();
+    	executor.setFetchSize(1);
+    	executor.setClearInterval(1);
+    	CriteriaQuery<Title> query = new RSQLParser().parse("id=ge=1").accept(new JpaCriteriaQueryVisitor<>(Title.class).defineSort(SortKey.parse("id")), entityManager);
+    	try (Stream<Title> titles = executor.stream(query, entityManager)) {
+    		Iterator<Title> rows = titles.iterator();
+    		Title first = rows.next();
+    		assertEquals("Phd", first.getName());
+    		assertTrue(entityManager.contains(first));
+    		// the context is cleared before the next row is read
+    		assertEquals("Consultant", rows.next().getName());
+    		assertFalse(entityManager.contains(first));
+    		assertFalse(rows.hasNext());
+    	}
+
+    	JpaQueryCompiler<Course> compiler = new JpaQueryCompiler<>(Course.class);
+    	try (Stream<Course> courses = new StreamingExecutor().stream(compiler.createQuery(new RSQLParser().parse("department.head.titles.name==Phd"), entityManager), entityManager)) {
+    		assertEquals(Collections.singletonList("MI-MDW"), courses.map(Course::getCode).collect(Collectors.toList()));
+    	}
+
+    	try {
+    		executor.setFetchSize(0);
+    		fail();
+    	} catch (IllegalArgumentException e) {
+    		assertEquals("Fetch size must be positive: 0", e.getMessage());
+    	}
+    }
+
+    @Test
+    public void testProjection() {
+    	assertEquals(Arrays.asList("id", "name", "department.name"), Projection.parse("id, name,department.name").getSelectors());
+
+    	JpaQueryCompiler<Course> compiler = new JpaQueryCompiler<>(Course.class);
+    	Node filter = new RSQLParser().parse("department.name==Testing;department.head.titles.name=in=(Phd,Consultant)");
+    	List<Tuple> rows = compiler.createTupleQuery(filter, Projection.parse("id,name,department.name,department.head.id"), SortKey.parse("-department.name"), entityManager).getResultList();
+    	// one tuple per course, although two titles match
+    	assertEquals(1, rows.size());
+    	assertEquals(Long.valueOf(1), rows.get(0).get("id", Long.class));
+    	assertEquals("Testing Course", rows.get(0).get("name"));
+    	assertEquals("Testing", rows.get(0).get("department.name"));
+    	assertEquals(Long.valueOf(1), rows.get(0).get("department.head.id"));
+
+    	List<CourseSummary> summaries = compiler.createProjectionQuery(null, Projection.of("name", "department.name"), CourseSummary.class, SortKey.parse("name"), entityManager).getResultList();
+    	assertEquals(1, summaries.size());
+    	assertEquals("Testing Course", summaries.get(0).name);
+    	assertEquals("Testing", summaries.get(0).department);
+
+    	String[] invalid = {"department.head.titles.name", "department.head", "unknown", "id,,name", "id,id", ""};
+    	for (String fields : invalid) {
+    		try {
+    			compiler.createTupleQuery(null, Projection.parse(fields), Collections.<SortKey>emptyList(), entityManager);
+    			fail(fields);
+    		} catch (IllegalArgumentException e) {
+    			// rejected against the metamodel
+    		}
+    	}
+    }
+
+    @Test
+    public void testExpansion() {
+    	JpaQueryCompiler<Department> compiler = new JpaQueryCompiler<>(Department.class);
+    	Expansion expansion = Expansion.parse("head, head.titles");
+    	CriteriaQuery<Department> criteria = compiler.createCriteriaQuery(new RSQLParser().parse("head.surname==One"), SortKey.parse("head.name"), expansion, entityManager, null);
+    	// the filter and the sort reuse the fetch join of the head, the titles are not fetched
+    	Root<?> root = criteria.getRoots().iterator().next();
+    	assertEquals(1, root.getFetches().size());
+    	assertTrue(root.getFetches().iterator().next().getFetches().isEmpty());
+    	assertTrue(root.getJoins().isEmpty());
+    	// a filter rejecting a null head inner joins it, fetched or not
+    	assertEquals(JoinType.INNER, root.getFetches().iterator().next().getJoinType());
+    	criteria = compiler.createCriteriaQuery(new RSQLParser().parse("head.surname==One"), entityManager);
+    	assertEquals(JoinType.INNER, criteria.getRoots().iterator().next().getJoins().iterator().next().getJoinType());
+    	criteria = compiler.createCriteriaQuery(new RSQLParser().parse("head.surname==One,name==*"), Collections.<SortKey>emptyList(), expansion, entityManager, null);
+    	assertEquals(JoinType.LEFT, criteria.getRoots().iterator().next().getFetches().iterator().next().getJoinType());
+
+    	entityManager.clear();
+    	PersistenceUnitUtil util = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+    	List<Department> departments = compiler.createQuery(new RSQLParser().parse("head.surname==One"), SortKey.parse("head.name"), expansion, entityManager).setMaxResults(10).getResultList();
+    	assertEquals(1, departments.size());
+    	Person head = departments.get(0).getHead();
+    	assertTrue(util.isLoaded(departments.get(0), "head"));
+    	assertFalse(util.isLoaded(head, "titles"));
+    	assertSame(departments, compiler.expand(departments, expansion, entityManager));
+    	assertTrue(util.isLoaded(head, "titles"));
+    	assertEquals(2, head.getTitles().size());
+
+    	// the identifiers are bound by chunks
+    	SimpleBuilderTools tools = new SimpleBuilderTools();
+    	tools.getInListStrategy().setChunkSize(1);
+    	JpaQueryCompiler<Person> persons = new JpaQueryCompiler<>(Person.class, tools);
+    	entityManager.clear();
+    	head = persons.createQuery(new RSQLParser().parse("surname==One"), entityManager).getSingleResult();
+    	persons.expand(Arrays.asList(head, head), Expansion.parse("titles"), entityManager);
+    	assertTrue(util.isLoaded(head, "titles"));
+    	assertEquals(2, head.getTitles().size());
+
+    	String[] invalid = {"name", "head.name", "unknown", "head,,tags"};
+    	for (String associations : invalid) {
+    		try {
+    			compiler.createQuery(new RSQLParser().parse("id==1"), Collections.<SortKey>emptyList(), Expansion.parse(associations), entityManager);
+    			fail(associations);
+    		} catch (IllegalArgumentException e) {
+    			// rejected against the metamodel
+    		}
+    	}
+    }
+
+    @Test
+    public void testQueryCompilerIsShareable() throws Exception {
+    	final JpaQueryCompiler<Course> compiler = new JpaQueryCompiler<>(Course.class);
+    	final Node node = new RSQLParser().parse("department.head.surname==One;name==*Course");
+
+    	// every compilation starts from its own root and joins
+    	CriteriaQuery<Course> first = compiler.createCriteriaQuery(node, entityManager);
+    	CriteriaQuery<Long> second = compiler.createCountQuery(node, entityManager);
+    	assertEquals(1, first.getRoots().iterator().next().getJoins().size());
+    	assertEquals(1, second.getRoots().iterator().next().getJoins().size());
+    	assertEquals(Long.valueOf(1), entityManager.createQuery(second).getSingleResult());
+
+    	ExecutorService executor = Executors.newFixedThreadPool(4);
+    	try {
+    		List<Future<Integer>> sizes = new ArrayList<>();
+    		for (int i = 0; i < 16; i++) {
+    			sizes.add(executor.submit(() -> {
+    				EntityManager manager = entityManager.getEntityManagerFactory().createEntityManager();
+    				try {
+    					return compiler.createQuery(node, manager).getResultList().size();
+    				} finally {
+    					manager.close();
+    				}
+    			}));
+    		}
+    		for (Future<Integer> size : sizes) {
+    			assertEquals(Integer.valueOf(1), size.get());
+    		}
+    	} finally {
+    		executor.shutdown();
+    	}
+
+    	try {
+    		compiler.getBuilderTools().setArgumentParser(null);
+    		fail();
+    	} catch (UnsupportedOperationException e) {
+    		assertEquals("Builder tools are frozen.", e.getMessage());
+    	}
+    	try {
+    		compiler.getBuilderTools().getOperatorRegistry().register(new ComparisonOperator("=any="), (path, comparison, builder, tools) -> null);
+    		fail();
+    	} catch (UnsupportedOperationException e) {
+    		assertEquals("Operator registry is read-only.", e.getMessage());
+    	}
+
+    	// the simple policies are copied when freezing
+    	SimpleStringMatchingPolicy policy = new SimpleStringMatchingPolicy();
+    	policy.setMatching(Course.class, "name", StringMatching.PREFIX);
+    	SimpleBuilderTools tools = new SimpleBuilderTools();
+    	tools.setStringMatchingPolicy(policy);
+    	JpaQueryCompiler<Course> prefixed = new JpaQueryCompiler<>(Course.class, tools);
+    	policy.setMatching(Course.class, "name", StringMatching.EXACT);
+    	assertEquals(1, prefixed.createQuery(new RSQLParser().parse("name==Testing*"), entityManager).getResultList().size());
+    }
+
     @Test
     public void testUnsupportedNode() {
     	try{
@@ -667,6 +1568,39 @@ public class JpaVisitorTest {
     	assertNull(visitor.getBuilderTools().getPredicateBuilder());
     }
 
+    @Test
+    public void testBuilderToolsDefaults() {
+    	// implements only the accessors every BuilderTools had from the start
+    	final BuilderTools simple = new SimpleBuilderTools();
+    	BuilderTools tools = new BuilderTools() {
+    		public Mapper getPropertiesMapper() { return simple.getPropertiesMapper(); }
+    		public void setPropertiesMapper(Mapper mapper) { simple.setPropertiesMapper(mapper); }
+    		public ArgumentParser getArgumentParser() { return simple.getArgumentParser(); }
+    		public void setArgumentParser(ArgumentParser argumentParser) { simple.setArgumentParser(argumentParser); }
+    		public PredicateBuilderStrategy getPredicateBuilder() { return simple.getPredicateBuilder(); }
+    		public void setPredicateBuilder(PredicateBuilderStrategy predicateStrategy) { simple.setPredicateBuilder(predicateStrategy); }
+    	};
+    	assertEquals(CountStrategy.AUTO, tools.getCountStrategy());
+    	assertNull(tools.getQueryBudget());
+    	// the defaults are shared, and cannot be changed
+    	assertSame(InListStrategy.SINGLE_IN, tools.getInListStrategy());
+    	assertSame(OperatorRegistry.EMPTY, tools.getOperatorRegistry());
+    	try {
+    		tools.getInListStrategy().setChunkSize(10);
+    		fail();
+    	} catch (UnsupportedOperationException e) {
+    		assertEquals("In-list strategy is read-only.", e.getMessage());
+    	}
+
+    	Node rootNode = new RSQLParser().parse("id==1");
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<>(Course.class);
+    	visitor.setBuilderTools(tools);
+    	CriteriaQuery<Course> query = rootNode.accept(visitor, entityManager);
+
+    	List<Course> courses = entityManager.createQuery(query).getResultList();
+    	assertEquals("Testing Course", courses.get(0).getName());
+    }
+
     @Ignore
     public void testPrivateConstructor() throws Exception {
     	Constructor<PredicateBuilder> priv = PredicateBuilder.class.getDeclaredConstructor();
@@ -678,6 +1612,10 @@ public class JpaVisitorTest {
     	assertNotNull(predicateBuilder);
     }
 
+    private static SimpleBuilderTools simpleTools(AbstractJpaVisitor<?, ?> visitor) {
+    	return (SimpleBuilderTools) visitor.getBuilderTools();
+    }
+
     ////////////////////////// Mocks //////////////////////////
 
     protected static class OtherNode extends AbstractNode {
@@ -687,6 +1625,17 @@ public class JpaVisitorTest {
 		}
     }
 
+    public static class CourseSummary {
+
+    	final String name;
+    	final String department;
+
+    	public CourseSummary(String name, String department) {
+    		this.name = name;
+    		this.department = department;
+    	}
+    }
+
     @Test
     public void testUndefinedRootForPredicate() {
     	try {
@@ -9,4 +9,12 @@ public class Building extends AbstractTestEntity {
 
     @OneToMany(mappedBy = "building")
     private Set<Room> rooms;
+
+    public Set<Room> getRooms() {
+        return rooms;
+    }
+
+    public void setRooms(Set<Room> rooms) {
+        this.rooms = rooms;
+    }
 }
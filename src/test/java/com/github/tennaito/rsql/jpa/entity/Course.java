@@ -27,9 +27,11 @@ package com.github.tennaito.rsql.jpa.entity;
 import javax.persistence.Column;
 import javax.persistence.Embedded;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinColumns;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
 import java.util.Date;
 
 /**
@@ -38,6 +40,7 @@ import java.util.Date;
  * @author Antonio Rabelo
  */
 @Entity
+@Table(indexes = @Index(name = "IDX_COURSE_CODE", columnList = "code"))
 public class Course extends AbstractTestEntity {
 
 	@Column
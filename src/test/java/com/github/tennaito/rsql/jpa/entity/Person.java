@@ -67,4 +67,12 @@ public class Person extends AbstractTestEntity {
 	public void setTitles(Set<Title> titles) {
 		this.titles = titles;
 	}
+
+	public Room getHomeroom() {
+		return homeroom;
+	}
+
+	public void setHomeroom(Room homeroom) {
+		this.homeroom = homeroom;
+	}
 }
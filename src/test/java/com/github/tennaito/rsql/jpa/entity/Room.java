@@ -13,4 +13,20 @@ public class Room extends AbstractTestEntity {
 
     @OneToMany(mappedBy = "homeroom")
     private Set<Person> students;
+
+    public Building getBuilding() {
+        return building;
+    }
+
+    public void setBuilding(Building building) {
+        this.building = building;
+    }
+
+    public Set<Person> getStudents() {
+        return students;
+    }
+
+    public void setStudents(Set<Person> students) {
+        this.students = students;
+    }
 }